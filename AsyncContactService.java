@@ -0,0 +1,235 @@
+// Asynchronous facade over a ContactService for callers that must not block, such as request handlers. Every call
+// returns at once with a CompletableFuture that completes with the result, or exceptionally with the exception the
+// blocking method would have thrown.
+//
+// Calls are queued on lanes chosen by a hash of the contact ID, so calls on one contact run one after another in
+// the order they were made, and calls on different contacts run in parallel on other lanes. A lane is drained by
+// one task at a time. When many callers queue work at once, a drain takes up to maxBatch queued calls together and
+// applies each run of consecutive adds, updates and deletes with a single applyBatch, so the cost of scheduling a
+// task and of a batch is shared by every call in it.
+//
+// Drains run on virtual threads when the JVM has them (Java 21 and later), found through reflection so this class
+// still compiles and runs on older JVMs, which fall back to a pool of platform threads. Either way at most one
+// thread per lane is busy at a time. Futures are completed on the lane's thread, so dependent actions that take
+// long should use the async variants of the CompletableFuture methods to keep the lane moving.
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncContactService implements Closeable {
+    public static final int DEFAULT_LANES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4);
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    private final ContactService service;
+    private final Lane[] lanes;
+    private final int maxBatch;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private volatile boolean closed;
+
+    public AsyncContactService(ContactService service) {
+        this(service, DEFAULT_LANES, DEFAULT_MAX_BATCH);
+    }
+
+    // lanes is rounded up to a power of two. More lanes allow more calls in parallel; maxBatch bounds how many
+    // queued calls one drain takes at a time.
+    public AsyncContactService(ContactService service, int lanes, int maxBatch) {
+        if (lanes < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Lanes and batch size must be at least 1");
+        }
+        this.service = service;
+        this.lanes = new Lane[lanes == 1 ? 1 : Integer.highestOneBit(lanes - 1) << 1];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane();
+        }
+        this.maxBatch = maxBatch;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "contact-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Adds a new contact. Fails with IllegalArgumentException if the contact ID already exists.
+    public CompletableFuture<Void> addContact(Contact contact) {
+        return submit(new Request<>(ContactOperation.add(contact)));
+    }
+
+    // Updates the non-null fields of an existing contact. Fails with IllegalArgumentException if the contact ID does
+    // not exist, or InvalidContactException for an invalid field.
+    public CompletableFuture<Void> updateContact(String contactID, String firstName, String lastName,
+                                                 String phone, String address) {
+        return submit(new Request<>(ContactOperation.update(contactID, firstName, lastName, phone, address)));
+    }
+
+    // Deletes a contact. Fails with IllegalArgumentException if the contact ID does not exist.
+    public CompletableFuture<Void> deleteContact(String contactID) {
+        return submit(new Request<>(ContactOperation.delete(contactID)));
+    }
+
+    // Retrieves a contact, or null if it does not exist. Sees every change made through this facade to the same
+    // contact before this call.
+    public CompletableFuture<Contact> getContact(String contactID) {
+        return submit(new Request<>(contactID));
+    }
+
+    // True if calls run on virtual threads, false if this JVM has none and platform threads are used.
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Stops accepting calls, waits for the queued ones to complete and releases the threads.
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        for (Lane lane : lanes) {
+            while (lane.queued.get() != 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        executor.shutdown();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) {
+        if (closed) {
+            throw new IllegalStateException("Async contact service is closed");
+        }
+        String contactID = request.contactID;
+        int hash = contactID == null ? 0 : contactID.hashCode();
+        lanes[(hash ^ (hash >>> 16)) & (lanes.length - 1)].add(request);
+        return request.future;
+    }
+
+    // Returns Executors.newVirtualThreadPerTaskExecutor() if the JVM has it, or null.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Runs a drained group of calls in order. Consecutive changes go to the service as one batch; a get first
+    // flushes the changes queued before it, so it sees them.
+    private void process(List<Request<?>> drained) {
+        List<Request<?>> changes = new ArrayList<>();
+        for (Request<?> request : drained) {
+            if (request.operation == null) {
+                flush(changes);
+                @SuppressWarnings("unchecked")
+                Request<Contact> get = (Request<Contact>) request;
+                try {
+                    get.future.complete(service.getContact(get.contactID));
+                } catch (RuntimeException e) {
+                    get.future.completeExceptionally(e);
+                }
+            } else {
+                changes.add(request);
+            }
+        }
+        flush(changes);
+    }
+
+    private void flush(List<Request<?>> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<ContactOperation> operations = new ArrayList<>(changes.size());
+        for (Request<?> change : changes) {
+            operations.add(change.operation);
+        }
+        try {
+            ContactBatchResult result = service.applyBatch(operations, false);
+            for (int i = 0; i < changes.size(); i++) {
+                ContactError error = result.getError(i);
+                if (error == null) {
+                    changes.get(i).future.complete(null);
+                } else {
+                    changes.get(i).future.completeExceptionally(error.toException());
+                }
+            }
+        } catch (RuntimeException e) {
+            // Thrown by a listener; which operations were applied is unknown, so all of them report the failure.
+            for (Request<?> change : changes) {
+                change.future.completeExceptionally(e);
+            }
+        }
+        changes.clear();
+    }
+
+    // One queued call: a change, or a get when operation is null.
+    private static final class Request<T> {
+        final ContactOperation operation;
+        final String contactID;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Request(ContactOperation operation) {
+            this.operation = operation;
+            this.contactID = operation.getContactID();
+        }
+
+        Request(String contactID) {
+            this.operation = null;
+            this.contactID = contactID;
+        }
+    }
+
+    // Calls for one stripe of contact IDs, drained in order by at most one task at a time.
+    private final class Lane implements Runnable {
+        final Queue<Request<?>> queue = new ConcurrentLinkedQueue<>();
+        // Calls added and not yet taken by a drain. The call that raises it from 0 starts the drain, and the drain
+        // stops only when taking its calls brings it back to 0, so a call is never left without a drain.
+        final AtomicInteger queued = new AtomicInteger();
+
+        void add(Request<?> request) {
+            queue.add(request);
+            if (queued.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    run(); // Closed meanwhile: drain on the caller's thread instead.
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Request<?>> drained = new ArrayList<>();
+            int taken;
+            do {
+                Request<?> request;
+                while (drained.size() < maxBatch && (request = queue.poll()) != null) {
+                    drained.add(request);
+                }
+                process(drained);
+                taken = drained.size();
+                drained.clear();
+                if (queue.isEmpty()) {
+                    // Give callers a moment to queue more before giving up the thread, so that under load a lane
+                    // keeps its thread and takes bigger batches instead of being rescheduled for every few calls.
+                    Thread.yield();
+                }
+            } while (queued.addAndGet(-taken) > 0);
+        }
+    }
+}
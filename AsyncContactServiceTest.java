@@ -0,0 +1,91 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class AsyncContactServiceTest {
+
+    // Test case to verify that calls on one contact run in the order they were made without waiting in between.
+    @Test
+    void testCallsOnOneContactStayInOrder() throws Exception {
+        ContactService service = new ContactService();
+        try (AsyncContactService async = new AsyncContactService(service)) {
+            async.addContact(new Contact("1", "John", "Smith", "1234567890", "12 Main St"));
+            List<CompletableFuture<Void>> updates = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                updates.add(async.updateContact("1", null, null, String.format("%010d", i), null));
+            }
+            Contact last = async.getContact("1").get(5, TimeUnit.SECONDS);
+            assertEquals(String.format("%010d", 99), last.getPhone());
+            assertEquals(100, last.getVersion());
+            for (CompletableFuture<Void> update : updates) {
+                assertTrue(update.isDone());
+            }
+            async.deleteContact("1");
+            assertNull(async.getContact("1").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    // Test case to verify that failures complete the future with the exception the blocking call would throw.
+    @Test
+    void testFailuresCompleteExceptionally() throws Exception {
+        ContactService service = new ContactService();
+        try (AsyncContactService async = new AsyncContactService(service)) {
+            async.addContact(new Contact("1", "John", "Smith", "1234567890", "12 Main St")).get(5, TimeUnit.SECONDS);
+
+            ExecutionException duplicate = assertThrows(ExecutionException.class,
+                    () -> async.addContact(new Contact("1", "Jane", "Doe", "1234567891", "1 Elm St")).get(5, TimeUnit.SECONDS));
+            assertTrue(duplicate.getCause() instanceof IllegalArgumentException);
+            ExecutionException invalid = assertThrows(ExecutionException.class,
+                    () -> async.updateContact("1", null, null, "123", null).get(5, TimeUnit.SECONDS));
+            assertEquals(ContactError.INVALID_PHONE, ((InvalidContactException) invalid.getCause()).getError());
+            ExecutionException missing = assertThrows(ExecutionException.class,
+                    () -> async.deleteContact("2").get(5, TimeUnit.SECONDS));
+            assertEquals("Contact ID does not exist", missing.getCause().getMessage());
+        }
+        assertEquals("1234567890", service.getContact("1").getPhone());
+    }
+
+    // Test case to verify that many concurrent clients all get their results and close waits for queued calls.
+    @Test
+    void testManyClients() throws Exception {
+        ContactService service = new ContactService();
+        AsyncContactService async = new AsyncContactService(service, 16, 32);
+        List<Thread> clients = new ArrayList<>();
+        List<List<CompletableFuture<Void>>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int client = t;
+            List<CompletableFuture<Void>> own = new ArrayList<>();
+            futures.add(own);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    String id = client + "-" + i;
+                    own.add(async.addContact(new Contact(id, "First", "Last", "1234567890", "1 Main St")));
+                    own.add(async.updateContact(id, "Changed", null, null, null));
+                }
+            });
+            clients.add(thread);
+            thread.start();
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        async.close();
+        for (List<CompletableFuture<Void>> own : futures) {
+            assertEquals(4000, own.size());
+            for (CompletableFuture<Void> future : own) {
+                assertTrue(future.isDone());
+                assertFalse(future.isCompletedExceptionally());
+            }
+        }
+        assertEquals(16000, service.size());
+        assertEquals("Changed", service.getContact("7-1999").getFirstName());
+        assertThrows(IllegalStateException.class, () -> async.getContact("1"));
+    }
+}
@@ -0,0 +1,367 @@
+// ContactStore that keeps a bounded cache in front of a slower ContactBackend, so a ContactService can serve a
+// system of record: new ContactService(new CachingContactStore(backend, 100_000)).
+//
+// Reads go to the cache first and load from the backend on a miss. Concurrent misses for the same ID share one
+// backend load. The cache drops the least recently used contacts once it is full and, if a time to live is set,
+// reloads contacts older than that. Writes either reach the backend before the call returns (write-through) or are
+// queued and written by a background thread, several changes to one ID being written once (write-behind).
+//
+// All writes to the backend are assumed to go through this store; size() counts from the backend's size at
+// construction. A contact changed directly in the backend is seen once its cached copy expires or is invalidated.
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public final class CachingContactStore implements ContactStore, Closeable {
+    // When a change reaches the backend relative to the call that made it.
+    public enum WriteMode {
+        // The backend is written before the call returns. A failed write fails the call and leaves the cache unchanged.
+        WRITE_THROUGH,
+        // The call returns once the cache is updated; a background thread writes changes on a fixed interval.
+        // Changes not yet written are lost if the process dies, and a failed write is retried on the next interval.
+        WRITE_BEHIND
+    }
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+    private static final Object TOMBSTONE = new Object(); // Pending delete in the write-behind queue.
+    private static final int LOCK_STRIPES = 1024;
+
+    private final ContactBackend backend;
+    private final WriteMode mode;
+    private final long ttlNanos;                         // 0 means cached contacts never expire.
+    private final Segment[] segments;                    // The cache, split so lookups of different IDs rarely contend.
+    private final Object[] locks = new Object[LOCK_STRIPES]; // Serialize changes to one ID, including backend writes.
+    private final ConcurrentHashMap<String, CompletableFuture<Contact>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> pendingWrites = new ConcurrentHashMap<>(); // Contact or TOMBSTONE.
+    private final int maxPendingWrites;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;      // Null in write-through mode.
+    private final AtomicInteger count;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+
+    // Creates a write-through cache of up to maximumSize contacts that never expire.
+    public CachingContactStore(ContactBackend backend, int maximumSize) {
+        this(backend, maximumSize, 0, WriteMode.WRITE_THROUGH);
+    }
+
+    // Creates a cache of up to maximumSize contacts, each kept for at most ttlMillis (0 for no limit).
+    public CachingContactStore(ContactBackend backend, int maximumSize, long ttlMillis, WriteMode mode) {
+        this(backend, maximumSize, ttlMillis, mode, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    // flushIntervalMillis applies to WriteMode.WRITE_BEHIND. At most maximumSize changes are queued; a change made
+    // while the queue is full first writes the queue itself.
+    public CachingContactStore(ContactBackend backend, int maximumSize, long ttlMillis, WriteMode mode,
+                               long flushIntervalMillis) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least 1");
+        }
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Time to live cannot be negative");
+        }
+        if (mode == WriteMode.WRITE_BEHIND && flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least 1 millisecond");
+        }
+        this.backend = backend;
+        this.mode = mode;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxPendingWrites = maximumSize;
+        this.count = new AtomicInteger(backend.size());
+
+        // Enough segments to spread contention, but each keeps at least 16 contacts so LRU order stays meaningful.
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(64, maximumSize / 16)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((maximumSize + segmentCount - 1) / segmentCount);
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        if (mode == WriteMode.WRITE_BEHIND) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "contact-cache-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::backgroundFlush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public Contact get(String contactID) {
+        Contact cached = lookup(contactID);
+        return cached != null ? cached : load(contactID);
+    }
+
+    @Override
+    public Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping) {
+        return compute(contactID, remapping, (current, next) -> { });
+    }
+
+    // Listeners hear of a change only once the backend has it (write-through) or it is queued (write-behind), so a
+    // failed backend write is never reported as a change. If changed throws, a write-through change is written
+    // back to the backend as it was.
+    @Override
+    public Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping,
+                           BiConsumer<Contact, Contact> changed) {
+        if (mode == WriteMode.WRITE_BEHIND && pendingWrites.size() >= maxPendingWrites) {
+            flush(); // Back-pressure: the backend is falling behind. Done before locking so other IDs are not held up.
+        }
+        synchronized (locks[spread(contactID.hashCode()) & (LOCK_STRIPES - 1)]) {
+            Contact current = current(contactID);
+            Contact next = remapping.apply(contactID, current);
+            if (next == current) {
+                return current;
+            }
+            if (mode == WriteMode.WRITE_THROUGH) {
+                write(contactID, next);
+                try {
+                    changed.accept(current, next);
+                } catch (RuntimeException | Error e) {
+                    try {
+                        write(contactID, current);
+                    } catch (RuntimeException undo) {
+                        e.addSuppressed(undo);
+                    }
+                    throw e;
+                }
+            } else {
+                changed.accept(current, next);
+                pendingWrites.put(contactID, next == null ? TOMBSTONE : next);
+            }
+
+            Segment segment = segmentFor(contactID);
+            synchronized (segment) {
+                if (next == null) {
+                    segment.remove(contactID);
+                } else {
+                    segment.put(contactID, new Entry(next, ttlNanos > 0 ? System.nanoTime() : 0));
+                }
+                // A load that started before this change must not put its older result in the cache.
+                loading.remove(contactID);
+            }
+            if (current == null) {
+                count.incrementAndGet();
+            } else if (next == null) {
+                count.decrementAndGet();
+            }
+            return next;
+        }
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    // Iterates the backend, after writing any queued changes to it.
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        if (mode == WriteMode.WRITE_BEHIND) {
+            flush();
+        }
+        backend.forEach(action);
+    }
+
+    // Drops the cached copy of a contact so the next lookup reloads it, for example after it was changed directly
+    // in the backend. Queued writes are kept.
+    public void invalidate(String contactID) {
+        Segment segment = segmentFor(contactID);
+        synchronized (segment) {
+            segment.remove(contactID);
+            loading.remove(contactID);
+        }
+    }
+
+    // Writes all queued changes to the backend. Throws whatever the backend throws; changes not written stay queued.
+    public void flush() {
+        flushLock.lock();
+        try {
+            for (Map.Entry<String, Object> change : pendingWrites.entrySet()) {
+                Object value = change.getValue();
+                if (value == TOMBSTONE) {
+                    backend.delete(change.getKey());
+                } else {
+                    backend.store((Contact) value);
+                }
+                // A newer change to the same ID stays queued for the next pass.
+                pendingWrites.remove(change.getKey(), value);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public ContactCacheStats stats() {
+        int cached = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                cached += segment.size();
+            }
+        }
+        return new ContactCacheStats(hitCount.sum(), missCount.sum(), loadCount.sum(), evictionCount.sum(),
+                expirationCount.sum(), pendingWrites.size(), cached);
+    }
+
+    // Stops the background writer and writes any queued changes.
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    // Returns the cached contact, or null on a miss. Expired contacts are dropped and count as misses.
+    private Contact lookup(String contactID) {
+        Segment segment = segmentFor(contactID);
+        synchronized (segment) {
+            Entry entry = segment.get(contactID);
+            if (entry != null) {
+                if (ttlNanos == 0 || System.nanoTime() - entry.loadedAt < ttlNanos) {
+                    hitCount.increment();
+                    return entry.contact;
+                }
+                segment.remove(contactID);
+                expirationCount.increment();
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    // Reads the contact a change applies to without counting a lookup, so writes do not skew the hit ratio: the
+    // cached copy if it is fresh, otherwise the queued change or the backend. Caller holds the ID's lock.
+    private Contact current(String contactID) {
+        Segment segment = segmentFor(contactID);
+        synchronized (segment) {
+            Entry entry = segment.get(contactID);
+            if (entry != null && (ttlNanos == 0 || System.nanoTime() - entry.loadedAt < ttlNanos)) {
+                return entry.contact;
+            }
+        }
+        return readThrough(contactID, false);
+    }
+
+    // Loads a contact after a miss. Only the first thread to miss calls the backend; the others wait for its result.
+    private Contact load(String contactID) {
+        CompletableFuture<Contact> mine = new CompletableFuture<>();
+        CompletableFuture<Contact> inFlight = loading.putIfAbsent(contactID, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            Contact loaded = readThrough(contactID, true);
+            if (loaded != null) {
+                Segment segment = segmentFor(contactID);
+                synchronized (segment) {
+                    if (loading.get(contactID) == mine) {
+                        segment.put(contactID, new Entry(loaded, ttlNanos > 0 ? System.nanoTime() : 0));
+                    }
+                }
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(contactID, mine);
+        }
+    }
+
+    // Reads a contact from the write-behind queue or, if it has no queued change, from the backend.
+    // The flusher writes the backend before removing a change from the queue, so one of the two is always current.
+    // Backend reads count as loads in the stats when counted is set.
+    private Contact readThrough(String contactID, boolean counted) {
+        Object queued = pendingWrites.get(contactID);
+        if (queued != null) {
+            return queued == TOMBSTONE ? null : (Contact) queued;
+        }
+        if (counted) {
+            loadCount.increment();
+        }
+        return backend.load(contactID);
+    }
+
+    private void write(String contactID, Contact contact) {
+        if (contact == null) {
+            backend.delete(contactID);
+        } else {
+            backend.store(contact);
+        }
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Left queued; the next interval tries again and an explicit flush() reports the failure.
+        }
+    }
+
+    private Segment segmentFor(String contactID) {
+        return segments[spread(contactID.hashCode()) >>> 16 & (segments.length - 1)];
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16) ^ (hash * 0x9E3779B9);
+    }
+
+    // A cached contact and when it was loaded or written, in System.nanoTime units.
+    private static final class Entry {
+        final Contact contact;
+        final long loadedAt;
+
+        Entry(Contact contact, long loadedAt) {
+            this.contact = contact;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // One part of the cache: an access-ordered map that drops its least recently used entry when over capacity.
+    // Guarded by its own monitor.
+    private final class Segment extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            evictionCount.increment();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+class CachingContactStoreTest {
+
+    // Test case to verify that a service reads through the cache and writes through to the backend.
+    @Test
+    void testReadThroughWriteThrough() {
+        InMemoryContactBackend backend = new InMemoryContactBackend();
+        backend.store(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        CachingContactStore store = new CachingContactStore(backend, 100);
+        ContactService service = new ContactService(store);
+
+        assertEquals(1, service.size());
+        assertEquals("John", service.getContact("1").getFirstName());
+        assertEquals("John", service.getContact("1").getFirstName());
+        assertEquals(1L, backend.getLoadCount());
+
+        service.addContact(new Contact("2", "Jane", "Doe", "1234567891", "456 Park Ave"));
+        service.updateContact("1", "Johnny", null, null, null);
+        service.deleteContact("2");
+        assertEquals("Johnny", backend.load("1").getFirstName());
+        assertNull(backend.load("2"));
+        assertEquals(1, service.size());
+
+        ContactCacheStats stats = store.stats();
+        // Only the two reads count; the writes are not lookups.
+        assertEquals(1L, stats.getHitCount());
+        assertEquals(1L, stats.getMissCount());
+        assertEquals(0L, stats.getPendingWriteCount());
+    }
+
+    // Test case to verify that adds, updates and deletes are not counted as cache lookups.
+    @Test
+    void testWritesAreNotCountedAsLookups() {
+        InMemoryContactBackend backend = new InMemoryContactBackend();
+        backend.store(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        CachingContactStore store = new CachingContactStore(backend, 100);
+        ContactService service = new ContactService(store);
+
+        service.addContact(new Contact("2", "Jane", "Doe", "1234567891", "456 Park Ave"));
+        service.updateContact("1", "Johnny", null, null, null);
+        service.updateContact("2", "Janet", null, null, null);
+        service.deleteContact("2");
+        ContactCacheStats stats = store.stats();
+        assertEquals(0L, stats.getHitCount());
+        assertEquals(0L, stats.getMissCount());
+        assertEquals(0L, stats.getLoadCount());
+
+        assertEquals("Johnny", service.getContact("1").getFirstName());
+        assertNull(service.getContact("2"));
+        stats = store.stats();
+        assertEquals(1L, stats.getHitCount());
+        assertEquals(1L, stats.getMissCount());
+        assertEquals(1L, stats.getLoadCount());
+    }
+
+    // Test case to verify that a failed write-through leaves listeners and indexes without the change.
+    @Test
+    void testFailedWriteThroughIsNotReported() {
+        InMemoryContactBackend backend = new InMemoryContactBackend() {
+            @Override
+            public void store(Contact contact) {
+                if (contact.getLastName().equals("Failing")) {
+                    throw new IllegalStateException("Backend unavailable");
+                }
+                super.store(contact);
+            }
+        };
+        ContactService service = new ContactService(new CachingContactStore(backend, 100));
+        service.enableIndexes();
+        List<Contact> added = new ArrayList<>();
+        service.addListener(new ContactListener() {
+            @Override
+            public void contactAdded(Contact contact) {
+                added.add(contact);
+            }
+
+            @Override
+            public void contactUpdated(Contact before, Contact after) {
+            }
+
+            @Override
+            public void contactDeleted(Contact contact) {
+            }
+        });
+
+        assertThrows(IllegalStateException.class,
+                () -> service.addContact(new Contact("1", "John", "Failing", "1234567890", "123 Main St")));
+        assertTrue(added.isEmpty());
+        assertTrue(service.findByLastName("Failing").isEmpty());
+        assertNull(service.getContact("1"));
+        assertEquals(0, service.size());
+
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        assertEquals(1, added.size());
+        assertEquals(1, service.findByLastName("Doe").size());
+    }
+
+    // Test case to verify that the cache stays within its maximum size and counts evictions.
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        InMemoryContactBackend backend = new InMemoryContactBackend();
+        for (int i = 0; i < 100; i++) {
+            backend.store(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+        }
+        CachingContactStore store = new CachingContactStore(backend, 10);
+        for (int i = 0; i < 100; i++) {
+            store.get(Integer.toString(i));
+            store.get("0"); // Kept warm, so never the least recently used.
+        }
+        ContactCacheStats stats = store.stats();
+        assertEquals(10, stats.getCachedCount());
+        assertEquals(90L, stats.getEvictionCount());
+
+        long loads = backend.getLoadCount();
+        assertNotNull(store.get("0"));
+        assertNotNull(store.get("99"));
+        assertNotNull(store.get("1"));
+        assertEquals(loads + 1, backend.getLoadCount());
+    }
+
+    // Test case to verify that contacts older than the time to live are reloaded.
+    @Test
+    void testExpiresAfterTimeToLive() throws InterruptedException {
+        InMemoryContactBackend backend = new InMemoryContactBackend();
+        backend.store(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        CachingContactStore store = new CachingContactStore(backend, 100, 50, CachingContactStore.WriteMode.WRITE_THROUGH);
+
+        store.get("1");
+        backend.store(new Contact("1", "Changed", "Doe", "1234567890", "123 Main St"));
+        assertEquals("John", store.get("1").getFirstName());
+        Thread.sleep(100);
+        assertEquals("Changed", store.get("1").getFirstName());
+        assertEquals(1L, store.stats().getExpirationCount());
+
+        backend.store(new Contact("1", "Again", "Doe", "1234567890", "123 Main St"));
+        store.invalidate("1");
+        assertEquals("Again", store.get("1").getFirstName());
+    }
+
+    // Test case to verify that concurrent misses for one contact share a single backend load.
+    @Test
+    void testCoalescesConcurrentLoads() throws InterruptedException {
+        InMemoryContactBackend backend = new InMemoryContactBackend(200_000);
+        backend.store(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        CachingContactStore store = new CachingContactStore(backend, 100);
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    assertEquals("John", store.get("1").getFirstName());
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertEquals(1L, backend.getLoadCount());
+        assertEquals(8L, store.stats().getMissCount());
+    }
+
+    // Test case to verify that write-behind changes are visible at once and reach the backend when flushed.
+    @Test
+    void testWriteBehind() {
+        InMemoryContactBackend backend = new InMemoryContactBackend();
+        CachingContactStore store = new CachingContactStore(backend, 100, 0, CachingContactStore.WriteMode.WRITE_BEHIND, 60_000);
+        ContactService service = new ContactService(store);
+
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        for (int i = 0; i < 10; i++) {
+            service.updateContact("1", "John" + i, null, null, null);
+        }
+        service.addContact(new Contact("2", "Jane", "Doe", "1234567891", "456 Park Ave"));
+        service.deleteContact("2");
+        assertEquals("John9", service.getContact("1").getFirstName());
+        assertNull(service.getContact("2"));
+        assertEquals(0L, backend.getWriteCount());
+        assertEquals(2L, store.stats().getPendingWriteCount());
+
+        // Eleven changes to one contact become a single write.
+        store.close();
+        assertEquals(2L, backend.getWriteCount());
+        assertEquals("John9", backend.load("1").getFirstName());
+        assertEquals(10L, backend.load("1").getVersion());
+        assertNull(backend.load("2"));
+        assertEquals(1, service.size());
+    }
+}
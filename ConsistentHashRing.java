@@ -0,0 +1,80 @@
+// Maps contact IDs to shards by consistent hashing. Each shard is placed on a 64-bit ring at a number of points
+// (virtual nodes) derived from its name, and a contact belongs to the shard owning the first point at or after the
+// hash of its ID. Adding or removing one shard therefore only moves the contacts between that shard and its ring
+// neighbours, about 1/N of them, and with enough virtual nodes every shard gets close to an equal share.
+// The ring is immutable; a rebalance builds a new one.
+import java.util.Arrays;
+import java.util.List;
+
+public final class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 256;
+
+    private final long[] points;    // Sorted hash points.
+    private final int[] owners;     // owners[i] is the index in the name list of the shard owning points[i].
+    private final int shardCount;
+
+    public ConsistentHashRing(List<String> shardNames) {
+        this(shardNames, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(List<String> shardNames, int virtualNodes) {
+        if (shardNames.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A ring needs at least one shard and one virtual node per shard");
+        }
+        if (shardNames.stream().distinct().count() != shardNames.size()) {
+            throw new IllegalArgumentException("Shard names must be unique");
+        }
+        int count = shardNames.size() * virtualNodes;
+        long[] entries = new long[count * 2];
+        int n = 0;
+        for (int shard = 0; shard < shardNames.size(); shard++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[n++] = hash(shardNames.get(shard) + "#" + v);
+                entries[n++] = shard;
+            }
+        }
+        // Sort the (point, owner) pairs by point through an index array.
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(entries[a * 2], entries[b * 2]));
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = entries[order[i] * 2];
+            owners[i] = (int) entries[order[i] * 2 + 1];
+        }
+        this.shardCount = shardNames.size();
+    }
+
+    // Index, in the list the ring was built from, of the shard that owns the key.
+    public int shardOf(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) {
+            i = -i - 1;
+            if (i == points.length) {
+                i = 0; // Past the last point, wrap around to the first.
+            }
+        }
+        return owners[i];
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // 64-bit FNV-1a over the characters, finished with the MurmurHash3 mixer so similar keys spread over the ring.
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
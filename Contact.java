@@ -1,41 +1,63 @@
 // Represents a Contact with a unique ID, first name, last name, phone number, and address.
-public class Contact {
+// A Contact is immutable: changing a field produces a new Contact with the next version number,
+// so a Contact can be shared between threads and read without any locking.
+// While ContactFieldPool is enabled, names and addresses are swapped for pooled copies as contacts are built.
+public final class Contact {
     private final String contactID;  // Unique identifier for the contact (cannot be changed).
-    private String firstName;        // First name of the contact.
-    private String lastName;         // Last name of the contact.
-    private String phone;            // Phone number of the contact (must be 10 digits).
-    private String address;          // Address of the contact (max length 30).
+    private final String firstName;  // First name of the contact.
+    private final String lastName;   // Last name of the contact.
+    private final String phone;      // Phone number of the contact (must be 10 digits).
+    private final String address;    // Address of the contact (max length 30).
+    private final long version;      // Number of changes made since the contact was first created.
 
     // Constructor to initialize a Contact object with valid parameters.
-    // Throws IllegalArgumentException if any input is invalid.
+    // Throws InvalidContactException (an IllegalArgumentException) if any input is invalid.
     public Contact(String contactID, String firstName, String lastName, String phone, String address) {
-        // Validate contact ID: cannot be null or longer than 10 characters.
-        if (contactID == null || contactID.length() > 10) {
-            throw new IllegalArgumentException("Invalid Contact ID");
-        }
-        // Validate first name: cannot be null or longer than 10 characters.
-        if (firstName == null || firstName.length() > 10) {
-            throw new IllegalArgumentException("Invalid First Name");
-        }
-        // Validate last name: cannot be null or longer than 10 characters.
-        if (lastName == null || lastName.length() > 10) {
-            throw new IllegalArgumentException("Invalid Last Name");
-        }
-        // Validate phone number: cannot be null, must be exactly 10 digits, and contain only numbers.
-        if (phone == null || phone.length() != 10 || !phone.matches("\\d+")) {
-            throw new IllegalArgumentException("Invalid Phone Number");
-        }
-        // Validate address: cannot be null or longer than 30 characters.
-        if (address == null || address.length() > 30) {
-            throw new IllegalArgumentException("Invalid Address");
+        this(contactID, firstName, lastName, phone, address, 0L);
+    }
+
+    // Creates a specific version of a contact, validating every field.
+    Contact(String contactID, String firstName, String lastName, String phone, String address, long version) {
+        this(contactID, firstName, lastName, phone, address, version, true);
+    }
+
+    // Rebuilds a contact that a store such as PackedContactStore keeps in its own encoding and decodes on every
+    // read. The fields were validated when the contact was stored, and the copy is short-lived, so it skips both
+    // validation and the field pool to keep reads fast.
+    static Contact decoded(String contactID, String firstName, String lastName, String phone, String address,
+                           long version) {
+        return new Contact(contactID, firstName, lastName, phone, address, version, false);
+    }
+
+    // Shared constructor. Callers that have already validated the fields pass validate = false and pool the
+    // fields themselves; otherwise the fields are pooled once they are known to be valid.
+    private Contact(String contactID, String firstName, String lastName, String phone, String address,
+                    long version, boolean validate) {
+        if (validate) {
+            ContactError error = ContactValidator.validate(contactID, firstName, lastName, phone, address);
+            if (error != null) {
+                throw new InvalidContactException(error);
+            }
         }
 
         // Initialize fields if all validations pass.
         this.contactID = contactID;
-        this.firstName = firstName;
-        this.lastName = lastName;
+        this.firstName = validate ? ContactFieldPool.intern(firstName) : firstName;
+        this.lastName = validate ? ContactFieldPool.intern(lastName) : lastName;
         this.phone = phone;
-        this.address = address;
+        this.address = validate ? ContactFieldPool.intern(address) : address;
+        this.version = version;
+    }
+
+    // Creates a contact without throwing: returns null if any field is invalid.
+    // Bulk loaders use this to skip rejected rows without paying for an exception;
+    // ContactValidator.validate reports which field was wrong.
+    public static Contact tryCreate(String contactID, String firstName, String lastName, String phone, String address) {
+        if (ContactValidator.validate(contactID, firstName, lastName, phone, address) != null) {
+            return null;
+        }
+        return new Contact(contactID, ContactFieldPool.intern(firstName), ContactFieldPool.intern(lastName), phone,
+                ContactFieldPool.intern(address), 0L, false);
     }
 
     // Getter methods to retrieve the properties of the contact.
@@ -45,33 +67,48 @@ public class Contact {
     public String getPhone() { return phone; }
     public String getAddress() { return address; }
 
-    // Setter methods to modify the properties of the contact. 
-    // They validate the input data similarly to the constructor.
-    public void setFirstName(String firstName) {
-        if (firstName == null || firstName.length() > 10) {
-            throw new IllegalArgumentException("Invalid First Name");
-        }
-        this.firstName = firstName;
+    // Returns the version of this contact. A newly constructed contact is version 0,
+    // and every changed copy is one higher than the contact it was derived from.
+    public long getVersion() { return version; }
+
+    // Copy methods that return a new version of the contact with one property changed.
+    // Only the changed property is validated and pooled; the others were handled when this contact was created.
+    public Contact withFirstName(String firstName) {
+        check(ContactValidator.checkFirstName(firstName));
+        return new Contact(contactID, ContactFieldPool.intern(firstName), lastName, phone, address, version + 1, false);
     }
 
-    public void setLastName(String lastName) {
-        if (lastName == null || lastName.length() > 10) {
-            throw new IllegalArgumentException("Invalid Last Name");
-        }
-        this.lastName = lastName;
+    public Contact withLastName(String lastName) {
+        check(ContactValidator.checkLastName(lastName));
+        return new Contact(contactID, firstName, ContactFieldPool.intern(lastName), phone, address, version + 1, false);
     }
 
-    public void setPhone(String phone) {
-        if (phone == null || phone.length() != 10 || !phone.matches("\\d+")) {
-            throw new IllegalArgumentException("Invalid Phone Number");
-        }
-        this.phone = phone;
+    public Contact withPhone(String phone) {
+        check(ContactValidator.checkPhone(phone));
+        return new Contact(contactID, firstName, lastName, phone, address, version + 1, false);
+    }
+
+    public Contact withAddress(String address) {
+        check(ContactValidator.checkAddress(address));
+        return new Contact(contactID, firstName, lastName, phone, ContactFieldPool.intern(address), version + 1, false);
+    }
+
+    // Returns a new version of the contact with several properties changed. Any null field is left unchanged.
+    // All changes are validated before the new contact exists, so an invalid value produces no new version at all.
+    Contact update(String firstName, String lastName, String phone, String address) {
+        check(ContactValidator.validateChanges(firstName, lastName, phone, address));
+        return new Contact(contactID,
+                firstName != null ? ContactFieldPool.intern(firstName) : this.firstName,
+                lastName != null ? ContactFieldPool.intern(lastName) : this.lastName,
+                phone != null ? phone : this.phone,
+                address != null ? ContactFieldPool.intern(address) : this.address,
+                version + 1, false);
     }
 
-    public void setAddress(String address) {
-        if (address == null || address.length() > 30) {
-            throw new IllegalArgumentException("Invalid Address");
+    // Throws the exception for a failed validation, if there was one.
+    private static void check(ContactError error) {
+        if (error != null) {
+            throw new InvalidContactException(error);
         }
-        this.address = address;
     }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+// System of record behind a CachingContactStore, such as a database or a remote service.
+// Calls may be slow and may throw; the cache in front of it keeps the number of calls low. The backend holds plain
+// contacts and knows nothing of the service's rules, which are applied before anything reaches it.
+import java.util.function.Consumer;
+
+public interface ContactBackend {
+    // Returns the contact stored under the ID, or null.
+    Contact load(String contactID);
+
+    // Stores the contact, replacing any contact with the same ID.
+    void store(Contact contact);
+
+    // Removes the contact with the ID, doing nothing if there is none.
+    void delete(String contactID);
+
+    // Number of contacts stored.
+    int size();
+
+    // Passes every stored contact to the action. The iteration is weakly consistent.
+    void forEach(Consumer<Contact> action);
+}
@@ -0,0 +1,32 @@
+// Per-operation outcome of a ContactService batch, indexed in the same order as the submitted operations.
+// Each slot holds null for success or the ContactError explaining the failure, so no exception is ever thrown for a bad row.
+public final class ContactBatchResult {
+    private final ContactError[] errors; // Error for each operation, or null where it succeeded.
+    private final int failureCount;      // Number of non-null entries in errors.
+
+    ContactBatchResult(ContactError[] errors) {
+        this.errors = errors;
+        int failures = 0;
+        for (ContactError error : errors) {
+            if (error != null) {
+                failures++;
+            }
+        }
+        this.failureCount = failures;
+    }
+
+    // Number of operations in the batch.
+    public int size() { return errors.length; }
+
+    // Returns true if the operation at the given position was applied.
+    public boolean isSuccess(int index) { return errors[index] == null; }
+
+    // Returns why the operation at the given position failed, or null if it succeeded.
+    public ContactError getError(int index) { return errors[index]; }
+
+    public int getSuccessCount() { return errors.length - failureCount; }
+    public int getFailureCount() { return failureCount; }
+
+    // Returns true if every operation in the batch was applied.
+    public boolean isAllSuccessful() { return failureCount == 0; }
+}
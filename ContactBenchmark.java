@@ -0,0 +1,470 @@
+// Micro-benchmark harness for the Contact and ContactService hot paths.
+//
+// Follows the JMH method without needing a build system: every benchmark runs in a fresh JVM (fork), is warmed
+// up before it is measured, and is measured over several timed iterations. Results are consumed so the JIT cannot
+// drop the work, and each run reports throughput, sampled latency percentiles, bytes allocated per operation
+// and the collections that ran while it was measured. Throughput is measured untimed; latency is sampled on one
+// operation in SAMPLE_EVERY, so the percentiles include the cost of System.nanoTime (a few tens of ns).
+//
+// Usage: java ContactBenchmark [options]
+//   --benchmarks   names to run, comma separated (default: all, see Workload)
+//   --contacts     contact counts to pre-load, comma separated (default: 1000,100000,1000000)
+//   --threads      thread counts, comma separated (default: 1,4)
+//   --store        map, versioned, packed or cached (default: map)
+//   --metrics      true to run with ContactService metrics enabled, to measure their cost (default: false)
+//   --warmup       warmup iterations (default: 3)
+//   --iterations   measured iterations (default: 5)
+//   --millis       length of each iteration (default: 1000)
+//   --jvm-args     options for the forked JVMs, space separated (default: -Xmx4g)
+//   --fork         false to run everything in this JVM (default: true)
+//   --out          file to which the results table is also written
+//
+// Example, comparing against the checked-in baseline:
+//   java ContactBenchmark --contacts 1000,100000,1000000,10000000 --threads 1 --out benchmark-results.txt
+//   diff benchmark-baseline.txt benchmark-results.txt
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class ContactBenchmark {
+    // The operations measured. Those that do not use a service run once, at the first contact count.
+    enum Workload {
+        CONTACT_NEW("contact.new", false),          // new Contact(...), including validation.
+        CONTACT_WITH_PHONE("contact.withPhone", false),
+        SERVICE_GET("service.get", true),           // getContact of a random stored contact.
+        SERVICE_UPDATE("service.update", true),     // updateContact of one field of a random contact.
+        SERVICE_ADD_DELETE("service.addDelete", true), // addContact then deleteContact; two operations.
+        MIX_READ_HEAVY("mix.read95", true),         // 95% get, 5% update.
+        MIX_WRITE_HEAVY("mix.write50", true);       // 50% get, 50% update.
+
+        final String label;
+        final boolean usesService;
+
+        Workload(String label, boolean usesService) {
+            this.label = label;
+            this.usesService = usesService;
+        }
+
+        static Workload of(String label) {
+            for (Workload workload : values()) {
+                if (workload.label.equals(label) || workload.name().equalsIgnoreCase(label)) {
+                    return workload;
+                }
+            }
+            throw new IllegalArgumentException("Unknown benchmark: " + label);
+        }
+    }
+
+    private static final String HEADER = String.format("%-18s %-7s %9s %7s %14s %9s %9s %10s %10s %6s %8s",
+            "benchmark", "store", "contacts", "threads", "ops/s", "p50 ns", "p99 ns", "p99.9 ns", "B/op", "gcs", "gc ms");
+    private static final String RESULT_PREFIX = "RESULT ";
+    private static final int SAMPLE_EVERY = 16;           // One operation in this many is timed on its own.
+    private static final int MAX_SAMPLES = 1 << 18;       // Per thread and iteration.
+    private static final int SPARE_IDS = 4096;            // IDs per thread for add/delete, never pre-loaded.
+
+    // Blackhole for every iteration's results. A write to a volatile field cannot be dropped, so neither can the
+    // work that produced the value written.
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String single = options.get("run");
+        if (single != null) {
+            // Forked child: run one configuration and report it on a single line.
+            System.out.println(RESULT_PREFIX + run(Workload.of(single), options.get("store"),
+                    Integer.parseInt(options.get("contacts")), Integer.parseInt(options.get("threads")), options));
+            return;
+        }
+
+        List<Workload> workloads = new ArrayList<>();
+        for (String label : options.get("benchmarks").split(",")) {
+            workloads.add(label.equals("all") ? null : Workload.of(label));
+        }
+        if (workloads.contains(null)) {
+            workloads = Arrays.asList(Workload.values());
+        }
+        int[] contactCounts = parseInts(options.get("contacts"));
+        int[] threadCounts = parseInts(options.get("threads"));
+        boolean fork = Boolean.parseBoolean(options.get("fork"));
+
+        List<String> lines = new ArrayList<>();
+        lines.add("# java " + System.getProperty("java.version") + ", " + System.getProperty("os.name") + " "
+                + System.getProperty("os.arch") + ", " + Runtime.getRuntime().availableProcessors() + " cpus, fork="
+                + fork + " jvm-args=" + options.get("jvm-args") + " metrics=" + options.get("metrics")
+                + ", warmup=" + options.get("warmup") + "x" + options.get("millis") + "ms, measured="
+                + options.get("iterations") + "x" + options.get("millis") + "ms");
+        lines.add(HEADER);
+        System.out.println(lines.get(0));
+        System.out.println(HEADER);
+        for (Workload workload : workloads) {
+            for (int c = 0; c < contactCounts.length; c++) {
+                if (!workload.usesService && c > 0) {
+                    continue;
+                }
+                for (int threads : threadCounts) {
+                    String line = fork
+                            ? runForked(workload, options.get("store"), contactCounts[c], threads, options)
+                            : run(workload, options.get("store"), contactCounts[c], threads, options);
+                    System.out.println(line);
+                    lines.add(line);
+                }
+            }
+        }
+        if (options.containsKey("out")) {
+            Files.write(Paths.get(options.get("out")), lines, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Runs one configuration in a new JVM with the same class path and returns its result line.
+    private static String runForked(Workload workload, String store, int contacts, int threads,
+                                    Map<String, String> options) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : options.get("jvm-args").trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), ContactBenchmark.class.getName(),
+                "--run", workload.label, "--store", store, "--contacts", Integer.toString(contacts),
+                "--threads", Integer.toString(threads), "--warmup", options.get("warmup"),
+                "--iterations", options.get("iterations"), "--millis", options.get("millis"),
+                "--metrics", options.get("metrics")));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String result = null;
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = line.substring(RESULT_PREFIX.length());
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Forked benchmark " + workload.label + " failed:\n" + output);
+        }
+        return result;
+    }
+
+    // Runs one configuration in this JVM and returns its result line.
+    private static String run(Workload workload, String storeName, int contactCount, int threadCount,
+                              Map<String, String> options) throws InterruptedException {
+        Fixture fixture = new Fixture(storeName, workload.usesService ? contactCount : 0, contactCount, threadCount);
+        if (fixture.service != null && Boolean.parseBoolean(options.get("metrics"))) {
+            fixture.service.enableMetrics();
+        }
+        int millis = Integer.parseInt(options.get("millis"));
+        for (int i = 0; i < Integer.parseInt(options.get("warmup")); i++) {
+            iteration(workload, fixture, threadCount, millis);
+        }
+
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount -= collector.getCollectionCount();
+            gcMillis -= collector.getCollectionTime();
+        }
+        long operations = 0;
+        long nanos = 0;
+        long allocated = 0;
+        long[] samples = new long[0];
+        int iterations = Integer.parseInt(options.get("iterations"));
+        for (int i = 0; i < iterations; i++) {
+            Iteration result = iteration(workload, fixture, threadCount, millis);
+            operations += result.operations;
+            nanos += result.nanos;
+            allocated += result.allocatedBytes;
+            samples = concat(samples, result.samples);
+        }
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += collector.getCollectionCount();
+            gcMillis += collector.getCollectionTime();
+        }
+
+        Arrays.sort(samples);
+        double opsPerSecond = operations * 1e9 / nanos;
+        return String.format("%-18s %-7s %9d %7d %14.0f %9d %9d %10d %10.1f %6d %8d", workload.label, storeName,
+                contactCount, threadCount, opsPerSecond, percentile(samples, 0.50), percentile(samples, 0.99),
+                percentile(samples, 0.999), allocated < 0 ? Double.NaN : (double) allocated / operations, gcCount, gcMillis);
+    }
+
+    // Runs the workload on threadCount threads for the given time.
+    private static Iteration iteration(Workload workload, Fixture fixture, int threadCount, int millis)
+            throws InterruptedException {
+        Worker[] workers = new Worker[threadCount];
+        CountDownLatch ready = new CountDownLatch(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threadCount; t++) {
+            workers[t] = new Worker(workload, fixture, t, ready, start);
+            workers[t].start();
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(millis);
+        for (Worker worker : workers) {
+            worker.stop = true;
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        Iteration result = new Iteration();
+        result.nanos = elapsed;
+        result.samples = new long[0];
+        for (Worker worker : workers) {
+            if (worker.failure != null) {
+                throw new IllegalStateException("Benchmark thread failed", worker.failure);
+            }
+            result.operations += worker.operations;
+            result.allocatedBytes = worker.allocatedBytes < 0 || result.allocatedBytes < 0
+                    ? -1 : result.allocatedBytes + worker.allocatedBytes;
+            result.samples = concat(result.samples, Arrays.copyOf(worker.samples, worker.sampleCount));
+            // Fold the results into the blackhole so the work that produced them cannot be optimised away.
+            blackhole ^= worker.sink ^ System.identityHashCode(worker.consumed);
+        }
+        return result;
+    }
+
+    // One thread's share of an iteration.
+    private static final class Worker extends Thread {
+        private final Workload workload;
+        private final Fixture fixture;
+        private final String[] spareIDs;
+        private final CountDownLatch ready;
+        private final CountDownLatch start;
+        volatile boolean stop;
+        long operations;
+        long allocatedBytes;
+        long[] samples = new long[1024];
+        int sampleCount;
+        long sink;              // Results are folded in here; see iteration().
+        Object consumed;        // New objects are stored here so escape analysis cannot remove their allocation.
+        Throwable failure;
+        private long seed;
+
+        Worker(Workload workload, Fixture fixture, int index, CountDownLatch ready, CountDownLatch start) {
+            super("benchmark-" + index);
+            this.workload = workload;
+            this.fixture = fixture;
+            this.spareIDs = fixture.spareIDs[index];
+            this.ready = ready;
+            this.start = start;
+            this.seed = 0x9E3779B97F4A7C15L * (index + 1) + System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            try {
+                com.sun.management.ThreadMXBean threads = allocationBean();
+                ready.countDown();
+                start.await();
+                long allocatedBefore = threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+                long count = 0;
+                while (!stop) {
+                    for (int i = 1; i < SAMPLE_EVERY; i++) {
+                        count += operation(count);
+                    }
+                    long begin = System.nanoTime();
+                    int done = operation(count);
+                    long elapsed = System.nanoTime() - begin;
+                    count += done;
+                    if (sampleCount < MAX_SAMPLES) {
+                        if (sampleCount == samples.length) {
+                            samples = Arrays.copyOf(samples, samples.length * 2);
+                        }
+                        samples[sampleCount++] = elapsed / done;
+                    }
+                }
+                operations = count;
+                allocatedBytes = threads == null ? -1 : threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        // Performs one step of the workload and returns the number of operations it counts as.
+        private int operation(long step) {
+            Fixture f = fixture;
+            switch (workload) {
+                case CONTACT_NEW: {
+                    int i = next(f.phones.length);
+                    consumed = new Contact(f.ids[i], "John", "Doe", f.phones[i], "123 Main St");
+                    return 1;
+                }
+                case CONTACT_WITH_PHONE: {
+                    consumed = f.template.withPhone(f.phones[next(f.phones.length)]);
+                    return 1;
+                }
+                case SERVICE_GET:
+                    sink += f.service.getContact(f.ids[next(f.ids.length)]).getVersion();
+                    return 1;
+                case SERVICE_UPDATE:
+                    f.service.updateContact(f.ids[next(f.ids.length)], null, null, f.phones[next(f.phones.length)], null);
+                    return 1;
+                case SERVICE_ADD_DELETE: {
+                    String contactID = spareIDs[(int) (step & (SPARE_IDS - 1))];
+                    f.service.addContact(new Contact(contactID, "John", "Doe", "1234567890", "123 Main St"));
+                    f.service.deleteContact(contactID);
+                    return 2;
+                }
+                case MIX_READ_HEAVY:
+                case MIX_WRITE_HEAVY: {
+                    int updatePercent = workload == Workload.MIX_READ_HEAVY ? 5 : 50;
+                    String contactID = f.ids[next(f.ids.length)];
+                    if (next(100) < updatePercent) {
+                        f.service.updateContact(contactID, null, null, f.phones[next(f.phones.length)], null);
+                    } else {
+                        sink += f.service.getContact(contactID).getVersion();
+                    }
+                    return 1;
+                }
+                default:
+                    throw new AssertionError(workload);
+            }
+        }
+
+        // xorshift64*: cheap, allocation-free and private to the thread.
+        private int next(int bound) {
+            seed ^= seed >>> 12;
+            seed ^= seed << 25;
+            seed ^= seed >>> 27;
+            return (int) (((seed * 0x2545F4914F6CDD1DL) >>> 33) % bound);
+        }
+    }
+
+    // Data shared by all threads of a run, built before warmup so none of it is measured.
+    private static final class Fixture {
+        final ContactService service;
+        final String[] ids;        // IDs of the pre-loaded contacts, or unused IDs if there is no service.
+        final String[] phones;     // Valid phone numbers to write.
+        final String[][] spareIDs; // Per thread, IDs that are never pre-loaded.
+        final Contact template = new Contact("template", "John", "Doe", "1234567890", "123 Main St");
+
+        Fixture(String storeName, int contactCount, int phoneCount, int threadCount) {
+            phones = new String[Math.min(Math.max(phoneCount, 1), 1 << 16)];
+            char[] digits = new char[10];
+            for (int i = 0; i < phones.length; i++) {
+                long value = 5_550_000_000L + i;
+                for (int d = 9; d >= 0; d--, value /= 10) {
+                    digits[d] = (char) ('0' + value % 10);
+                }
+                phones[i] = new String(digits);
+            }
+            ids = new String[Math.max(contactCount, phones.length)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = Integer.toString(i);
+            }
+            spareIDs = new String[threadCount][SPARE_IDS];
+            for (int t = 0; t < threadCount; t++) {
+                for (int i = 0; i < SPARE_IDS; i++) {
+                    spareIDs[t][i] = "s" + t + "-" + i;
+                }
+            }
+
+            if (contactCount == 0) {
+                service = null;
+                return;
+            }
+            service = new ContactService(store(storeName, contactCount));
+            for (int i = 0; i < contactCount; i++) {
+                service.addContact(new Contact(ids[i], "John", "Doe", phones[i % phones.length], "123 Main St"));
+            }
+        }
+    }
+
+    // Creates the named store sized for the contact count. Also used by ContactLoadDriver.
+    static ContactStore store(String name, int contactCount) {
+        switch (name) {
+            case "map":
+                return new MapContactStore(contactCount);
+            case "versioned":
+                return new VersionedContactStore(contactCount);
+            case "packed":
+                return new PackedContactStore(contactCount);
+            case "cached":
+                // A cache holding a tenth of the contacts in front of an in-memory backend.
+                return new CachingContactStore(new InMemoryContactBackend(), Math.max(1, contactCount / 10));
+            default:
+                throw new IllegalArgumentException("Unknown store: " + name);
+        }
+    }
+
+    private static final class Iteration {
+        long operations;
+        long nanos;
+        long allocatedBytes;
+        long[] samples;
+    }
+
+    // Returns the HotSpot thread bean if it can report allocation, or null.
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static int[] parseInts(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim().replace("_", ""))).toArray();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("benchmarks", "all");
+        options.put("contacts", "1000,100000,1000000");
+        options.put("threads", "1,4");
+        options.put("store", "map");
+        options.put("warmup", "3");
+        options.put("iterations", "5");
+        options.put("millis", "1000");
+        options.put("jvm-args", "-Xmx4g");
+        options.put("fork", "true");
+        options.put("metrics", "false");
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value but got: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            // Only out and the forked child's run have no default, so a misspelled name is caught here.
+            if (!options.containsKey(name) && !name.equals("out") && !name.equals("run")) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            options.put(name, args[++i]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,57 @@
+// Point-in-time counters of a CachingContactStore, used to size the cache.
+// Every lookup, including the existence check made by an add, is either a hit or a miss. A miss that joined a load
+// already in flight for the same ID does not add to the load count.
+public final class ContactCacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long loadCount;
+    private final long evictionCount;
+    private final long expirationCount;
+    private final long pendingWriteCount;
+    private final int cachedCount;
+
+    ContactCacheStats(long hitCount, long missCount, long loadCount, long evictionCount, long expirationCount,
+                      long pendingWriteCount, int cachedCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadCount = loadCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+        this.pendingWriteCount = pendingWriteCount;
+        this.cachedCount = cachedCount;
+    }
+
+    // Lookups answered from the cache.
+    public long getHitCount() { return hitCount; }
+
+    // Lookups that had to go to the backend, or wait for another thread's load.
+    public long getMissCount() { return missCount; }
+
+    // Calls made to ContactBackend.load.
+    public long getLoadCount() { return loadCount; }
+
+    // Contacts dropped to stay within the maximum size.
+    public long getEvictionCount() { return evictionCount; }
+
+    // Contacts dropped because they outlived the time to live.
+    public long getExpirationCount() { return expirationCount; }
+
+    // Changes not yet written to the backend. Always 0 in write-through mode.
+    public long getPendingWriteCount() { return pendingWriteCount; }
+
+    // Contacts currently held in the cache.
+    public int getCachedCount() { return cachedCount; }
+
+    // Fraction of lookups answered from the cache, or 1 if there were none.
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 1.0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hitCount + " misses=" + missCount + " loads=" + loadCount + " evictions=" + evictionCount
+                + " expirations=" + expirationCount + " pendingWrites=" + pendingWriteCount + " cached=" + cachedCount
+                + String.format(" hitRate=%.3f", getHitRate());
+    }
+}
@@ -0,0 +1,33 @@
+// One change made by a ContactService, as delivered by a ContactChangeFeed.
+// Carries the contact before and after the change, so subscribers see the old and new value of every field, and the
+// feed's sequence number, which increases by one per change and is the position to resume from.
+public final class ContactChangeEvent {
+    // What the change did.
+    public enum Type { ADDED, UPDATED, DELETED }
+
+    private final long sequence;
+    private final Type type;
+    private final Contact before;   // Null for ADDED.
+    private final Contact after;    // Null for DELETED.
+
+    ContactChangeEvent(long sequence, Contact before, Contact after) {
+        this.sequence = sequence;
+        this.type = before == null ? Type.ADDED : after == null ? Type.DELETED : Type.UPDATED;
+        this.before = before;
+        this.after = after;
+    }
+
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public Contact getBefore() { return before; }
+    public Contact getAfter() { return after; }
+
+    public String getContactID() {
+        return after != null ? after.getContactID() : before.getContactID();
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + getContactID();
+    }
+}
@@ -0,0 +1,262 @@
+// Change-data-capture feed of a ContactService: every add, update and delete becomes a ContactChangeEvent with a
+// sequence number, delivered asynchronously to any number of subscribers.
+//
+// Events go into a fixed-size ring. A writer claims the next sequence number with one atomic increment and stores
+// the event in that sequence's slot; it never waits for subscribers, so a slow subscriber cannot stall writes.
+// Each subscriber has its own thread that follows the ring in sequence order and hands over every event already
+// published in one batch. A subscriber that falls more than the ring's capacity behind loses the overwritten
+// events: it is told about the gap through onGap and carries on from the oldest event still held.
+//
+// Each slot holds an immutable event that carries its own sequence number, which tells a reader whether the slot is
+// not yet written (older number), current, or already overwritten (newer number). No other coordination is needed.
+//
+// The ring keeps the most recent capacity events, so a subscriber that reconnects can resume from the sequence
+// number after the last event it processed, as long as it has not fallen that far behind. Sequence numbers start
+// at 0 when the feed is attached and are not kept across restarts.
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class ContactChangeFeed implements ContactListener, Closeable {
+    // Receives events on the subscription's own thread, one batch at a time.
+    public interface Subscriber {
+        // Called with events in sequence order, never more than the subscription's batch size at once.
+        void onEvents(List<ContactChangeEvent> events);
+
+        // Called when the events from firstLost to lastLost (inclusive) were overwritten before this subscriber
+        // read them. A subscriber that needs every change should resynchronize, for example by rescanning.
+        default void onGap(long firstLost, long lastLost) {
+        }
+    }
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final int SPINS = 100;                              // Idle polls before yielding.
+    private static final int YIELDS = 100;                             // Idle yields before parking.
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private final ContactService service;
+    private final AtomicReferenceArray<ContactChangeEvent> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();       // Next sequence number to claim.
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    private ContactChangeFeed(ContactService service, int capacity) {
+        this.service = service;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    // Starts a feed of the service's changes holding the last DEFAULT_CAPACITY events.
+    public static ContactChangeFeed attach(ContactService service) {
+        return attach(service, DEFAULT_CAPACITY);
+    }
+
+    // Starts a feed of the service's changes holding the last capacity events (a power of two).
+    // Only changes made from now on are published. A subscriber that also needs the existing contacts should
+    // subscribe first and then scan the service; events about contacts it already scanned may then repeat what it
+    // has seen, which the contacts' version numbers make easy to ignore.
+    // Changes are published while the change is being made, so register the feed after any listener that may
+    // reject changes, or a rejected change may still be published.
+    public static ContactChangeFeed attach(ContactService service, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        ContactChangeFeed feed = new ContactChangeFeed(service, capacity);
+        service.addListener(feed, false);
+        return feed;
+    }
+
+    @Override
+    public void contactAdded(Contact contact) {
+        publish(null, contact);
+    }
+
+    @Override
+    public void contactUpdated(Contact before, Contact after) {
+        publish(before, after);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        publish(contact, null);
+    }
+
+    // Called inside the service's per-contact critical section, so events about one contact are numbered in the
+    // order the changes were made.
+    private void publish(Contact before, Contact after) {
+        long sequence = nextSequence.getAndIncrement();
+        ring.lazySet((int) sequence & mask, new ContactChangeEvent(sequence, before, after));
+    }
+
+    // Sequence number the next change will get. Subscribing from here delivers only changes made after this call.
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    // Oldest sequence number that may still be held in the ring.
+    public long getOldestSequence() {
+        return Math.max(0, nextSequence.get() - ring.length());
+    }
+
+    // Delivers every change made from now on.
+    public Subscription subscribe(Subscriber subscriber) {
+        return subscribe(subscriber, getNextSequence(), DEFAULT_BATCH_SIZE);
+    }
+
+    // Delivers changes starting at fromSequence, typically the sequence after the last event a reconnecting
+    // subscriber processed. If that event is no longer held, onGap reports the missing range first.
+    // Throws IllegalArgumentException if fromSequence is past getNextSequence(), such as a corrupted or stale cursor
+    // from another feed, since no event with that number has been published.
+    public Subscription subscribe(Subscriber subscriber, long fromSequence) {
+        return subscribe(subscriber, fromSequence, DEFAULT_BATCH_SIZE);
+    }
+
+    public Subscription subscribe(Subscriber subscriber, long fromSequence, int batchSize) {
+        if (closed) {
+            throw new IllegalStateException("Change feed is closed");
+        }
+        if (fromSequence < 0 || batchSize < 1) {
+            throw new IllegalArgumentException("Sequence cannot be negative and batch size must be at least 1");
+        }
+        long published = getNextSequence();
+        if (fromSequence > published) {
+            throw new IllegalArgumentException("Sequence " + fromSequence + " is past the next sequence " + published);
+        }
+        Subscription subscription = new Subscription(subscriber, fromSequence, batchSize);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    // Stops publishing, detaches from the service and stops every subscription after it delivers what is published.
+    @Override
+    public void close() {
+        closed = true;
+        service.removeListener(this);
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    // One subscriber's position in the feed and the thread that delivers to it.
+    public final class Subscription implements Closeable {
+        private final Subscriber subscriber;
+        private final int batchSize;
+        private final Thread thread;
+        private volatile long next;            // Sequence number of the next event to deliver.
+        private volatile boolean stopping;
+        private volatile Throwable failure;
+
+        private Subscription(Subscriber subscriber, long fromSequence, int batchSize) {
+            this.subscriber = subscriber;
+            this.batchSize = batchSize;
+            this.next = fromSequence;
+            this.thread = new Thread(this::run, "contact-change-feed");
+            thread.setDaemon(true);
+        }
+
+        // Sequence number of the next event to be delivered; after closing, the position to resume from.
+        public long getNextSequence() {
+            return next;
+        }
+
+        // The exception thrown by the subscriber that stopped this subscription, or null.
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public boolean isActive() {
+            return thread.isAlive();
+        }
+
+        // Delivers the events already published, then stops. Waits for the delivery thread unless called from it.
+        @Override
+        public void close() {
+            stopping = true;
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                boolean interrupted = false;
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            subscriptions.remove(this);
+        }
+
+        private void run() {
+            List<ContactChangeEvent> batch = new ArrayList<>(Math.min(batchSize, 1024));
+            List<ContactChangeEvent> view = Collections.unmodifiableList(batch);
+            int idle = 0;
+            try {
+                while (true) {
+                    boolean stop = stopping; // Read before draining, so events published before close are delivered.
+                    if (drain(batch, view)) {
+                        idle = 0;
+                    } else if (stop) {
+                        return;
+                    } else if (++idle <= SPINS) {
+                        Thread.onSpinWait();
+                    } else if (idle <= SPINS + YIELDS) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+
+        // Delivers the events published from next onwards, up to batchSize of them. Returns false if there was nothing
+        // to do.
+        private boolean drain(List<ContactChangeEvent> batch, List<ContactChangeEvent> view) {
+            long sequence = next;
+            boolean skipped = false;
+            while (batch.size() < batchSize) {
+                ContactChangeEvent event = ring.get((int) sequence & mask);
+                if (event == null || event.getSequence() < sequence) {
+                    break; // Not published yet.
+                }
+                if (event.getSequence() > sequence) {
+                    // Overwritten: skip to the oldest event that can still be read, after delivering what we have.
+                    if (!batch.isEmpty()) {
+                        break;
+                    }
+                    long oldest = Math.max(sequence + 1, nextSequence.get() - ring.length() + 1);
+                    subscriber.onGap(sequence, oldest - 1);
+                    next = sequence = oldest;
+                    skipped = true;
+                    continue;
+                }
+                batch.add(event);
+                sequence++;
+            }
+            if (batch.isEmpty()) {
+                return skipped;
+            }
+            try {
+                subscriber.onEvents(view);
+            } finally {
+                batch.clear();
+            }
+            next = sequence;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class ContactChangeFeedTest {
+
+    // Test case to verify that subscribers receive every change in order with before and after values.
+    @Test
+    void testDeliversChangesInOrder() {
+        ContactService service = new ContactService();
+        ContactChangeFeed feed = ContactChangeFeed.attach(service);
+        List<ContactChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+        ContactChangeFeed.Subscription subscription = feed.subscribe(events::addAll);
+
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        service.updateContact("1", "Johnny", null, null, null);
+        service.deleteContact("1");
+        assertThrows(IllegalArgumentException.class, () -> service.deleteContact("1"));
+        subscription.close();
+
+        assertEquals(3, events.size());
+        assertEquals(ContactChangeEvent.Type.ADDED, events.get(0).getType());
+        assertNull(events.get(0).getBefore());
+        assertEquals(ContactChangeEvent.Type.UPDATED, events.get(1).getType());
+        assertEquals("John", events.get(1).getBefore().getFirstName());
+        assertEquals("Johnny", events.get(1).getAfter().getFirstName());
+        assertEquals(ContactChangeEvent.Type.DELETED, events.get(2).getType());
+        assertEquals("1", events.get(2).getContactID());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals((long) i, events.get(i).getSequence());
+        }
+        assertEquals(3L, subscription.getNextSequence());
+        feed.close();
+    }
+
+    // Test case to verify that a subscriber can resume from a sequence number after reconnecting.
+    @Test
+    void testResumeFromSequence() {
+        ContactService service = new ContactService();
+        ContactChangeFeed feed = ContactChangeFeed.attach(service, 1024);
+        for (int i = 0; i < 100; i++) {
+            service.addContact(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+        }
+        List<ContactChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+        ContactChangeFeed.Subscription subscription = feed.subscribe(events::addAll, 60);
+        subscription.close();
+
+        assertEquals(40, events.size());
+        assertEquals(60L, events.get(0).getSequence());
+        assertEquals("99", events.get(39).getContactID());
+        feed.close();
+    }
+
+    // Test case to verify that a cursor past the last published event is rejected rather than waited for.
+    @Test
+    void testRejectsFutureSequence() {
+        ContactService service = new ContactService();
+        ContactChangeFeed feed = ContactChangeFeed.attach(service, 16);
+        for (int i = 0; i < 10; i++) {
+            service.addContact(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+        }
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(events -> { }, 11));
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(events -> { }, 1_000_000));
+
+        // Resuming exactly at the next sequence is allowed and delivers only later changes.
+        List<ContactChangeEvent> events = Collections.synchronizedList(new ArrayList<>());
+        ContactChangeFeed.Subscription subscription = feed.subscribe(events::addAll, 10);
+        service.addContact(new Contact("10", "First", "Last", "1234567890", "1 Main St"));
+        subscription.close();
+        assertEquals(1, events.size());
+        assertEquals(10L, events.get(0).getSequence());
+        feed.close();
+    }
+
+    // Test case to verify that a slow subscriber never blocks writers and is told which events it missed.
+    @Test
+    void testSlowSubscriberIsLapped() throws InterruptedException {
+        ContactService service = new ContactService();
+        ContactChangeFeed feed = ContactChangeFeed.attach(service, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+        List<long[]> gaps = Collections.synchronizedList(new ArrayList<>());
+        ContactChangeFeed.Subscription subscription = feed.subscribe(new ContactChangeFeed.Subscriber() {
+            @Override
+            public void onEvents(List<ContactChangeEvent> events) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (ContactChangeEvent event : events) {
+                    sequences.add(event.getSequence());
+                }
+            }
+
+            @Override
+            public void onGap(long firstLost, long lastLost) {
+                gaps.add(new long[] {firstLost, lastLost});
+            }
+        }, 0, 4);
+
+        service.addContact(new Contact("first", "First", "Last", "1234567890", "1 Main St"));
+        TimeUnit.MILLISECONDS.sleep(50); // Let the subscriber take the first event and block on it.
+        for (int i = 0; i < 1000; i++) {
+            service.addContact(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+        }
+        release.countDown();
+        subscription.close();
+
+        assertFalse(gaps.isEmpty());
+        assertEquals(1001L, subscription.getNextSequence());
+        assertEquals(1000L, (long) sequences.get(sequences.size() - 1));
+        long lost = 0;
+        for (long[] gap : gaps) {
+            lost += gap[1] - gap[0] + 1;
+        }
+        assertEquals(1001L, sequences.size() + lost);
+        feed.close();
+    }
+}
@@ -0,0 +1,37 @@
+// Identifies why a contact operation was rejected, so callers can branch on a code instead of matching message text.
+// The first group covers field validation; the rest are reported by batch operations and bulk imports.
+public enum ContactError {
+    INVALID_CONTACT_ID("Invalid Contact ID"),
+    INVALID_FIRST_NAME("Invalid First Name"),
+    INVALID_LAST_NAME("Invalid Last Name"),
+    INVALID_PHONE("Invalid Phone Number"),
+    INVALID_ADDRESS("Invalid Address"),
+    DUPLICATE_CONTACT_ID("Contact ID already exists"),
+    CONTACT_NOT_FOUND("Contact ID does not exist"),
+    BATCH_ABORTED("Batch aborted because another operation failed"),
+    VERSION_CONFLICT("Contact was changed by another update"),
+    MALFORMED_RECORD("Malformed record");
+
+    private final String message; // Message used when the error is reported as an exception.
+
+    ContactError(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() { return message; }
+
+    // Returns the exception ContactService throws for this error: InvalidContactException for a field that fails
+    // validation, IllegalArgumentException otherwise.
+    public IllegalArgumentException toException() {
+        switch (this) {
+            case INVALID_CONTACT_ID:
+            case INVALID_FIRST_NAME:
+            case INVALID_LAST_NAME:
+            case INVALID_PHONE:
+            case INVALID_ADDRESS:
+                return new InvalidContactException(this);
+            default:
+                return new IllegalArgumentException(message);
+        }
+    }
+}
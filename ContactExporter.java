@@ -0,0 +1,223 @@
+// Streams every contact in a ContactService to a CSV or JSON file with bounded memory.
+//
+// Contacts are encoded straight into one reusable direct buffer that is written to the file whenever it fills, so
+// the export never holds more than the buffer and one contact at a time. The files written here are read back by
+// ContactImporter.
+//
+// The export does not block writers. When the store supports snapshots the file is a point-in-time copy of all
+// contacts; otherwise each row is a consistent contact, but contacts changed while the export runs may or may not
+// be included.
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+public final class ContactExporter {
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final byte[] CSV_HEADER = "contactID,firstName,lastName,phone,address\n".getBytes(StandardCharsets.US_ASCII);
+    private static final String[] JSON_NAMES = {"{\"contactID\":", ",\"firstName\":", ",\"lastName\":", ",\"phone\":", ",\"address\":"};
+
+    private ContactExporter() {
+    }
+
+    // Writes all contacts as CSV with a header line. Returns the number of contacts written.
+    public static long exportCsv(ContactService service, Path file) throws IOException {
+        return exportFile(service, file, ContactImporter.Format.CSV);
+    }
+
+    // Writes all contacts as a JSON array with one object per line. Returns the number of contacts written.
+    public static long exportJson(ContactService service, Path file) throws IOException {
+        return exportFile(service, file, ContactImporter.Format.JSON);
+    }
+
+    public static long exportFile(ContactService service, Path file, ContactImporter.Format format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long count = exportTo(service, channel, format);
+            channel.force(false);
+            return count;
+        }
+    }
+
+    public static long exportTo(ContactService service, WritableByteChannel channel, ContactImporter.Format format)
+            throws IOException {
+        Encoder encoder = new Encoder(channel);
+        if (format == ContactImporter.Format.CSV) {
+            encoder.put(CSV_HEADER);
+        } else {
+            encoder.put((byte) '[');
+        }
+        // The IOException is carried out of the Consumer unchecked and rethrown here.
+        Consumer<Contact> row = contact -> {
+            try {
+                if (format == ContactImporter.Format.CSV) {
+                    encoder.csvRow(contact);
+                } else {
+                    encoder.jsonRow(contact);
+                }
+            } catch (IOException e) {
+                throw new ExportFailure(e);
+            }
+        };
+        ContactSnapshot snapshot = service.supportsSnapshots() ? service.snapshot() : null;
+        try {
+            if (snapshot != null) {
+                snapshot.forEach(row);
+            } else {
+                service.forEachContact(row);
+            }
+        } catch (ExportFailure e) {
+            throw (IOException) e.getCause();
+        } finally {
+            if (snapshot != null) {
+                snapshot.close();
+            }
+        }
+        if (format == ContactImporter.Format.JSON) {
+            encoder.put((byte) '\n');
+            encoder.put((byte) ']');
+            encoder.put((byte) '\n');
+        }
+        encoder.flush();
+        return encoder.rows;
+    }
+
+    // Encodes rows into the buffer, flushing it to the channel whenever it is full.
+    private static final class Encoder {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private long rows;
+
+        Encoder(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void csvRow(Contact contact) throws IOException {
+            csvField(contact.getContactID());
+            put((byte) ',');
+            csvField(contact.getFirstName());
+            put((byte) ',');
+            csvField(contact.getLastName());
+            put((byte) ',');
+            csvField(contact.getPhone());
+            put((byte) ',');
+            csvField(contact.getAddress());
+            put((byte) '\n');
+            rows++;
+        }
+
+        void jsonRow(Contact contact) throws IOException {
+            put((byte) (rows == 0 ? '\n' : ','));
+            if (rows > 0) {
+                put((byte) '\n');
+            }
+            String[] values = {contact.getContactID(), contact.getFirstName(), contact.getLastName(),
+                    contact.getPhone(), contact.getAddress()};
+            for (int i = 0; i < values.length; i++) {
+                ascii(JSON_NAMES[i]);
+                jsonString(values[i]);
+            }
+            put((byte) '}');
+            rows++;
+        }
+
+        // Quotes a field only if it contains a comma, quote or line break, doubling any quotes inside it.
+        private void csvField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                text(value);
+                return;
+            }
+            put((byte) '"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '"') {
+                    text(value.substring(start, i + 1));
+                    put((byte) '"');
+                    start = i + 1;
+                }
+            }
+            text(value.substring(start));
+            put((byte) '"');
+        }
+
+        private void jsonString(String value) throws IOException {
+            put((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    put((byte) '\\');
+                    put((byte) c);
+                } else if (c < 0x20) {
+                    ascii(String.format("\\u%04x", (int) c));
+                } else if (c < 0x80) {
+                    put((byte) c);
+                } else {
+                    // Encode the run of non-ASCII text in one go so surrogate pairs stay together.
+                    int end = i + 1;
+                    while (end < value.length() && value.charAt(end) >= 0x80) {
+                        end++;
+                    }
+                    text(value.substring(i, end));
+                    i = end - 1;
+                }
+            }
+            put((byte) '"');
+        }
+
+        // Writes text as UTF-8. Contact fields are short and almost always ASCII, which is copied byte by byte.
+        private void text(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) >= 0x80) {
+                    put(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            ascii(value);
+        }
+
+        private void ascii(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                put((byte) value.charAt(i));
+            }
+        }
+
+        void put(byte b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(b);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                put(b);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    // Carries an IOException out of the forEachContact callback.
+    private static final class ExportFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ExportFailure(IOException cause) {
+            super(cause);
+        }
+    }
+}
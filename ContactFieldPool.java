@@ -0,0 +1,183 @@
+// Optional pool that lets contacts share one String for each distinct first name, last name and address.
+// Across millions of contacts these values repeat heavily ("John", "Smith", "12 Main St"), yet every contact
+// parsed from a file or a request carries its own copies. While the pool is enabled, Contact replaces each of those
+// fields with the pooled copy of the value when the contact is created or changed, and the caller's copy becomes
+// garbage. IDs and phone numbers are almost always unique, so they are left alone.
+//
+// The pool is a ConcurrentHashMap of weak references, so lookups from many threads do not block each other and a
+// value no contact uses any more is collected and its entry dropped. Pooling happens only when a contact is built;
+// getters return the field as before, so reads such as getContact cost exactly the same.
+//
+// The pool is off by default. stats() reports how much it saves: every lookup that returns a pooled copy in place
+// of an equal String counts that String's estimated size as saved. The count is cumulative, so it is an upper bound
+// once pooled contacts have been deleted or replaced; the pool's own per-value cost is reported beside it.
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ContactFieldPool {
+    // Estimated heap cost of one pooled value: the map node plus the weak reference entry.
+    static final int ENTRY_BYTES = 32 + 40;
+
+    private static final ConcurrentHashMap<Object, Entry> POOL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<String> COLLECTED = new ReferenceQueue<>();
+    private static final LongAdder LOOKUPS = new LongAdder();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder BYTES_SAVED = new LongAdder();
+    private static volatile boolean enabled;
+
+    private ContactFieldPool() {
+    }
+
+    // Turns pooling on or off for contacts created from now on. Contacts already created keep their Strings.
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns the pooled String equal to value, adding value to the pool if there is none. Returns value itself
+    // while the pool is disabled, and null for null.
+    public static String intern(String value) {
+        if (!enabled || value == null) {
+            return value;
+        }
+        LOOKUPS.increment();
+        Entry entry = POOL.get(new Lookup(value));
+        String pooled;
+        if (entry != null && (pooled = entry.get()) != null) {
+            return hit(value, pooled);
+        }
+        expungeCollected();
+        Entry added = new Entry(value);
+        while ((entry = POOL.putIfAbsent(added, added)) != null) {
+            if ((pooled = entry.get()) != null) {
+                return hit(value, pooled);
+            }
+            POOL.remove(entry, entry); // Collected but not yet expunged.
+        }
+        return value;
+    }
+
+    // Returns the pool's counters.
+    public static Stats stats() {
+        expungeCollected();
+        return new Stats(LOOKUPS.sum(), HITS.sum(), BYTES_SAVED.sum(), POOL.size());
+    }
+
+    // Empties the pool and resets its counters, leaving the enabled state as it is.
+    static void clear() {
+        POOL.clear();
+        LOOKUPS.reset();
+        HITS.reset();
+        BYTES_SAVED.reset();
+    }
+
+    private static String hit(String value, String pooled) {
+        if (pooled != value) {
+            HITS.increment();
+            BYTES_SAVED.add(stringBytes(value));
+        }
+        return pooled;
+    }
+
+    // Estimated size of a String holding Latin-1 text: the String object plus its byte array, 8-byte aligned.
+    static long stringBytes(String value) {
+        return 24 + ((16 + value.length() + 7) & ~7);
+    }
+
+    private static void expungeCollected() {
+        Object collected;
+        while ((collected = COLLECTED.poll()) != null) {
+            POOL.remove(collected, collected);
+        }
+    }
+
+    // A pooled value. Two entries are equal while both still hold equal Strings; a cleared entry equals only itself.
+    private static final class Entry extends WeakReference<String> {
+        private final int hash;
+
+        Entry(String value) {
+            super(value, COLLECTED);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (!(other instanceof Entry)) {
+                return false;
+            }
+            String value = get();
+            return value != null && value.equals(((Entry) other).get());
+        }
+    }
+
+    // Key used to look a String up without creating an Entry for it.
+    private static final class Lookup {
+        private final String value;
+
+        Lookup(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry && value.equals(((Entry) other).get());
+        }
+    }
+
+    // Counters at one moment.
+    public static final class Stats {
+        private final long lookups;
+        private final long hits;
+        private final long bytesSaved;
+        private final int pooledValues;
+
+        Stats(long lookups, long hits, long bytesSaved, int pooledValues) {
+            this.lookups = lookups;
+            this.hits = hits;
+            this.bytesSaved = bytesSaved;
+            this.pooledValues = pooledValues;
+        }
+
+        // Fields looked up in the pool.
+        public long getLookups() { return lookups; }
+
+        // Lookups that replaced a String with an equal pooled one.
+        public long getHits() { return hits; }
+
+        // Estimated bytes of the Strings replaced by pooled copies.
+        public long getBytesSaved() { return bytesSaved; }
+
+        // Distinct values in the pool, not counting ones collected but not yet dropped.
+        public int getPooledValues() { return pooledValues; }
+
+        // Estimated bytes the pool itself uses, not counting the pooled Strings, which contacts would hold anyway.
+        public long getPoolBytes() { return (long) pooledValues * ENTRY_BYTES; }
+
+        // Saved bytes minus what the pool costs.
+        public long getNetBytesSaved() { return bytesSaved - getPoolBytes(); }
+
+        @Override
+        public String toString() {
+            return String.format("lookups=%d hits=%d pooled=%d saved=%dB pool=%dB net=%dB",
+                    lookups, hits, pooledValues, bytesSaved, getPoolBytes(), getNetBytesSaved());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ContactFieldPoolTest {
+
+    // Test case to verify that equal names and addresses share one String while the pool is enabled.
+    @Test
+    void testContactsShareFields() {
+        ContactFieldPool.clear();
+        ContactFieldPool.setEnabled(true);
+        try {
+            Contact first = new Contact("1", new String("John"), new String("Smith"), "1234567890", new String("1 Main St"));
+            Contact second = new Contact("2", new String("John"), new String("Smith"), "1234567891", new String("1 Main St"));
+            assertSame(first.getFirstName(), second.getFirstName());
+            assertSame(first.getLastName(), second.getLastName());
+            assertSame(first.getAddress(), second.getAddress());
+
+            // Changed fields are pooled too, and so are contacts made by tryCreate and update.
+            Contact renamed = second.withLastName(new String("Jones"));
+            Contact created = Contact.tryCreate("3", new String("Jane"), new String("Jones"), "1234567892", "2 Elm St");
+            assertSame(renamed.getLastName(), created.getLastName());
+            Contact updated = created.update(new String("John"), null, null, null);
+            assertSame(first.getFirstName(), updated.getFirstName());
+
+            ContactFieldPool.Stats stats = ContactFieldPool.stats();
+            assertEquals(5, stats.getHits());
+            assertEquals(6, stats.getPooledValues());
+            assertEquals(ContactFieldPool.stringBytes("John") * 2 + ContactFieldPool.stringBytes("Smith")
+                    + ContactFieldPool.stringBytes("1 Main St") + ContactFieldPool.stringBytes("Jones"),
+                    stats.getBytesSaved());
+        } finally {
+            ContactFieldPool.setEnabled(false);
+        }
+        Contact unpooled = new Contact("4", new String("John"), "Smith", "1234567893", "1 Main St");
+        assertNotSame(ContactFieldPool.intern("John"), unpooled.getFirstName());
+        assertEquals("John", unpooled.getFirstName());
+    }
+
+    // Test case to verify that invalid fields are not pooled and decoded contacts bypass the pool.
+    @Test
+    void testInvalidAndDecodedContactsAreNotPooled() {
+        ContactFieldPool.clear();
+        ContactFieldPool.setEnabled(true);
+        try {
+            assertThrows(InvalidContactException.class,
+                    () -> new Contact("1", "Name", "Last", "1234567890", "An address far longer than thirty characters"));
+            assertEquals(0, ContactFieldPool.stats().getPooledValues());
+            Contact.decoded("1", "Name", "Last", "1234567890", "Street", 3);
+            assertEquals(0, ContactFieldPool.stats().getPooledValues());
+        } finally {
+            ContactFieldPool.setEnabled(false);
+        }
+    }
+
+    // Test case to verify that values no contact uses any more are dropped from the pool.
+    @Test
+    void testUnusedValuesAreCollected() throws InterruptedException {
+        ContactFieldPool.clear();
+        ContactFieldPool.setEnabled(true);
+        try {
+            List<Contact> contacts = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                contacts.add(new Contact(Integer.toString(i), "First" + i, "Last", "1234567890", "Street"));
+            }
+            assertEquals(1002, ContactFieldPool.stats().getPooledValues());
+            Contact kept = contacts.get(7);
+            contacts = null;
+            for (int i = 0; i < 100 && ContactFieldPool.stats().getPooledValues() > 3; i++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertEquals(3, ContactFieldPool.stats().getPooledValues());
+            assertSame(kept.getFirstName(), ContactFieldPool.intern(new String("First7")));
+        } finally {
+            ContactFieldPool.setEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// Outcome of a bulk import: how many rows were added and which rows were rejected, by line number.
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class ContactImportResult {
+    // Only the first rejected rows are kept in detail so a badly broken file cannot exhaust memory.
+    public static final int MAX_REPORTED_ERRORS = 10_000;
+
+    // One rejected row.
+    public static final class RowError {
+        private final long line;          // Line on which the row starts, counting from 1.
+        private final ContactError error; // Why the row was rejected.
+
+        RowError(long line, ContactError error) {
+            this.line = line;
+            this.error = error;
+        }
+
+        public long getLine() { return line; }
+        public ContactError getError() { return error; }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + error.getMessage();
+        }
+    }
+
+    private long importedCount;
+    private long rejectedCount;
+    private final List<RowError> errors = new ArrayList<>();
+
+    void recordImported() {
+        importedCount++;
+    }
+
+    void recordRejected(long line, ContactError error) {
+        rejectedCount++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, error));
+        }
+    }
+
+    // Number of contacts added to the service.
+    public long getImportedCount() { return importedCount; }
+
+    // Number of rows rejected, including any beyond MAX_REPORTED_ERRORS.
+    public long getRejectedCount() { return rejectedCount; }
+
+    // The rejected rows in file order, up to MAX_REPORTED_ERRORS of them.
+    public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+}
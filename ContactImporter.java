@@ -0,0 +1,537 @@
+// Streams contacts from CSV or JSON files into a ContactService with bounded memory.
+//
+// A single reader pulls the file through a FileChannel in large chunks and cuts each chunk at the last complete
+// record. Worker threads parse and validate the chunks in parallel, straight from the bytes: a row only becomes
+// Strings once its fields have been located, and only becomes a Contact if it passes ContactValidator. The calling
+// thread then adds the chunks' contacts in file order, so the result does not depend on thread timing.
+// At most a few chunks per worker are in memory at once, whatever the size of the file.
+//
+// CSV: one contact per line as contactID,firstName,lastName,phone,address, with optional RFC 4180 quoting and an
+// optional header line naming the columns.
+// JSON: objects with the string properties contactID, firstName, lastName, phone and address, either one per line
+// (JSON Lines) or inside a top-level array.
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ContactImporter {
+    // Supported file formats.
+    public enum Format { CSV, JSON }
+
+    private static final int CHUNK_BYTES = 1 << 20;        // Bytes read per chunk; a longer record is cut off and
+                                                           // reported as malformed.
+    private static final int CHUNKS_PER_THREAD = 2;        // Parsed chunks allowed to wait for the applying thread.
+    private static final int FIELDS = 5;
+
+    private final ContactService service;
+    private final int threads;
+
+    // Creates an importer that parses with one thread per available processor.
+    public ContactImporter(ContactService service) {
+        this(service, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ContactImporter(ContactService service, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1");
+        }
+        this.service = service;
+        this.threads = threads;
+    }
+
+    // Imports a CSV file. Rejected rows are reported in the result rather than thrown.
+    public ContactImportResult importCsv(Path file) throws IOException {
+        return importFile(file, Format.CSV);
+    }
+
+    // Imports a JSON or JSON Lines file. Rejected rows are reported in the result rather than thrown.
+    public ContactImportResult importJson(Path file) throws IOException {
+        return importFile(file, Format.JSON);
+    }
+
+    public ContactImportResult importFile(Path file, Format format) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return importFrom(channel, format);
+        }
+    }
+
+    // Imports from any channel, such as a socket or a decompressing stream.
+    public ContactImportResult importFrom(ReadableByteChannel channel, Format format) throws IOException {
+        ContactImportResult result = new ContactImportResult();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "contact-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+        try {
+            Splitter splitter = new Splitter(format);
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_BYTES);
+            long line = 1;
+            boolean firstChunk = true;
+            boolean end = false;
+            while (!end) {
+                end = channel.read(buffer) < 0;
+                if (buffer.hasRemaining() && !end) {
+                    continue; // Keep filling so chunks stay large.
+                }
+                int boundary = splitter.scan(buffer.array(), buffer.position());
+                if (end || boundary == 0) {
+                    boundary = buffer.position(); // Whatever is left is the last (or an oversized) record.
+                    splitter.reset();
+                }
+
+                byte[] chunk = Arrays.copyOf(buffer.array(), boundary);
+                long chunkLine = line;
+                boolean header = firstChunk;
+                inFlight.add(workers.submit(() -> parse(chunk, chunkLine, format, header)));
+                line += countLines(chunk);
+                firstChunk = false;
+
+                buffer.flip().position(boundary);
+                buffer.compact();
+                splitter.rewind(boundary);
+                while (inFlight.size() >= threads * CHUNKS_PER_THREAD) {
+                    apply(inFlight.poll(), result);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                apply(inFlight.poll(), result);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return result;
+    }
+
+    // Adds one parsed chunk's contacts in order and records its rejected rows.
+    private void apply(Future<ParsedChunk> future, ContactImportResult result) throws IOException {
+        ParsedChunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Import failed", e.getCause());
+        }
+        for (int i = 0; i < chunk.size; i++) {
+            if (chunk.errors[i] != null) {
+                service.recordRejectedAdd(chunk.errors[i]);
+                result.recordRejected(chunk.lines[i], chunk.errors[i]);
+            } else if (service.tryAddContact(chunk.contacts[i])) {
+                result.recordImported();
+            } else {
+                result.recordRejected(chunk.lines[i], ContactError.DUPLICATE_CONTACT_ID);
+            }
+        }
+    }
+
+    // Parses and validates every record in a chunk. Runs on a worker thread.
+    private static ParsedChunk parse(byte[] chunk, long firstLine, Format format, boolean mayHaveHeader) {
+        ParsedChunk parsed = new ParsedChunk();
+        String[] fields = new String[FIELDS];
+        int position = 0;
+        long line = firstLine;
+        while (position < chunk.length) {
+            // Skip separators between records, counting the lines they span. Spaces only separate JSON records;
+            // in CSV they belong to the first field.
+            byte b = chunk[position];
+            if (b == '\n' || b == '\r'
+                    || (format == Format.JSON && (b == ' ' || b == '\t' || b == ',' || b == '[' || b == ']'))) {
+                if (b == '\n') {
+                    line++;
+                }
+                position++;
+                continue;
+            }
+            long recordLine = line;
+            int end = format == Format.CSV ? parseCsv(chunk, position, fields) : parseJson(chunk, position, fields);
+            for (int i = position; i < Math.abs(end) && i < chunk.length; i++) {
+                if (chunk[i] == '\n') {
+                    line++;
+                }
+            }
+            boolean malformed = end < 0;
+            position = Math.abs(end);
+
+            if (mayHaveHeader && format == Format.CSV && recordLine == firstLine && "contactID".equalsIgnoreCase(fields[0])) {
+                continue;
+            }
+            // Validation runs once, in tryCreate; only a rejected row is checked again to find the field at fault.
+            Contact contact = malformed ? null
+                    : Contact.tryCreate(fields[0], fields[1], fields[2], fields[3], fields[4]);
+            ContactError error = malformed ? ContactError.MALFORMED_RECORD : contact != null ? null
+                    : ContactValidator.validate(fields[0], fields[1], fields[2], fields[3], fields[4]);
+            parsed.add(recordLine, contact, error);
+        }
+        return parsed;
+    }
+
+    // Parses one CSV record starting at position into fields. Returns the position after the record,
+    // negated if the record does not have exactly five well-formed fields.
+    private static int parseCsv(byte[] chunk, int position, String[] fields) {
+        Arrays.fill(fields, null);
+        int field = 0;
+        boolean malformed = false;
+        while (true) {
+            int start = position;
+            String value;
+            if (position < chunk.length && chunk[position] == '"') {
+                // Quoted field: "" stands for one quote. Only build an unescaping copy when one is present.
+                StringBuilder escaped = null;
+                int segment = ++position;
+                while (true) {
+                    if (position >= chunk.length) {
+                        malformed = true;
+                        break;
+                    }
+                    if (chunk[position] == '"') {
+                        if (position + 1 < chunk.length && chunk[position + 1] == '"') {
+                            if (escaped == null) {
+                                escaped = new StringBuilder();
+                            }
+                            escaped.append(new String(chunk, segment, position + 1 - segment, StandardCharsets.UTF_8));
+                            position += 2;
+                            segment = position;
+                            continue;
+                        }
+                        break;
+                    }
+                    position++;
+                }
+                String tail = new String(chunk, segment, Math.min(position, chunk.length) - segment, StandardCharsets.UTF_8);
+                value = escaped == null ? tail : escaped.append(tail).toString();
+                position++; // Closing quote.
+                if (position < chunk.length && chunk[position] != ',' && chunk[position] != '\n' && chunk[position] != '\r') {
+                    malformed = true;
+                }
+                while (position < chunk.length && chunk[position] != ',' && chunk[position] != '\n') {
+                    position++;
+                }
+            } else {
+                while (position < chunk.length && chunk[position] != ',' && chunk[position] != '\n') {
+                    position++;
+                }
+                int end = position;
+                if (end > start && chunk[end - 1] == '\r') {
+                    end--;
+                }
+                value = new String(chunk, start, end - start, StandardCharsets.UTF_8);
+            }
+
+            if (field < FIELDS) {
+                fields[field] = value;
+            }
+            field++;
+            if (position >= chunk.length || chunk[position] == '\n') {
+                int next = Math.min(position + 1, chunk.length);
+                return malformed || field != FIELDS ? -next : next;
+            }
+            position++; // Comma.
+        }
+    }
+
+    // Parses one JSON object starting at position into fields. Returns the position after the object,
+    // negated if it is not a well-formed object of string (or null) properties.
+    private static int parseJson(byte[] chunk, int position, String[] fields) {
+        Arrays.fill(fields, null);
+        int[] cursor = {position};
+        if (chunk[position] != '{') {
+            return -skipRecord(chunk, position);
+        }
+        cursor[0]++;
+        skipWhitespace(chunk, cursor);
+        if (cursor[0] < chunk.length && chunk[cursor[0]] == '}') {
+            return cursor[0] + 1;
+        }
+        while (true) {
+            skipWhitespace(chunk, cursor);
+            String key = readJsonString(chunk, cursor);
+            skipWhitespace(chunk, cursor);
+            if (key == null || cursor[0] >= chunk.length || chunk[cursor[0]++] != ':') {
+                return -skipRecord(chunk, position);
+            }
+            skipWhitespace(chunk, cursor);
+            String value;
+            if (startsWith(chunk, cursor[0], "null")) {
+                value = null;
+                cursor[0] += 4;
+            } else {
+                value = readJsonString(chunk, cursor);
+                if (value == null) {
+                    return -skipRecord(chunk, position);
+                }
+            }
+            int field = fieldIndex(key);
+            if (field >= 0) {
+                fields[field] = value;
+            }
+            skipWhitespace(chunk, cursor);
+            if (cursor[0] >= chunk.length) {
+                return -chunk.length;
+            }
+            byte b = chunk[cursor[0]++];
+            if (b == '}') {
+                return cursor[0];
+            }
+            if (b != ',') {
+                return -skipRecord(chunk, position);
+            }
+        }
+    }
+
+    private static int fieldIndex(String key) {
+        switch (key) {
+            case "contactID": return 0;
+            case "firstName": return 1;
+            case "lastName": return 2;
+            case "phone": return 3;
+            case "address": return 4;
+            default: return -1;
+        }
+    }
+
+    // Reads a JSON string at the cursor, or returns null if there is none. Strings without escapes are decoded
+    // straight from the bytes; only escaped strings go through a builder.
+    private static String readJsonString(byte[] chunk, int[] cursor) {
+        int position = cursor[0];
+        if (position >= chunk.length || chunk[position] != '"') {
+            return null;
+        }
+        int start = ++position;
+        StringBuilder escaped = null;
+        while (position < chunk.length && chunk[position] != '"') {
+            if (chunk[position] != '\\') {
+                position++;
+                continue;
+            }
+            if (escaped == null) {
+                escaped = new StringBuilder();
+            }
+            escaped.append(new String(chunk, start, position - start, StandardCharsets.UTF_8));
+            if (position + 1 >= chunk.length) {
+                return null;
+            }
+            char c = (char) chunk[position + 1];
+            switch (c) {
+                case 'b': escaped.append('\b'); break;
+                case 'f': escaped.append('\f'); break;
+                case 'n': escaped.append('\n'); break;
+                case 'r': escaped.append('\r'); break;
+                case 't': escaped.append('\t'); break;
+                case 'u':
+                    if (position + 6 > chunk.length) {
+                        return null;
+                    }
+                    try {
+                        escaped.append((char) Integer.parseInt(new String(chunk, position + 2, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    position += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    escaped.append(c);
+                    break;
+                default:
+                    return null;
+            }
+            position += 2;
+            start = position;
+        }
+        if (position >= chunk.length) {
+            return null;
+        }
+        String tail = new String(chunk, start, position - start, StandardCharsets.UTF_8);
+        cursor[0] = position + 1;
+        return escaped == null ? tail : escaped.append(tail).toString();
+    }
+
+    private static void skipWhitespace(byte[] chunk, int[] cursor) {
+        while (cursor[0] < chunk.length && (chunk[cursor[0]] == ' ' || chunk[cursor[0]] == '\t'
+                || chunk[cursor[0]] == '\n' || chunk[cursor[0]] == '\r')) {
+            cursor[0]++;
+        }
+    }
+
+    private static boolean startsWith(byte[] chunk, int position, String text) {
+        if (position + text.length() > chunk.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (chunk[position + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Finds the end of a malformed JSON record: the brace closing the object it starts with, or the end of the line
+    // if it does not start with one or the object is not closed on it. Only this record is skipped; the rest of the
+    // chunk is parsed as usual.
+    private static int skipRecord(byte[] chunk, int position) {
+        int depth = 0;
+        boolean inString = false;
+        boolean escape = false;
+        for (int i = position; i < chunk.length; i++) {
+            byte b = chunk[i];
+            if (b == '\n') {
+                if (depth == 0 || inString) {
+                    return i + 1; // JSON strings cannot span lines, so an open one ends the record here.
+                }
+            } else if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (b == '\\') {
+                    escape = true;
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '{') {
+                depth++;
+            } else if (b == '}' && depth > 0 && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return chunk.length;
+    }
+
+    private static long countLines(byte[] chunk) {
+        long lines = 0;
+        for (byte b : chunk) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    // Finds record boundaries in the reader's buffer. It remembers where it stopped and its quoting state, so each
+    // byte is scanned once even when a record spans several reads.
+    private static final class Splitter {
+        private final Format format;
+        private int scanned;          // Bytes of the buffer already scanned.
+        private boolean inString;     // Inside a CSV quoted field or a JSON string.
+        private boolean escape;       // Previous byte was a backslash inside a JSON string.
+        private int depth;            // JSON object nesting depth.
+
+        Splitter(Format format) {
+            this.format = format;
+        }
+
+        // Scans up to limit and returns the position just after the last complete record, or 0 if there is none.
+        int scan(byte[] bytes, int limit) {
+            int boundary = 0;
+            for (int i = scanned; i < limit; i++) {
+                byte b = bytes[i];
+                if (format == Format.CSV) {
+                    if (b == '"') {
+                        inString = !inString;
+                    } else if (b == '\n' && !inString) {
+                        boundary = i + 1;
+                    }
+                } else if (inString) {
+                    if (escape) {
+                        escape = false;
+                    } else if (b == '\\') {
+                        escape = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{') {
+                    depth++;
+                } else if (b == '}' && depth > 0 && --depth == 0) {
+                    boundary = i + 1;
+                } else if (b == '\n' && depth == 0) {
+                    boundary = i + 1;
+                }
+            }
+            // Bytes after the boundary belong to the next chunk and will be rescanned from its start.
+            if (boundary > 0) {
+                rescanFrom(bytes, boundary, limit);
+            } else {
+                scanned = limit;
+            }
+            return boundary;
+        }
+
+        // Called after the bytes before boundary were handed off and the rest moved to the front of the buffer.
+        void rewind(int boundary) {
+            scanned = Math.max(0, scanned - boundary);
+        }
+
+        void reset() {
+            scanned = 0;
+            inString = false;
+            escape = false;
+            depth = 0;
+        }
+
+        // Recomputes the state at the boundary by rescanning the bytes after it from a clean state.
+        private void rescanFrom(byte[] bytes, int boundary, int limit) {
+            reset();
+            scanned = boundary;
+            for (int i = boundary; i < limit; i++) {
+                byte b = bytes[i];
+                if (format == Format.CSV) {
+                    if (b == '"') {
+                        inString = !inString;
+                    }
+                } else if (inString) {
+                    if (escape) {
+                        escape = false;
+                    } else if (b == '\\') {
+                        escape = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{') {
+                    depth++;
+                } else if (b == '}' && depth > 0) {
+                    depth--;
+                }
+            }
+            scanned = limit;
+        }
+    }
+
+    // The parsed rows of one chunk in file order: each row has either a contact or an error.
+    private static final class ParsedChunk {
+        long[] lines = new long[256];
+        Contact[] contacts = new Contact[256];
+        ContactError[] errors = new ContactError[256];
+        int size;
+
+        void add(long line, Contact contact, ContactError error) {
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+                contacts = Arrays.copyOf(contacts, size * 2);
+                errors = Arrays.copyOf(errors, size * 2);
+            }
+            lines[size] = line;
+            contacts[size] = contact;
+            errors[size] = error;
+            size++;
+        }
+    }
+}
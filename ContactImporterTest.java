@@ -0,0 +1,153 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class ContactImporterTest {
+
+    // Test case to verify that valid CSV rows are added and invalid rows are reported by line number.
+    @Test
+    void testImportCsvReportsBadRows() throws IOException {
+        Path file = write("contacts.csv",
+                "contactID,firstName,lastName,phone,address\n"
+                + "1,John,Doe,1234567890,123 Main St\n"
+                + "2,Jane,Doe,12345,456 Park Ave\n"
+                + "3,Jim,Beam\n"
+                + "\n"
+                + "4,Jill,Hill,1234567893,\"12 Hill Rd, Apt 2\"\r\n");
+        ContactService service = new ContactService();
+        ContactImportResult result = new ContactImporter(service, 2).importCsv(file);
+
+        assertEquals(2L, result.getImportedCount());
+        assertEquals(2L, result.getRejectedCount());
+        assertEquals(3L, result.getErrors().get(0).getLine());
+        assertEquals(ContactError.INVALID_PHONE, result.getErrors().get(0).getError());
+        assertEquals(4L, result.getErrors().get(1).getLine());
+        assertEquals(ContactError.MALFORMED_RECORD, result.getErrors().get(1).getError());
+        assertEquals("12 Hill Rd, Apt 2", service.getContact("4").getAddress());
+    }
+
+    // Test case to verify that rows with an ID already in the service are reported as duplicates.
+    @Test
+    void testImportCsvReportsDuplicates() throws IOException {
+        Path file = write("contacts.csv",
+                "1,John,Doe,1234567890,123 Main St\n"
+                + "2,Jane,Doe,1234567891,456 Park Ave\n"
+                + "2,Jane,Again,1234567891,456 Park Ave\n");
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "Old", "Doe", "1234567890", "123 Main St"));
+        ContactImportResult result = new ContactImporter(service).importCsv(file);
+
+        assertEquals(1L, result.getImportedCount());
+        assertEquals(1L, result.getErrors().get(0).getLine());
+        assertEquals(ContactError.DUPLICATE_CONTACT_ID, result.getErrors().get(0).getError());
+        assertEquals(3L, result.getErrors().get(1).getLine());
+        assertEquals("Old", service.getContact("1").getFirstName());
+        assertEquals("Doe", service.getContact("2").getLastName());
+    }
+
+    // Test case to verify that both JSON arrays and JSON Lines are imported, including escaped strings.
+    @Test
+    void testImportJson() throws IOException {
+        Path array = write("contacts.json",
+                "[\n"
+                + "  {\"contactID\": \"1\", \"firstName\": \"Jo\\\"e\", \"lastName\": \"Doe\",\n"
+                + "   \"phone\": \"1234567890\", \"address\": \"123 Main St\"},\n"
+                + "  {\"contactID\": \"2\", \"firstName\": \"Jane\", \"lastName\": \"Doe\", \"phone\": \"1234567891\"},\n"
+                + "  {\"contactID\": \"3\" \"firstName\": \"Bad\"}\n"
+                + "]\n");
+        ContactService service = new ContactService();
+        ContactImportResult result = new ContactImporter(service).importJson(array);
+
+        assertEquals(1L, result.getImportedCount());
+        assertEquals("Jo\"e", service.getContact("1").getFirstName());
+        assertEquals(4L, result.getErrors().get(0).getLine());
+        assertEquals(ContactError.INVALID_ADDRESS, result.getErrors().get(0).getError());
+        assertEquals(5L, result.getErrors().get(1).getLine());
+        assertEquals(ContactError.MALFORMED_RECORD, result.getErrors().get(1).getError());
+
+        Path lines = write("contacts.jsonl",
+                "{\"contactID\":\"4\",\"firstName\":\"Caf\\u00e9\",\"lastName\":\"Doe\",\"phone\":\"1234567894\",\"address\":\"1 Rd\"}\n"
+                + "{\"contactID\":\"5\",\"firstName\":\"Amy\",\"lastName\":\"Doe\",\"phone\":\"1234567895\",\"address\":\"2 Rd\"}\n");
+        assertEquals(2L, new ContactImporter(service).importJson(lines).getImportedCount());
+        assertEquals("Caf\u00e9", service.getContact("4").getFirstName());
+    }
+
+    // Test case to verify that a malformed JSON row skips only itself, so every row is imported or rejected.
+    @Test
+    void testImportJsonSkipsOnlyMalformedRow() throws IOException {
+        Path array = write("middle.json",
+                "[{\"contactID\":\"1\",\"firstName\":\"Amy\",\"lastName\":\"Doe\",\"phone\":\"1234567891\",\"address\":\"1 Rd\"},\n"
+                + "{\"contactID\":2,\"firstName\":\"B{ob\",\"lastName\":\"Doe\",\"phone\":\"1234567892\",\"address\":\"2 Rd\"},\n"
+                + "{\"contactID\":\"3\",\"firstName\":\"Cy\",\"lastName\":\"Doe\",\"phone\":\"1234567893\",\"address\":\"3 Rd\"},"
+                + "{\"contactID\":\"4\",\"firstName\":\"Di\",\"lastName\":\"Doe\",\"phone\":\"1234567894\",\"address\":\"4 Rd\"}]\n");
+        ContactService service = new ContactService();
+        ContactImportResult result = new ContactImporter(service).importJson(array);
+
+        assertEquals(3L, result.getImportedCount());
+        assertEquals(1L, result.getRejectedCount());
+        assertEquals(4L, result.getImportedCount() + result.getRejectedCount());
+        assertEquals(2L, result.getErrors().get(0).getLine());
+        assertEquals(ContactError.MALFORMED_RECORD, result.getErrors().get(0).getError());
+        assertEquals(3, service.size());
+        assertNotNull(service.getContact("4"));
+    }
+
+    // Test case to verify that fields with leading or trailing spaces survive a CSV export and import.
+    @Test
+    void testCsvRoundTripKeepsSpaces() throws IOException {
+        ContactService service = new ContactService();
+        service.addContact(new Contact(" 7", " Ann", "Lee ", "1234567890", " 1 Main St "));
+        service.addContact(new Contact("8 ", "Bo", "Lee", "1234567891", "2 Main St"));
+        Path file = Files.createTempDirectory("contact-export").resolve("contacts.csv");
+        ContactExporter.exportFile(service, file, ContactImporter.Format.CSV);
+
+        ContactService copy = new ContactService();
+        assertEquals(2L, new ContactImporter(copy).importCsv(file).getImportedCount());
+        Contact imported = copy.getContact(" 7");
+        assertNotNull(imported);
+        assertEquals(" Ann", imported.getFirstName());
+        assertEquals("Lee ", imported.getLastName());
+        assertEquals(" 1 Main St ", imported.getAddress());
+        assertNotNull(copy.getContact("8 "));
+    }
+
+    // Test case to verify that a large export imports back unchanged, in both formats.
+    @Test
+    void testExportImportRoundTrip() throws IOException {
+        ContactService service = new ContactService();
+        for (int i = 0; i < 50_000; i++) {
+            service.addContact(new Contact(Integer.toString(i), "First" + (i % 7), "L\"ast,",
+                    String.format("%010d", i), "Apt " + i + ", Caf\u00e9 St"));
+        }
+        Path directory = Files.createTempDirectory("contact-export");
+        for (ContactImporter.Format format : ContactImporter.Format.values()) {
+            Path file = directory.resolve("contacts." + format);
+            assertEquals(50_000L, ContactExporter.exportFile(service, file, format));
+
+            ContactService copy = new ContactService();
+            ContactImportResult result = new ContactImporter(copy, 3).importFile(file, format);
+            assertEquals(50_000L, result.getImportedCount());
+            assertEquals(0L, result.getRejectedCount());
+            for (int i = 0; i < 50_000; i += 997) {
+                Contact original = service.getContact(Integer.toString(i));
+                Contact imported = copy.getContact(Integer.toString(i));
+                assertEquals(original.getFirstName(), imported.getFirstName());
+                assertEquals(original.getLastName(), imported.getLastName());
+                assertEquals(original.getPhone(), imported.getPhone());
+                assertEquals(original.getAddress(), imported.getAddress());
+            }
+        }
+    }
+
+    private static Path write(String name, String content) throws IOException {
+        Path file = Files.createTempDirectory("contact-import").resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,215 @@
+// Secondary indexes over the contacts in a ContactService: exact phone lookup, exact and prefix last name lookup,
+// and exact and prefix address lookup. The index is a ContactListener, so once it is attached with
+// ContactService.enableIndexes it is kept up to date by every add, update and delete.
+// Lookups return contact IDs; ContactService resolves them to contacts.
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ContactIndex implements ContactListener {
+    private final ValueIndex phones = new ValueIndex(false);     // Phone number to contact IDs.
+    private final ValueIndex lastNames = new ValueIndex(true);   // Last name to contact IDs, with prefix search.
+    private final ValueIndex addresses = new ValueIndex(true);   // Address to contact IDs, with prefix search.
+
+    @Override
+    public void contactAdded(Contact contact) {
+        String contactID = contact.getContactID();
+        phones.add(contact.getPhone(), contactID);
+        lastNames.add(contact.getLastName(), contactID);
+        addresses.add(contact.getAddress(), contactID);
+    }
+
+    @Override
+    public void contactUpdated(Contact before, Contact after) {
+        String contactID = after.getContactID();
+        // Only fields that actually changed touch the index.
+        if (!before.getPhone().equals(after.getPhone())) {
+            phones.remove(before.getPhone(), contactID);
+            phones.add(after.getPhone(), contactID);
+        }
+        if (!before.getLastName().equals(after.getLastName())) {
+            lastNames.remove(before.getLastName(), contactID);
+            lastNames.add(after.getLastName(), contactID);
+        }
+        if (!before.getAddress().equals(after.getAddress())) {
+            addresses.remove(before.getAddress(), contactID);
+            addresses.add(after.getAddress(), contactID);
+        }
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        String contactID = contact.getContactID();
+        phones.remove(contact.getPhone(), contactID);
+        lastNames.remove(contact.getLastName(), contactID);
+        addresses.remove(contact.getAddress(), contactID);
+    }
+
+    // Returns the IDs of contacts with exactly this phone number.
+    public List<String> findByPhone(String phone) {
+        return phones.find(phone);
+    }
+
+    // Returns the IDs of contacts with exactly this last name.
+    public List<String> findByLastName(String lastName) {
+        return lastNames.find(lastName);
+    }
+
+    // Returns the IDs of contacts with exactly this address.
+    public List<String> findByAddress(String address) {
+        return addresses.find(address);
+    }
+
+    // Returns the IDs of contacts whose last name starts with the prefix, up to limit results.
+    public List<String> findByLastNamePrefix(String prefix, int limit) {
+        return lastNames.findPrefix(prefix, limit);
+    }
+
+    // Returns the IDs of contacts whose address starts with the prefix, up to limit results.
+    public List<String> findByAddressPrefix(String prefix, int limit) {
+        return addresses.findPrefix(prefix, limit);
+    }
+
+    // Returns a rough estimate of the heap used by the index structures, in bytes.
+    // Keys are the contacts' own String instances, so field text is not counted again.
+    public long estimatedMemoryBytes() {
+        return phones.estimatedMemoryBytes() + lastNames.estimatedMemoryBytes() + addresses.estimatedMemoryBytes();
+    }
+
+    // Maps one field value to the IDs of the contacts holding it.
+    // A value held by a single contact maps straight to that ID; a Set is only created once a second contact shares
+    // the value, which keeps unique values such as phone numbers cheap. All changes to one value happen inside
+    // ConcurrentHashMap.compute, so the sorted key set used for prefix search always mirrors the map's keys.
+    private static final class ValueIndex {
+        // Approximate per-object sizes on a 64-bit JVM with compressed pointers.
+        private static final int MAP_ENTRY_BYTES = 48;     // Hash map node plus its share of the table.
+        private static final int SET_BYTES = 160;          // A small concurrent key set.
+        private static final int SET_ENTRY_BYTES = 40;     // One member of such a set.
+        private static final int SORTED_KEY_BYTES = 56;    // Skip list node plus its average index levels.
+
+        private final Map<String, Object> ids = new ConcurrentHashMap<>(); // Value to an ID or a Set of IDs.
+        private final NavigableSet<String> sortedValues;                   // Distinct values in order, or null.
+        private final LongAdder valueCount = new LongAdder();              // Distinct values indexed.
+        private final LongAdder setCount = new LongAdder();                // Values shared by more than one contact.
+        private final LongAdder setEntryCount = new LongAdder();           // IDs stored inside those sets.
+
+        ValueIndex(boolean sorted) {
+            this.sortedValues = sorted ? new ConcurrentSkipListSet<>() : null;
+        }
+
+        void add(String value, String contactID) {
+            ids.compute(value, (key, existing) -> {
+                if (existing == null) {
+                    valueCount.increment();
+                    if (sortedValues != null) {
+                        sortedValues.add(key);
+                    }
+                    return contactID;
+                }
+                if (existing instanceof String) {
+                    if (existing.equals(contactID)) {
+                        return existing;
+                    }
+                    Set<String> set = ConcurrentHashMap.newKeySet();
+                    set.add((String) existing);
+                    set.add(contactID);
+                    setCount.increment();
+                    setEntryCount.add(2);
+                    return set;
+                }
+                @SuppressWarnings("unchecked")
+                Set<String> set = (Set<String>) existing;
+                if (set.add(contactID)) {
+                    setEntryCount.increment();
+                }
+                return set;
+            });
+        }
+
+        void remove(String value, String contactID) {
+            ids.computeIfPresent(value, (key, existing) -> {
+                if (existing instanceof String) {
+                    if (!existing.equals(contactID)) {
+                        return existing;
+                    }
+                    valueCount.decrement();
+                    if (sortedValues != null) {
+                        sortedValues.remove(key);
+                    }
+                    return null;
+                }
+                @SuppressWarnings("unchecked")
+                Set<String> set = (Set<String>) existing;
+                if (set.remove(contactID)) {
+                    setEntryCount.decrement();
+                }
+                if (!set.isEmpty()) {
+                    return set;
+                }
+                setCount.decrement();
+                valueCount.decrement();
+                if (sortedValues != null) {
+                    sortedValues.remove(key);
+                }
+                return null;
+            });
+        }
+
+        List<String> find(String value) {
+            if (value == null) {
+                return Collections.emptyList();
+            }
+            List<String> result = new ArrayList<>(1);
+            collect(ids.get(value), result, Integer.MAX_VALUE);
+            return result;
+        }
+
+        List<String> findPrefix(String prefix, int limit) {
+            List<String> result = new ArrayList<>();
+            if (prefix == null || limit <= 0) {
+                return result;
+            }
+            // Every string starting with the prefix sorts between the prefix itself and the prefix followed by the
+            // highest char value.
+            for (String value : sortedValues.subSet(prefix, true, prefix + Character.MAX_VALUE, true)) {
+                if (!collect(ids.get(value), result, limit)) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        // Adds the IDs held for one value to the result. Returns false once the result holds limit IDs.
+        private static boolean collect(Object entry, List<String> result, int limit) {
+            if (entry instanceof String) {
+                result.add((String) entry);
+            } else if (entry != null) {
+                @SuppressWarnings("unchecked")
+                Set<String> set = (Set<String>) entry;
+                for (String contactID : set) {
+                    if (result.size() >= limit) {
+                        return false;
+                    }
+                    result.add(contactID);
+                }
+            }
+            return result.size() < limit;
+        }
+
+        long estimatedMemoryBytes() {
+            long bytes = valueCount.sum() * MAP_ENTRY_BYTES
+                    + setCount.sum() * SET_BYTES
+                    + setEntryCount.sum() * SET_ENTRY_BYTES;
+            if (sortedValues != null) {
+                bytes += valueCount.sum() * SORTED_KEY_BYTES;
+            }
+            return bytes;
+        }
+    }
+}
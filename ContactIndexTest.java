@@ -0,0 +1,74 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test; 
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*; 
+
+import java.util.List;
+
+class ContactIndexTest {
+
+    // Test case to verify exact and prefix lookups after contacts are added.
+    @Test
+    void testFindAfterAdd() {
+        ContactService service = new ContactService();
+        service.enableIndexes();
+        service.addContact(new Contact("1", "John", "Smith", "1234567890", "12 Main St"));
+        service.addContact(new Contact("2", "Jane", "Smith", "1234567891", "14 Main St"));
+        service.addContact(new Contact("3", "Jim", "Smythe", "1234567892", "9 Oak Ave"));
+
+        assertEquals("2", service.findByPhone("1234567891").get(0).getContactID());
+        assertEquals(2, service.findByLastName("Smith").size());
+        assertEquals(3, service.findByLastNamePrefix("Sm", 10).size());
+        assertEquals(1, service.findByLastNamePrefix("Smy", 10).size());
+        assertEquals(2, service.findByAddressPrefix("1", 10).size());
+        assertEquals(1, service.findByAddressPrefix("1", 1).size());
+        assertTrue(service.findByPhone("0000000000").isEmpty());
+    }
+
+    // Test case to verify that updates and deletes keep the indexes consistent.
+    @Test
+    void testIndexFollowsUpdateAndDelete() {
+        ContactService service = new ContactService();
+        service.enableIndexes();
+        service.addContact(new Contact("1", "John", "Smith", "1234567890", "12 Main St"));
+
+        // Changing the phone moves the contact to the new number.
+        service.updateContact("1", null, null, "5555555555", null);
+        assertTrue(service.findByPhone("1234567890").isEmpty());
+        assertEquals(1, service.findByPhone("5555555555").size());
+
+        // Changing the last name moves the contact between names.
+        service.updateContact("1", null, "Jones", null, null);
+        assertTrue(service.findByLastName("Smith").isEmpty());
+        assertEquals(1, service.findByLastNamePrefix("Jo", 10).size());
+
+        // Deleting the contact removes it from every index.
+        service.deleteContact("1");
+        assertTrue(service.findByPhone("5555555555").isEmpty());
+        assertTrue(service.findByLastName("Jones").isEmpty());
+        assertTrue(service.findByAddressPrefix("12", 10).isEmpty());
+        assertEquals(0L, service.enableIndexes().estimatedMemoryBytes());
+    }
+
+    // Test case to verify that enabling indexes on a populated service indexes the existing contacts.
+    @Test
+    void testEnableIndexesBackfills() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Smith", "1234567890", "12 Main St"));
+
+        ContactIndex index = service.enableIndexes();
+        List<String> ids = index.findByPhone("1234567890");
+        assertEquals(1, ids.size());
+        assertEquals("1", ids.get(0));
+        assertTrue(index.estimatedMemoryBytes() > 0);
+    }
+
+    // Test case to verify that lookups fail clearly when indexes were never enabled.
+    @Test
+    void testFindWithoutIndexes() {
+        ContactService service = new ContactService();
+        assertThrows(IllegalStateException.class, () -> {
+            service.findByPhone("1234567890");
+        });
+    }
+}
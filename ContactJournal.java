@@ -0,0 +1,791 @@
+// Makes a ContactService durable. Every add, update and delete is appended to a binary write-ahead log, and
+// periodic checkpoints fold the log into a compacted snapshot. On restart the latest snapshot is loaded and the
+// log written since is replayed, so a restart no longer loses the contacts.
+//
+// Files in the journal directory, where N is a generation number that grows with every checkpoint:
+//
+//   contacts-N.log        log segment; one record per change, in the order the changes were made
+//   contacts-N.snapshot   every contact as of the start of segment N, sorted by contact ID
+//
+// Each record is [int length][int CRC-32][payload]. A payload is either a PUT (the full contact after an add or
+// update, including its version) or a DELETE (the contact ID). Because a PUT carries the whole contact, replaying
+// records is idempotent, and a crash that tears the last record only loses that record.
+//
+// A checkpoint closes the current segment and builds the next snapshot from files alone: it merges the previous
+// sorted snapshot with the closed segments. The in-memory contacts are never scanned, so a change that was logged
+// but not yet visible in memory when the checkpoint started can never be missed. The closed segments are sorted in
+// memory in batches of at most compactionMemoryBytes; larger logs spill each sorted batch to a temporary run file,
+// and the snapshot and runs are then merged in one pass, so a checkpoint's memory use does not grow with the log.
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class ContactJournal implements ContactListener, Closeable {
+    // When a change is forced to disk relative to the call that made it.
+    public enum SyncPolicy {
+        // Each change forces the log before the call returns, even when another change's force already covered it.
+        PER_OPERATION,
+        // Each change is durable before the call returns, but changes made at the same time share one write and
+        // one force (group commit).
+        PER_BATCH,
+        // Calls return immediately; a background thread writes and forces on a fixed interval.
+        // A crash can lose up to one interval of changes.
+        INTERVAL
+    }
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+    public static final long DEFAULT_CHECKPOINT_BYTES = 64L << 20;
+    public static final long DEFAULT_COMPACTION_MEMORY_BYTES = 32L << 20;
+
+    private static final int MAGIC = 0x434A524E;          // "CJRN", first four bytes of every journal file.
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = 8;            // Record length and CRC.
+    private static final int MAX_RECORD_BYTES = 1024;     // Far above the largest possible record.
+    private static final int PENDING_FLUSH_BYTES = 1 << 20;
+    private static final long MAP_WINDOW_BYTES = 256L << 20;
+    private static final int CHANGE_OVERHEAD_BYTES = 128;  // Rough heap cost of one sorted change besides its bytes.
+    private static final Pattern FILE_NAME = Pattern.compile("contacts-(\\d+)\\.(log|snapshot)");
+
+    private final Path directory;
+    private final SyncPolicy policy;
+    private final long checkpointBytes;
+    private final long compactionMemoryBytes;
+    private final ScheduledExecutorService scheduler;
+
+    // Changes are encoded into pending under this object's monitor. Writing to the segment happens under ioLock,
+    // which is always taken before the monitor, never after.
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private ByteBuffer pending = ByteBuffer.allocateDirect(64 << 10);
+    private ByteBuffer writing = ByteBuffer.allocateDirect(64 << 10);
+    private final CRC32 crc = new CRC32();
+    private long appendedSequence;   // Records encoded so far.
+    private long durableSequence;    // Records written and forced so far.
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]); // For afterChange.
+    private FileChannel segment;
+    private long segmentGeneration;
+    private long segmentBytes;
+    private IOException failure;     // Set when a background write fails; later changes are rejected.
+    private boolean closed;
+
+    private ContactJournal(Path directory, SyncPolicy policy, long flushIntervalMillis, long checkpointBytes,
+                           long compactionMemoryBytes) {
+        this.directory = directory;
+        this.policy = policy;
+        this.checkpointBytes = checkpointBytes;
+        this.compactionMemoryBytes = compactionMemoryBytes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "contact-journal-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (policy == SyncPolicy.INTERVAL) {
+            scheduler.scheduleWithFixedDelay(this::backgroundFlush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (checkpointBytes > 0) {
+            scheduler.scheduleWithFixedDelay(this::backgroundCheckpoint, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    // Makes the service durable in the directory using default settings. See the full overload.
+    public static ContactJournal attach(ContactService service, Path directory, SyncPolicy policy) throws IOException {
+        return attach(service, directory, policy, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    // Makes the service durable in the directory. If the directory already holds a journal, the service must be
+    // empty and is first loaded from it; otherwise any contacts already in the service are written to the new log.
+    // Call this before other threads start using the service.
+    // flushIntervalMillis applies to SyncPolicy.INTERVAL. A checkpoint runs automatically once the current log
+    // segment grows past checkpointBytes; pass 0 to only checkpoint when checkpoint() is called.
+    public static ContactJournal attach(ContactService service, Path directory, SyncPolicy policy,
+                                        long flushIntervalMillis, long checkpointBytes) throws IOException {
+        return attach(service, directory, policy, flushIntervalMillis, checkpointBytes,
+                DEFAULT_COMPACTION_MEMORY_BYTES);
+    }
+
+    // As above, with the memory a checkpoint may use to sort changes before it spills them to run files.
+    static ContactJournal attach(ContactService service, Path directory, SyncPolicy policy, long flushIntervalMillis,
+                                 long checkpointBytes, long compactionMemoryBytes) throws IOException {
+        Files.createDirectories(directory);
+        ContactJournal journal = new ContactJournal(directory, policy, flushIntervalMillis, checkpointBytes,
+                compactionMemoryBytes);
+        try {
+            boolean recovered = journal.recover(service);
+            service.addListener(journal, !recovered);
+            if (!recovered) {
+                journal.sync(); // The replayed contacts were only encoded; no change waited for them.
+            }
+        } catch (IOException | RuntimeException e) {
+            journal.scheduler.shutdownNow();
+            journal.closeSegment();
+            throw e;
+        }
+        return journal;
+    }
+
+    @Override
+    public void contactAdded(Contact contact) {
+        append(PUT, contact, contact.getContactID());
+    }
+
+    @Override
+    public void contactUpdated(Contact before, Contact after) {
+        append(PUT, after, after.getContactID());
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        append(DELETE, null, contact.getContactID());
+    }
+
+    // Folds the log written so far into a new snapshot and deletes the files it replaces.
+    // Changes keep flowing into a fresh log segment while the snapshot is built.
+    public void checkpoint() throws IOException {
+        checkpointLock.lock();
+        try {
+            long closedGeneration;
+            ioLock.lock();
+            try {
+                checkOpen();
+                drain(true);
+                closedGeneration = segmentGeneration;
+                openSegment(closedGeneration + 1);
+            } finally {
+                ioLock.unlock();
+            }
+            compact(closedGeneration + 1);
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    // Writes and forces everything logged so far, whatever the sync policy.
+    public void sync() throws IOException {
+        ioLock.lock();
+        try {
+            checkOpen();
+            drain(true);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Flushes the log and releases the files. The service keeps working but is no longer durable,
+    // so detach the journal from it first with ContactService.removeListener.
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        checkpointLock.lock();
+        ioLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            try {
+                drain(true);
+            } finally {
+                synchronized (this) {
+                    closed = true;
+                    notifyAll();
+                }
+                closeSegment();
+            }
+        } finally {
+            ioLock.unlock();
+            checkpointLock.unlock();
+        }
+    }
+
+    // Makes this thread's last change as durable as the policy requires. Runs after the service has released the
+    // contact's lock, so a thread waiting for the disk does not hold up changes to other contacts, and changes
+    // made meanwhile can join the same write (group commit).
+    @Override
+    public void afterChange() {
+        long sequence = lastAppended.get()[0];
+        try {
+            if (policy == SyncPolicy.PER_OPERATION) {
+                ioLock.lock();
+                try {
+                    if (!closed) {
+                        drain(true); // Otherwise close already forced it.
+                    }
+                } finally {
+                    ioLock.unlock();
+                }
+            } else if (policy == SyncPolicy.PER_BATCH) {
+                awaitDurable(sequence);
+            } else {
+                boolean full;
+                synchronized (this) {
+                    full = pending.position() >= PENDING_FLUSH_BYTES;
+                }
+                if (full) {
+                    // Keep memory bounded under bursts; forcing is still left to the interval flush.
+                    ioLock.lock();
+                    try {
+                        if (!closed) {
+                            drain(false);
+                        }
+                    } finally {
+                        ioLock.unlock();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Encodes one change. Runs inside the service's per-contact lock, so changes to one contact are logged in
+    // order; the write and force wait for afterChange.
+    private void append(byte type, Contact contact, String contactID) {
+        long sequence;
+        try {
+            synchronized (this) {
+                checkOpen();
+                sequence = encode(type, contact, contactID);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lastAppended.get()[0] = sequence;
+    }
+
+    // Group commit: the first caller to get the I/O lock writes and forces everything pending,
+    // and callers whose records were included in that write return without any I/O of their own.
+    private void awaitDurable(long sequence) throws IOException {
+        ioLock.lock();
+        try {
+            synchronized (this) {
+                if (durableSequence >= sequence) {
+                    return;
+                }
+            }
+            drain(true);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Writes everything pending to the current segment, forcing it to disk if asked. Caller holds ioLock.
+    private void drain(boolean force) throws IOException {
+        long sequence;
+        ByteBuffer batch;
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+            batch = pending;
+            pending = writing;
+            writing = batch;
+            sequence = appendedSequence;
+        }
+        try {
+            batch.flip();
+            segmentBytes += batch.remaining();
+            while (batch.hasRemaining()) {
+                segment.write(batch);
+            }
+            batch.clear();
+            if (force) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+            throw e;
+        }
+        if (force) {
+            synchronized (this) {
+                durableSequence = Math.max(durableSequence, sequence);
+            }
+        }
+    }
+
+    // Appends one record to pending and returns its sequence number. Caller holds the monitor.
+    private long encode(byte type, Contact contact, String contactID) {
+        if (pending.remaining() < MAX_RECORD_BYTES) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(pending.capacity() * 2);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        int start = pending.position();
+        pending.position(start + HEADER_BYTES);
+        writePayload(pending, type, contact, contactID);
+        int end = pending.position();
+
+        ByteBuffer payload = pending.duplicate();
+        payload.position(start + HEADER_BYTES).limit(end);
+        crc.reset();
+        crc.update(payload);
+        pending.putInt(start, end - start - HEADER_BYTES);
+        pending.putInt(start + 4, (int) crc.getValue());
+        return ++appendedSequence;
+    }
+
+    private static void writePayload(ByteBuffer buffer, byte type, Contact contact, String contactID) {
+        buffer.put(type);
+        if (type == DELETE) {
+            putString(buffer, contactID);
+            return;
+        }
+        buffer.putLong(contact.getVersion());
+        putString(buffer, contact.getContactID());
+        putString(buffer, contact.getFirstName());
+        putString(buffer, contact.getLastName());
+        putString(buffer, contact.getPhone());
+        putString(buffer, contact.getAddress());
+    }
+
+    // Writes a string as a one-byte length followed by its UTF-8 bytes, without allocating.
+    // Field limits keep every value under 31 chars, so the encoded length always fits in one byte.
+    private static void putString(ByteBuffer buffer, String value) {
+        int lengthPosition = buffer.position();
+        buffer.put((byte) 0);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?'); // Unpaired surrogate, replaced the same way String.getBytes does.
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        buffer.put(lengthPosition, (byte) (buffer.position() - lengthPosition - 1));
+    }
+
+    private static String getString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.get() & 0xFF;
+        buffer.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static String readContactID(ByteBuffer payload, byte[] scratch) {
+        payload.position(payload.get(0) == PUT ? 1 + Long.BYTES : 1);
+        return getString(payload, scratch);
+    }
+
+    private static Contact readContact(ByteBuffer payload, byte[] scratch) {
+        payload.position(1);
+        long version = payload.getLong();
+        return new Contact(getString(payload, scratch), getString(payload, scratch), getString(payload, scratch),
+                getString(payload, scratch), getString(payload, scratch), version);
+    }
+
+    // Loads the latest snapshot and replays the log after it. Returns false if the directory held no journal.
+    private boolean recover(ContactService service) throws IOException {
+        List<Long> snapshots = generations("snapshot");
+        List<Long> logs = generations("log");
+        if (snapshots.isEmpty() && logs.isEmpty()) {
+            openSegment(0);
+            return false;
+        }
+        if (service.size() > 0) {
+            throw new IllegalStateException("Service must be empty to recover from " + directory);
+        }
+
+        long base = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        byte[] scratch = new byte[256];
+        if (!snapshots.isEmpty()) {
+            try (RecordReader reader = new RecordReader(file(base, "snapshot"), false)) {
+                for (ByteBuffer payload = reader.next(); payload != null; payload = reader.next()) {
+                    service.restore(readContact(payload, scratch));
+                }
+            }
+        }
+        long last = base;
+        for (Iterator<Long> it = logs.iterator(); it.hasNext(); ) {
+            long generation = it.next();
+            if (generation < base) {
+                continue; // Already folded into the snapshot; left over from an interrupted cleanup.
+            }
+            // Only the newest segment can have a torn tail from a crash.
+            try (RecordReader reader = new RecordReader(file(generation, "log"), !it.hasNext())) {
+                for (ByteBuffer payload = reader.next(); payload != null; payload = reader.next()) {
+                    if (payload.get(0) == PUT) {
+                        service.restore(readContact(payload, scratch));
+                    } else {
+                        service.restoreDelete(readContactID(payload, scratch));
+                    }
+                }
+            }
+            last = generation;
+        }
+        openSegment(last + 1);
+        return true;
+    }
+
+    // Builds snapshot newGeneration from the latest older snapshot and every closed log segment, then deletes them.
+    private void compact(long newGeneration) throws IOException {
+        List<Long> snapshots = generations("snapshot");
+        long base = -1;
+        for (long generation : snapshots) {
+            if (generation < newGeneration) {
+                base = generation;
+            }
+        }
+
+        // Collect the last change per contact from the closed segments, spilling each full batch to a sorted run.
+        TreeMap<String, byte[]> changes = new TreeMap<>();
+        long changeBytes = 0;
+        List<Path> runs = new ArrayList<>();
+        byte[] scratch = new byte[256];
+        List<Long> folded = new ArrayList<>();
+        Path temporary = directory.resolve("contacts-" + newGeneration + ".snapshot.tmp");
+        List<MergeInput> inputs = new ArrayList<>();
+        try {
+            for (long generation : generations("log")) {
+                if (generation < base) {
+                    folded.add(generation); // Left over from an interrupted cleanup; already in the base snapshot.
+                } else if (generation < newGeneration) {
+                    try (RecordReader reader = new RecordReader(file(generation, "log"), false)) {
+                        for (ByteBuffer payload = reader.next(); payload != null; payload = reader.next()) {
+                            String contactID = readContactID(payload.duplicate(), scratch);
+                            byte[] bytes = new byte[payload.limit()];
+                            payload.get(0, bytes);
+                            byte[] replaced = changes.put(contactID, bytes);
+                            changeBytes += bytes.length + (replaced == null ? CHANGE_OVERHEAD_BYTES : -replaced.length);
+                            if (changeBytes > compactionMemoryBytes) {
+                                runs.add(spill(newGeneration, runs.size(), changes));
+                                changes.clear();
+                                changeBytes = 0;
+                            }
+                        }
+                    }
+                    folded.add(generation);
+                }
+            }
+
+            // Merge the sorted snapshot, runs and remaining changes, oldest first, into the new snapshot. For each
+            // contact ID the newest input wins, and a contact whose newest change is a delete is left out.
+            if (base >= 0) {
+                inputs.add(new MergeInput(new RecordReader(file(base, "snapshot"), false), scratch));
+            }
+            for (Path run : runs) {
+                inputs.add(new MergeInput(new RecordReader(run, false), scratch));
+            }
+            inputs.add(new MergeInput(changes.entrySet().iterator()));
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                RecordWriter writer = new RecordWriter(out);
+                while (true) {
+                    String smallest = null;
+                    for (MergeInput input : inputs) {
+                        if (input.contactID != null && (smallest == null || input.contactID.compareTo(smallest) < 0)) {
+                            smallest = input.contactID;
+                        }
+                    }
+                    if (smallest == null) {
+                        break;
+                    }
+                    ByteBuffer newest = null;
+                    for (MergeInput input : inputs) {
+                        if (smallest.equals(input.contactID)) {
+                            newest = input.record;
+                            input.advance(scratch);
+                        }
+                    }
+                    if (newest.get(0) == PUT) {
+                        writer.write(newest);
+                    }
+                }
+                writer.finish();
+            }
+        } finally {
+            for (MergeInput input : inputs) {
+                input.close();
+            }
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        Files.move(temporary, file(newGeneration, "snapshot"), StandardCopyOption.ATOMIC_MOVE);
+
+        if (base >= 0) {
+            Files.deleteIfExists(file(base, "snapshot"));
+        }
+        for (long generation : folded) {
+            Files.deleteIfExists(file(generation, "log"));
+        }
+    }
+
+    // Writes sorted changes to a temporary run file for compact to merge.
+    private Path spill(long newGeneration, int index, TreeMap<String, byte[]> changes) throws IOException {
+        Path run = directory.resolve("contacts-" + newGeneration + ".run-" + index + ".tmp");
+        try (FileChannel out = FileChannel.open(run, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordWriter writer = new RecordWriter(out);
+            for (byte[] bytes : changes.values()) {
+                writer.write(ByteBuffer.wrap(bytes));
+            }
+            writer.flush(); // Deleted after the checkpoint, so never forced.
+        }
+        return run;
+    }
+
+    private void backgroundFlush() {
+        ioLock.lock();
+        try {
+            if (!closed) {
+                drain(true);
+            }
+        } catch (IOException e) {
+            // Recorded in failure by drain; the next change will report it to its caller.
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private void backgroundCheckpoint() {
+        boolean due;
+        ioLock.lock();
+        try {
+            due = !closed && segmentBytes >= checkpointBytes;
+        } finally {
+            ioLock.unlock();
+        }
+        if (due) {
+            try {
+                checkpoint();
+            } catch (IOException | IllegalStateException e) {
+                // The log keeps growing and the next attempt will retry; nothing has been lost.
+            }
+        }
+    }
+
+    // Starts a new, empty log segment. Caller holds ioLock, or is still constructing the journal.
+    private void openSegment(long generation) throws IOException {
+        closeSegment();
+        FileChannel channel = FileChannel.open(file(generation, "log"), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+        channel.force(true);
+        segment = channel;
+        segmentGeneration = generation;
+        segmentBytes = 0;
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    private synchronized void checkOpen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Path file(long generation, String kind) {
+        return directory.resolve("contacts-" + generation + "." + kind);
+    }
+
+    // Returns the generations of the files of one kind, oldest first.
+    private List<Long> generations(String kind) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                Matcher matcher = FILE_NAME.matcher(it.next().getFileName().toString());
+                if (matcher.matches() && matcher.group(2).equals(kind)) {
+                    result.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    // Reads the records of a journal file through memory-mapped windows.
+    // When tolerateTornTail is set, a truncated or corrupt final record marks the end of the file, which is
+    // then truncated so new records are never appended after garbage; otherwise it is reported as an error.
+    private static final class RecordReader implements Closeable {
+        private final Path path;
+        private final FileChannel channel;
+        private final long size;
+        private final boolean tolerateTornTail;
+        private final CRC32 crc = new CRC32();
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        RecordReader(Path path, boolean tolerateTornTail) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+            this.tolerateTornTail = tolerateTornTail;
+            map(0);
+            if (size < 4 || window.getInt() != MAGIC) {
+                if (size < 4 && tolerateTornTail) {
+                    // Crashed before the header was forced. Rewrite it, so the segment reads as empty from now on
+                    // rather than failing once it is no longer the newest.
+                    channel.truncate(0);
+                    channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC), 0);
+                    channel.force(true);
+                    window.position(window.limit());
+                    windowStart = size;
+                    return;
+                }
+                throw new IOException("Not a contact journal file: " + path);
+            }
+        }
+
+        // Returns the next record's payload, or null at the end of the file.
+        ByteBuffer next() throws IOException {
+            long position = windowStart + window.position();
+            if (position >= size) {
+                return null;
+            }
+            if (size - position < HEADER_BYTES) {
+                return tornTail(position);
+            }
+            if (window.remaining() < HEADER_BYTES + MAX_RECORD_BYTES && windowStart + window.limit() < size) {
+                map(position);
+            }
+            int length = window.getInt();
+            int checksum = window.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || length > window.remaining()) {
+                return tornTail(position);
+            }
+            ByteBuffer payload = window.slice(window.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                return tornTail(position);
+            }
+            window.position(window.position() + length);
+            return payload;
+        }
+
+        private ByteBuffer tornTail(long position) throws IOException {
+            if (!tolerateTornTail) {
+                throw new IOException("Corrupt record at offset " + position + " in " + path);
+            }
+            channel.truncate(position);
+            window.position(window.limit());
+            windowStart = size;
+            return null;
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_BYTES, size - position));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // One sorted input of a compaction: a snapshot, a spilled run, or the changes still in memory.
+    // record and contactID hold the input's current record, and are null once it is used up.
+    private static final class MergeInput implements Closeable {
+        private final RecordReader reader;
+        private final Iterator<Map.Entry<String, byte[]>> changes;
+        ByteBuffer record;
+        String contactID;
+
+        MergeInput(RecordReader reader, byte[] scratch) throws IOException {
+            this.reader = reader;
+            this.changes = null;
+            advance(scratch);
+        }
+
+        MergeInput(Iterator<Map.Entry<String, byte[]>> changes) throws IOException {
+            this.reader = null;
+            this.changes = changes;
+            advance(null);
+        }
+
+        void advance(byte[] scratch) throws IOException {
+            if (reader != null) {
+                record = reader.next();
+                contactID = record == null ? null : readContactID(record.duplicate(), scratch);
+            } else if (changes.hasNext()) {
+                Map.Entry<String, byte[]> change = changes.next();
+                record = ByteBuffer.wrap(change.getValue());
+                contactID = change.getKey();
+            } else {
+                record = null;
+                contactID = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    // Buffers records into large writes for a new snapshot file.
+    private static final class RecordWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final CRC32 crc = new CRC32();
+
+        RecordWriter(FileChannel channel) {
+            this.channel = channel;
+            buffer.putInt(MAGIC);
+        }
+
+        void write(ByteBuffer payload) throws IOException {
+            if (buffer.remaining() < HEADER_BYTES + payload.remaining()) {
+                flush();
+            }
+            crc.reset();
+            crc.update(payload.duplicate());
+            buffer.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload.duplicate());
+        }
+
+        void finish() throws IOException {
+            flush();
+            channel.force(true);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test; 
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*; 
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+class ContactJournalTest {
+
+    // Test case to verify that every change survives a restart.
+    @Test
+    void testRecoverAfterRestart() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_OPERATION)) {
+            service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+            service.addContact(new Contact("2", "Jane", "Doe", "1234567891", "456 Park Ave"));
+            service.updateContact("1", "Johnny", null, null, null);
+            service.deleteContact("2");
+            service.removeListener(journal);
+        }
+
+        ContactService restarted = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.PER_BATCH)) {
+            assertEquals(1, restarted.size());
+            assertEquals("Johnny", restarted.getContact("1").getFirstName());
+            assertEquals(1L, restarted.getContact("1").getVersion());
+            assertNull(restarted.getContact("2"));
+            restarted.removeListener(journal);
+        }
+    }
+
+    // Test case to verify that a checkpoint compacts the log and keeps changes made after it.
+    @Test
+    void testCheckpointThenRecover() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_BATCH, 100, 0)) {
+            for (int i = 0; i < 100; i++) {
+                service.addContact(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+            }
+            service.deleteContact("5");
+            journal.checkpoint();
+
+            // Changes after the first checkpoint land in a new segment and are folded by the next one.
+            service.updateContact("7", null, "Changed", null, null);
+            service.addContact(new Contact("100", "New", "Last", "1234567890", "1 Main St"));
+            journal.checkpoint();
+            service.deleteContact("8");
+        }
+        assertEquals(1L, countFiles(directory, ".snapshot"));
+
+        ContactService restarted = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.INTERVAL)) {
+            assertEquals(99, restarted.size());
+            assertNull(restarted.getContact("5"));
+            assertNull(restarted.getContact("8"));
+            assertEquals("Changed", restarted.getContact("7").getLastName());
+            assertEquals("New", restarted.getContact("100").getFirstName());
+            restarted.removeListener(journal);
+        }
+    }
+
+    // Test case to verify that a checkpoint with more changes than fit in its memory spills and merges sorted runs.
+    @Test
+    void testCheckpointSpillsLargeLogs() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_BATCH,
+                100, 0, 4096)) {
+            for (int i = 0; i < 500; i++) {
+                service.addContact(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+            }
+            journal.checkpoint();
+            for (int i = 0; i < 500; i += 3) {
+                service.updateContact(Integer.toString(i), null, "Changed", null, null);
+            }
+            for (int i = 0; i < 500; i += 5) {
+                service.deleteContact(Integer.toString(i));
+            }
+            service.addContact(new Contact("500", "New", "Last", "1234567890", "1 Main St"));
+            journal.checkpoint();
+        }
+        assertEquals(1L, countFiles(directory, ".snapshot"));
+        assertEquals(0L, countFiles(directory, ".tmp"));
+
+        ContactService restarted = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.PER_BATCH)) {
+            assertEquals(401, restarted.size());
+            assertNull(restarted.getContact("15"));
+            assertEquals("Changed", restarted.getContact("3").getLastName());
+            assertEquals("Last", restarted.getContact("4").getLastName());
+            assertEquals("New", restarted.getContact("500").getFirstName());
+            restarted.removeListener(journal);
+        }
+    }
+
+    // Test case to verify that a torn final record from a crash is dropped and the rest is recovered.
+    @Test
+    void testTornTailIsIgnored() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_OPERATION)) {
+            service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+            service.addContact(new Contact("2", "Jane", "Doe", "1234567891", "456 Park Ave"));
+            service.removeListener(journal);
+        }
+        // Cut the last record in half, as a crash in the middle of a write would.
+        Path log = directory.resolve("contacts-0.log");
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        ContactService restarted = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.PER_OPERATION)) {
+            assertEquals(1, restarted.size());
+            assertNotNull(restarted.getContact("1"));
+            // New changes after recovery are durable as usual.
+            restarted.addContact(new Contact("3", "Jim", "Doe", "1234567892", "789 Elm St"));
+            restarted.removeListener(journal);
+        }
+        ContactService again = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(again, directory, ContactJournal.SyncPolicy.PER_OPERATION)) {
+            assertEquals(2, again.size());
+            again.removeListener(journal);
+        }
+    }
+
+    // Test case to verify that a segment whose file header was torn by a crash is recovered as empty.
+    @Test
+    void testTornSegmentHeaderIsIgnored() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_BATCH)) {
+            service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+            service.removeListener(journal);
+        }
+        // A crash right after the next segment was created, with only part of its header written.
+        Files.write(directory.resolve("contacts-1.log"), new byte[] {0x43, 0x4A});
+
+        for (int restart = 0; restart < 2; restart++) {
+            ContactService restarted = new ContactService();
+            try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.PER_BATCH)) {
+                assertEquals(1 + restart, restarted.size());
+                restarted.updateContact("1", "Restart" + restart, null, null, null);
+                restarted.addContact(new Contact(Integer.toString(2 + restart), "Jane", "Doe", "1234567891", "456 Park Ave"));
+                restarted.removeListener(journal);
+            }
+        }
+    }
+
+    // Test case to verify that changes from many threads sharing group commits are all recovered.
+    @Test
+    void testConcurrentGroupCommit() throws Exception {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService(new PackedContactStore());
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_BATCH)) {
+            Thread[] threads = new Thread[8];
+            for (int t = 0; t < threads.length; t++) {
+                int base = t * 100;
+                threads[t] = new Thread(() -> {
+                    for (int i = base; i < base + 100; i++) {
+                        service.addContact(new Contact(Integer.toString(i), "First", "Last", "1234567890", "1 Main St"));
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            service.removeListener(journal);
+        }
+        ContactService restarted = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.PER_BATCH)) {
+            assertEquals(800, restarted.size());
+            restarted.removeListener(journal);
+        }
+    }
+
+    // Test case to verify that a change the journal rejects is also taken back from listeners told before it.
+    @Test
+    void testRejectedChangeIsUndoneInEarlierListeners() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        ContactIndex index = service.enableIndexes();
+        ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_OPERATION);
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+
+        // An interrupt closes the log's channel during the next write, so the journal fails from then on.
+        Thread.currentThread().interrupt();
+        assertThrows(UncheckedIOException.class,
+                () -> service.addContact(new Contact("2", "Jane", "Doe", "1234567891", "456 Park Ave")));
+        assertTrue(Thread.interrupted());
+        assertThrows(UncheckedIOException.class,
+                () -> service.addContact(new Contact("3", "Jim", "Doe", "1234567892", "789 Elm St")));
+        assertThrows(UncheckedIOException.class, () -> service.updateContact("1", null, null, "1234567899", null));
+        assertThrows(UncheckedIOException.class, () -> service.deleteContact("2"));
+
+        assertNull(service.getContact("3"));
+        assertTrue(service.findByPhone("1234567892").isEmpty());
+        assertTrue(index.findByPhone("1234567892").isEmpty());
+        assertTrue(index.findByPhone("1234567899").isEmpty());
+        assertEquals(List.of("1"), index.findByPhone("1234567890"));
+        assertEquals(List.of("2"), index.findByPhone("1234567891"));
+        service.removeListener(journal);
+        assertThrows(IOException.class, journal::close);
+    }
+
+    // Test case to verify that non-ASCII field values round-trip through the log.
+    @Test
+    void testUnicodeFields() throws IOException {
+        Path directory = Files.createTempDirectory("contact-journal");
+        ContactService service = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(service, directory, ContactJournal.SyncPolicy.PER_OPERATION)) {
+            service.addContact(new Contact("1", "Jos\u00e9", "\u4e2d\u6587", "1234567890", "\ud83d\ude00 Main St"));
+            service.removeListener(journal);
+        }
+        ContactService restarted = new ContactService();
+        try (ContactJournal journal = ContactJournal.attach(restarted, directory, ContactJournal.SyncPolicy.PER_OPERATION)) {
+            Contact contact = restarted.getContact("1");
+            assertEquals("Jos\u00e9", contact.getFirstName());
+            assertEquals("\u4e2d\u6587", contact.getLastName());
+            assertEquals("\ud83d\ude00 Main St", contact.getAddress());
+            restarted.removeListener(journal);
+        }
+    }
+
+    private static long countFiles(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(suffix)).count();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+// Receives every change made to the contacts held by a ContactService.
+// Callbacks run while the service holds the lock for the changed contact ID, so the changes to any one contact
+// arrive in the order they were made. They should be quick and must not call back into the service.
+// If a callback throws, the change is not applied and the exception reaches the caller; listeners that had already
+// been told about it are then told the reverse change (a delete for an add, an add for a delete, and an update back
+// to the old contact), so none of them keeps a change that never happened.
+// Slow work that the caller must wait for, such as forcing a log to disk, belongs in afterChange, which runs once
+// the lock is released.
+public interface ContactListener {
+    // Called when a contact is added.
+    void contactAdded(Contact contact);
+
+    // Called when an existing contact is replaced by a new version.
+    void contactUpdated(Contact before, Contact after);
+
+    // Called when a contact is deleted.
+    void contactDeleted(Contact contact);
+
+    // Called after one of the callbacks above, on the same thread, once the service has released the contact's lock
+    // and before the call that made the change returns. If it throws, the change stays applied and the exception
+    // reaches the caller.
+    default void afterChange() {
+    }
+}
@@ -0,0 +1,768 @@
+// Load and soak test driver for ContactService: replays a production-like mix of calls from many client threads
+// for minutes or hours and records how the service holds up over time, to catch the slow leaks and contention
+// cliffs that unit tests and the short runs of ContactBenchmark cannot.
+//
+// Contact IDs come from a fixed key space, ranked by popularity. Gets and updates pick IDs from a Zipfian
+// distribution over the ranks, so a few hot contacts take most of the traffic as in production; the ranks are
+// scattered over the key space rather than bunched at its start. The more popular half of the keys is loaded up
+// front and stays. Adds and deletes, like sign-ups and account closures, pick IDs uniformly from the less popular
+// half, of which half is loaded up front, so with equal add and delete weights the number of contacts stays near
+// three quarters of the key space and most gets find their contact. Every value written is
+// realistic and passes ContactValidator: names and streets come from fixed lists and are copied per call, as a
+// request parser would produce them. Calls that miss (a get or update of a deleted contact, an add of an existing
+// one) are expected and counted; any other exception is an error, counted and its first occurrence logged.
+//
+// Every call is timed into a LatencyHistogram per operation. By default each client sends its next call as soon as
+// the last one returns, which understates latency when the service stalls; with --rate the clients instead follow
+// a fixed schedule and each call is timed from when it should have started, so a stall shows up in the latency
+// of every call it delayed.
+//
+// Every interval a line is written with the throughput, latency percentiles of the interval, heap in use, the live
+// heap (the lowest heap left after a collection in the interval), and collections and their pauses. The results
+// file is flushed after each line, so a run that is killed still leaves its history. The summary at the end adds
+// percentiles for the whole run and the growth of the live heap in MB per hour, fitted over all intervals after the
+// first: a steady positive slope over hours is the sign of a leak.
+//
+// Usage: java ContactLoadDriver [options]
+//   --duration   how long to run: 90s, 30m or 8h; a bare number is seconds (default: 60s)
+//   --interval   seconds between report lines (default: 10)
+//   --threads    client threads (default: 16)
+//   --keys       size of the contact ID space (default: 1000000)
+//   --mix        operation weights (default: get=80,update=14,add=3,delete=3)
+//   --zipf       skew of the Zipfian distribution, from 0 (uniform) to below 1 (default: 0.99)
+//   --rate       target calls per second over all clients, or 0 to run flat out (default: 0)
+//   --store      map, versioned, packed or cached (default: map)
+//   --pool       true to enable ContactFieldPool (default: false)
+//   --metrics    true to run with ContactService metrics enabled (default: false)
+//   --seed       seed for the random choices (default: random)
+//   --out        results file (default: soak-results.txt)
+//
+// Example, an eight-hour soak with a bounded rate:
+//   java -Xmx4g -Xlog:gc:file=soak-gc.log ContactLoadDriver --duration 8h --interval 60 --rate 200000
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+public class ContactLoadDriver {
+    // The calls a client makes.
+    enum Operation { GET, UPDATE, ADD, DELETE }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final double[] SUMMARY_PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final long SPIN_NANOS = 200_000; // With --rate, time before a call's slot spent yielding.
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+            "Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+            "Thomas", "Sarah", "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty", "Mark",
+            "Margaret", "Donald", "Sandra", "Steven", "Ashley", "Paul", "Emily", "Andrew", "Donna", "Joshua",
+            "Michelle", "Kenneth", "Carol", "Kevin", "Amanda", "Brian", "Melissa", "George", "Deborah", "Wei",
+            "Mohammed", "Sofia", "Mateo", "Aisha", "Hiroshi", "Priya", "Olga", "Kwame", "Ines", "Liam", "Noah"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson",
+            "Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris",
+            "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright",
+            "Scott", "Torres", "Nguyen", "Hill", "Flores", "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera",
+            "Campbell", "Mitchell", "Carter", "Roberts", "Kim", "Chen", "Patel", "Singh", "Ivanova", "Okafor"};
+    private static final String[] STREETS = {"Main", "Oak", "Pine", "Maple", "Cedar", "Elm", "Washington",
+            "Lake", "Hill", "Park", "Harbour View", "Church", "Sunset", "River", "Highland", "Meadow", "Forest",
+            "Jefferson", "Lincoln", "Spring", "Willow", "Chestnut", "Mill", "Franklin", "Center", "Ridge"};
+    private static final String[] STREET_TYPES = {"St", "Ave", "Rd", "Ln", "Dr", "Ct", "Way", "Pl", "Blvd"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        Config config = new Config(options);
+        String[] header = {
+            "# java " + System.getProperty("java.version") + ", " + System.getProperty("os.name") + " "
+                    + System.getProperty("os.arch") + ", " + Runtime.getRuntime().availableProcessors() + " cpus, "
+                    + "max heap " + Runtime.getRuntime().maxMemory() / (1 << 20) + " MB, jvm-args="
+                    + ManagementFactory.getRuntimeMXBean().getInputArguments(),
+            "# " + options,
+        };
+        Report report;
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(options.get("out")), StandardCharsets.UTF_8)) {
+            report = run(config, line -> {
+                System.out.println(line);
+                try {
+                    out.write(line);
+                    out.newLine();
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, header);
+        }
+        if (report.errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Runs the load described by the config, passing every line of the report to the sink as it is produced.
+    static Report run(Config config, Consumer<String> sink, String... header) throws InterruptedException {
+        for (String line : header) {
+            sink.accept(line);
+        }
+        ContactFieldPool.setEnabled(config.pool);
+        ContactService service = new ContactService(ContactBenchmark.store(config.store, config.keys));
+        if (config.metrics) {
+            service.enableMetrics();
+        }
+        Workload workload = new Workload(service, config);
+        long loadStart = System.nanoTime();
+        workload.preload();
+        sink.accept(String.format(Locale.ROOT, "# preloaded %d contacts in %.1f s", service.size(),
+                (System.nanoTime() - loadStart) / 1e9));
+
+        GcWatcher gc = new GcWatcher();
+        gc.start();
+        long start = System.nanoTime();
+        long deadline = start + config.durationNanos;
+        Client[] clients = new Client[config.threads];
+        for (int t = 0; t < clients.length; t++) {
+            clients[t] = new Client(workload, t, start, deadline);
+            clients[t].start();
+        }
+
+        sink.accept(String.format("%8s %10s %7s %8s %8s %8s %9s %9s %9s %9s %9s %8s %8s %5s %7s %8s %9s %6s",
+                "time s", "ops/s", "miss %", "p50 us", "p99 us", "p99.9 us", "max us", "get p99", "upd p99",
+                "add p99", "del p99", "heap MB", "live MB", "gcs", "gc ms", "pause ms", "contacts", "errors"));
+        Interval previous = new Interval(workload, gc, start);
+        Interval first = previous;
+        List<double[]> liveHeap = new ArrayList<>(); // Seconds since start and live MB, one per interval.
+        for (long next = start + config.intervalNanos; ; next += config.intervalNanos) {
+            long now = System.nanoTime();
+            if (next > deadline) {
+                next = deadline;
+            }
+            if (next > now) {
+                TimeUnit.NANOSECONDS.sleep(next - now);
+            }
+            Interval current = new Interval(workload, gc, System.nanoTime());
+            sink.accept(current.line(previous, start, service.size()));
+            if (current.liveBytes >= 0 && previous != first) {
+                liveHeap.add(new double[] {(current.time - start) / 1e9, current.liveBytes / 1048576.0});
+            }
+            previous = current;
+            if (next >= deadline) {
+                break;
+            }
+        }
+        for (Client client : clients) {
+            client.join();
+        }
+        gc.stop();
+        Interval last = new Interval(workload, gc, System.nanoTime());
+        Report report = new Report(workload, first, last, liveHeap);
+        report.write(sink);
+        if (config.pool) {
+            sink.accept("# field pool: " + ContactFieldPool.stats());
+        }
+        return report;
+    }
+
+    // Settings of one run, parsed from the options.
+    static final class Config {
+        final long durationNanos;
+        final long intervalNanos;
+        final int threads;
+        final int keys;
+        final int[] weights = new int[OPERATIONS.length];
+        final double zipf;
+        final double rate;
+        final String store;
+        final boolean pool;
+        final boolean metrics;
+        final long seed;
+
+        Config(Map<String, String> options) {
+            durationNanos = parseDuration(options.get("duration"));
+            intervalNanos = parseDuration(options.get("interval"));
+            threads = Integer.parseInt(options.get("threads"));
+            keys = Integer.parseInt(options.get("keys").replace("_", ""));
+            for (String part : options.get("mix").split(",")) {
+                String[] pair = part.split("=");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected operation=weight but got: " + part);
+                }
+                weights[Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)).ordinal()] =
+                        Integer.parseInt(pair[1].trim());
+            }
+            zipf = Double.parseDouble(options.get("zipf"));
+            rate = Double.parseDouble(options.get("rate"));
+            store = options.get("store");
+            pool = Boolean.parseBoolean(options.get("pool"));
+            metrics = Boolean.parseBoolean(options.get("metrics"));
+            seed = options.containsKey("seed") ? Long.parseLong(options.get("seed")) : System.nanoTime();
+            if (durationNanos <= 0 || intervalNanos <= 0 || threads < 1 || keys < 2 || keys > 999_999_999) {
+                throw new IllegalArgumentException("Duration, interval, threads and keys must be positive, keys "
+                        + "from 2 to 999999999");
+            }
+            if (zipf < 0 || zipf >= 1) {
+                throw new IllegalArgumentException("Zipf skew must be from 0 to below 1");
+            }
+            int total = 0;
+            for (int weight : weights) {
+                if (weight < 0) {
+                    throw new IllegalArgumentException("Operation weights cannot be negative");
+                }
+                total += weight;
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("At least one operation needs a weight");
+            }
+        }
+    }
+
+    // The service under load, the key distributions and the counters shared by all clients.
+    private static final class Workload {
+        final ContactService service;
+        final Config config;
+        final Zipfian popularity;
+        final int[] cumulativeWeights = new int[OPERATIONS.length];
+        final LatencyHistogram all = new LatencyHistogram();
+        final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS.length];
+        final LongAdder[] hits = new LongAdder[OPERATIONS.length];
+        final LongAdder[] misses = new LongAdder[OPERATIONS.length];
+        final LongAdder errors = new LongAdder();
+        final AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+        Workload(ContactService service, Config config) {
+            this.service = service;
+            this.config = config;
+            this.popularity = new Zipfian(config.keys, config.zipf);
+            int total = 0;
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                total += config.weights[i];
+                cumulativeWeights[i] = total;
+                latency[i] = new LatencyHistogram();
+                hits[i] = new LongAdder();
+                misses[i] = new LongAdder();
+            }
+        }
+
+        // Loads the more popular half of the keys and every second key of the rest.
+        void preload() {
+            SplittableRandom random = new SplittableRandom(config.seed);
+            for (int rank = 0; rank < config.keys; rank++) {
+                if (rank < config.keys / 2 || rank % 2 == 0) {
+                    service.addContact(newContact(popularity.keyOf(rank), random));
+                }
+            }
+        }
+
+        // Key for an add or delete: uniform over the less popular half.
+        int churnKey(SplittableRandom random) {
+            int half = config.keys / 2;
+            return popularity.keyOf(half + random.nextInt(config.keys - half));
+        }
+
+        Operation pick(SplittableRandom random) {
+            int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int i = 0;
+            while (roll >= cumulativeWeights[i]) {
+                i++;
+            }
+            return OPERATIONS[i];
+        }
+
+        // Makes one call. Returns false if it missed: the contact was not there, or already there for an add.
+        boolean call(Operation operation, SplittableRandom random) {
+            switch (operation) {
+                case GET:
+                    return service.getContact(id(popularity.next(random))) != null;
+                case UPDATE:
+                    try {
+                        updateRandomFields(id(popularity.next(random)), random);
+                        return true;
+                    } catch (InvalidContactException e) {
+                        throw e; // Generated values are always valid; an invalid one is a bug.
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                case ADD:
+                    return service.tryAddContact(newContact(churnKey(random), random));
+                case DELETE:
+                    try {
+                        service.deleteContact(id(churnKey(random)));
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                default:
+                    throw new AssertionError(operation);
+            }
+        }
+
+        // Changes one or two fields, as an edit form would.
+        private void updateRandomFields(String contactID, SplittableRandom random) {
+            String firstName = null;
+            String lastName = null;
+            String phone = null;
+            String address = null;
+            int fields = 1 + random.nextInt(2);
+            for (int i = 0; i < fields; i++) {
+                switch (random.nextInt(4)) {
+                    case 0: firstName = firstName(random); break;
+                    case 1: lastName = lastName(random); break;
+                    case 2: phone = phone(random); break;
+                    default: address = address(random); break;
+                }
+            }
+            service.updateContact(contactID, firstName, lastName, phone, address);
+        }
+
+        private static Contact newContact(int key, SplittableRandom random) {
+            Contact contact = Contact.tryCreate(id(key), firstName(random), lastName(random), phone(random),
+                    address(random));
+            if (contact == null) {
+                throw new IllegalStateException("Generated an invalid contact for key " + key);
+            }
+            return contact;
+        }
+
+        private static String id(int key) {
+            return "u" + key;
+        }
+
+        // Names are copied so every contact holds its own Strings, as if parsed from a request.
+        private static String firstName(SplittableRandom random) {
+            return new String(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+        }
+
+        private static String lastName(SplittableRandom random) {
+            return new String(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+        }
+
+        private static String phone(SplittableRandom random) {
+            return Long.toString(2_000_000_000L + random.nextLong(8_000_000_000L));
+        }
+
+        private static String address(SplittableRandom random) {
+            return (1 + random.nextInt(9999)) + " " + STREETS[random.nextInt(STREETS.length)] + " "
+                    + STREET_TYPES[random.nextInt(STREET_TYPES.length)];
+        }
+    }
+
+    // One client thread, calling until the deadline.
+    private static final class Client extends Thread {
+        private final Workload workload;
+        private final SplittableRandom random;
+        private final long start;
+        private final long deadline;
+
+        Client(Workload workload, int index, long start, long deadline) {
+            super("load-client-" + index);
+            setDaemon(true);
+            this.workload = workload;
+            this.random = new SplittableRandom(workload.config.seed * 31 + index + 1);
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            Workload w = workload;
+            // With a target rate, each client owns every threads-th slot of the shared schedule.
+            long period = w.config.rate > 0 ? (long) (w.config.threads * 1e9 / w.config.rate) : 0;
+            long scheduled = start + (period == 0 ? 0 : random.nextLong(period));
+            for (long now = System.nanoTime(); now < deadline; ) {
+                if (period > 0) {
+                    if (scheduled > now) {
+                        // Parking wakes up tens of microseconds late, which would be charged to the call, so the
+                        // last stretch before the slot is spent yielding instead.
+                        if (scheduled - now > SPIN_NANOS) {
+                            LockSupport.parkNanos(scheduled - now - SPIN_NANOS);
+                        } else {
+                            Thread.yield();
+                        }
+                        now = System.nanoTime();
+                        continue;
+                    }
+                } else {
+                    scheduled = now;
+                }
+                Operation operation = w.pick(random);
+                // A call that threw is counted as an error only, not as a hit or a miss.
+                boolean hit = false;
+                boolean failed = false;
+                try {
+                    hit = w.call(operation, random);
+                } catch (RuntimeException e) {
+                    w.errors.increment();
+                    w.firstError.compareAndSet(null, e);
+                    failed = true;
+                }
+                now = System.nanoTime();
+                long elapsed = now - scheduled;
+                w.latency[operation.ordinal()].record(elapsed);
+                w.all.record(elapsed);
+                if (!failed) {
+                    (hit ? w.hits : w.misses)[operation.ordinal()].increment();
+                }
+                scheduled += period;
+            }
+        }
+    }
+
+    // Counters and histograms as they stood at one moment of the run.
+    private static final class Interval {
+        final long time;
+        final LatencyHistogram.Snapshot all;
+        final LatencyHistogram.Snapshot[] latency = new LatencyHistogram.Snapshot[OPERATIONS.length];
+        final long calls;
+        final long missed;
+        final long errors;
+        final long heapBytes;
+        final long liveBytes; // Lowest heap left after a collection since the last interval, or -1 if none ran.
+        final long gcCount;
+        final long gcMillis;
+        final LatencyHistogram.Snapshot pauses;
+
+        Interval(Workload workload, GcWatcher gc, long time) {
+            this.time = time;
+            this.all = workload.all.snapshot();
+            long missedSum = 0;
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                latency[i] = workload.latency[i].snapshot();
+                missedSum += workload.misses[i].sum();
+            }
+            this.calls = all.getCount();
+            this.missed = missedSum;
+            this.errors = workload.errors.sum();
+            this.heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            this.liveBytes = gc.takeLowestLive();
+            long count = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+                millis += Math.max(0, collector.getCollectionTime());
+            }
+            this.gcCount = count;
+            this.gcMillis = millis;
+            this.pauses = gc.pauses.snapshot();
+        }
+
+        String line(Interval previous, long start, int contacts) {
+            LatencyHistogram.Snapshot delta = all.since(previous.all);
+            long calls = this.calls - previous.calls;
+            double seconds = (time - previous.time) / 1e9;
+            String live = liveBytes < 0 ? "-" : String.format(Locale.ROOT, "%.0f", liveBytes / 1048576.0);
+            return String.format(Locale.ROOT, "%8.0f %10.0f %7.2f %8.1f %8.1f %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f "
+                            + "%8.0f %8s %5d %7d %8.1f %9d %6d",
+                    (time - start) / 1e9, calls / seconds,
+                    calls == 0 ? 0 : 100.0 * (missed - previous.missed) / calls,
+                    micros(delta.getValueAtPercentile(50)), micros(delta.getValueAtPercentile(99)),
+                    micros(delta.getValueAtPercentile(99.9)), micros(delta.getMax()),
+                    micros(p99(Operation.GET, previous)), micros(p99(Operation.UPDATE, previous)),
+                    micros(p99(Operation.ADD, previous)), micros(p99(Operation.DELETE, previous)),
+                    heapBytes / 1048576.0, live,
+                    gcCount - previous.gcCount, gcMillis - previous.gcMillis,
+                    pauses.since(previous.pauses).getMax() / 1e6, contacts, errors - previous.errors);
+        }
+
+        private long p99(Operation operation, Interval previous) {
+            return latency[operation.ordinal()].since(previous.latency[operation.ordinal()]).getValueAtPercentile(99);
+        }
+    }
+
+    // Totals for the whole run.
+    static final class Report {
+        final long calls;
+        final long errors;
+        final double liveHeapSlope; // MB per hour, or NaN with fewer than three points.
+        private final Workload workload;
+        private final Interval first;
+        private final Interval last;
+        private final List<double[]> liveHeap;
+
+        Report(Workload workload, Interval first, Interval last, List<double[]> liveHeap) {
+            this.workload = workload;
+            this.first = first;
+            this.last = last;
+            this.liveHeap = liveHeap;
+            this.calls = last.calls - first.calls;
+            this.errors = last.errors - first.errors;
+            this.liveHeapSlope = liveHeap.size() < 3 ? Double.NaN : slope(liveHeap) * 3600;
+        }
+
+        void write(Consumer<String> sink) {
+            double seconds = (last.time - first.time) / 1e9;
+            sink.accept(String.format(Locale.ROOT, "# summary: %d calls in %.0f s, %.0f calls/s, %d errors",
+                    calls, seconds, calls / seconds, errors));
+            StringBuilder header = new StringBuilder(String.format("# %-8s %12s %12s %12s", "operation", "calls",
+                    "hits", "misses"));
+            for (double percentile : SUMMARY_PERCENTILES) {
+                header.append(String.format(Locale.ROOT, " %10s", "p" + format(percentile) + " us"));
+            }
+            sink.accept(header.append(String.format(" %10s", "max us")).toString());
+            for (Operation operation : OPERATIONS) {
+                LatencyHistogram.Snapshot latency = last.latency[operation.ordinal()];
+                long hits = workload.hits[operation.ordinal()].sum();
+                long misses = workload.misses[operation.ordinal()].sum();
+                sink.accept(percentiles(String.format(Locale.ROOT, "# %-8s %12d %12d %12d",
+                        operation.name().toLowerCase(Locale.ROOT), latency.getCount(), hits, misses), latency));
+            }
+            sink.accept(percentiles(String.format(Locale.ROOT, "# %-8s %12d %12s %12s", "all", calls, "", ""),
+                    last.all));
+            LatencyHistogram.Snapshot pauses = last.pauses;
+            sink.accept(String.format(Locale.ROOT,
+                    "# gc: %d collections, %d ms in total, pauses p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    last.gcCount - first.gcCount, last.gcMillis - first.gcMillis,
+                    pauses.getValueAtPercentile(50) / 1e6, pauses.getValueAtPercentile(99) / 1e6,
+                    pauses.getMax() / 1e6));
+            if (liveHeap.isEmpty()) {
+                sink.accept("# live heap: no collection reported a heap size after the first interval");
+            } else {
+                sink.accept(String.format(Locale.ROOT, "# live heap: %.0f MB after the first interval, %.0f MB at "
+                        + "the end, trend %s MB/hour", liveHeap.get(0)[1], liveHeap.get(liveHeap.size() - 1)[1],
+                        Double.isNaN(liveHeapSlope) ? "-" : String.format(Locale.ROOT, "%+.1f", liveHeapSlope)));
+            }
+            Throwable error = workload.firstError.get();
+            if (error != null) {
+                StringWriter trace = new StringWriter();
+                error.printStackTrace(new PrintWriter(trace));
+                sink.accept("# first error: " + trace.toString().trim().replace("\n", "\n# "));
+            }
+        }
+
+        private static String percentiles(String prefix, LatencyHistogram.Snapshot latency) {
+            StringBuilder line = new StringBuilder(prefix);
+            for (double percentile : SUMMARY_PERCENTILES) {
+                line.append(String.format(Locale.ROOT, " %10.1f", micros(latency.getValueAtPercentile(percentile))));
+            }
+            return line.append(String.format(Locale.ROOT, " %10.1f", micros(latency.getMax()))).toString();
+        }
+
+        private static String format(double percentile) {
+            return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+        }
+
+        // Least-squares slope of y over x.
+        private static double slope(List<double[]> points) {
+            double meanX = 0;
+            double meanY = 0;
+            for (double[] point : points) {
+                meanX += point[0];
+                meanY += point[1];
+            }
+            meanX /= points.size();
+            meanY /= points.size();
+            double covariance = 0;
+            double variance = 0;
+            for (double[] point : points) {
+                covariance += (point[0] - meanX) * (point[1] - meanY);
+                variance += (point[0] - meanX) * (point[0] - meanX);
+            }
+            return variance == 0 ? 0 : covariance / variance;
+        }
+    }
+
+    // Listens for the end of every collection, recording its pause and the heap left in use after it. The lowest
+    // heap after a collection in an interval is the best measure of live data: young collections alone leave the
+    // old generation's garbage in place.
+    private static final class GcWatcher implements NotificationListener {
+        final LatencyHistogram pauses = new LatencyHistogram();
+        private final AtomicLong lowestLive = new AtomicLong(Long.MAX_VALUE);
+        private final Set<String> heapPools = new HashSet<>();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+        void start() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) collector;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+        }
+
+        void stop() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // Already removed.
+                }
+            }
+        }
+
+        // Returns the lowest heap in use after a collection since the last call, or -1 if none ran.
+        long takeLowestLive() {
+            long lowest = lowestLive.getAndSet(Long.MAX_VALUE);
+            return lowest == Long.MAX_VALUE ? -1 : lowest;
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            lowestLive.accumulateAndGet(used, Math::min);
+            // Concurrent collectors also report their cycles, which run beside the application and are not pauses.
+            String name = info.getGcName();
+            if (!name.contains("Concurrent") && !name.contains("Cycles")) {
+                pauses.record(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+            }
+        }
+    }
+
+    // Zipfian ranks over [0, n) by the method of Gray et al., "Quickly Generating Billion-Record Synthetic
+    // Databases" (as used by YCSB): rank 0 is the most popular. Ranks are mapped to keys by a fixed permutation,
+    // k = (a * rank + b) mod n with a coprime to n, so the hot keys are spread over the key space.
+    static final class Zipfian {
+        private final int n;
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+        private final double twoCutoff;
+        private final long a;
+        private final long b;
+
+        Zipfian(int n, double theta) {
+            this.n = n;
+            this.theta = theta;
+            double zeta = 0;
+            for (int i = 1; i <= n; i++) {
+                zeta += 1 / Math.pow(i, theta);
+            }
+            this.zetaN = zeta;
+            double zeta2 = 1 + 1 / Math.pow(2, theta);
+            this.alpha = 1 / (1 - theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zeta);
+            this.twoCutoff = 1 + Math.pow(0.5, theta);
+            long multiplier = 0x9E3779B1L % n;
+            while (multiplier < 1 || gcd(multiplier, n) != 1) {
+                multiplier = (multiplier + 1) % n;
+            }
+            this.a = multiplier;
+            this.b = n / 3;
+        }
+
+        // Rank drawn from the distribution: 0 is the most popular.
+        int nextRank(SplittableRandom random) {
+            if (theta == 0) {
+                return random.nextInt(n);
+            }
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < twoCutoff) {
+                return 1;
+            }
+            return (int) Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        // Key drawn from the distribution.
+        int next(SplittableRandom random) {
+            return keyOf(nextRank(random));
+        }
+
+        int keyOf(int rank) {
+            return (int) ((a * rank + b) % n);
+        }
+
+        private static long gcd(long x, long y) {
+            while (y != 0) {
+                long r = x % y;
+                x = y;
+                y = r;
+            }
+            return x;
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    // Parses 90s, 30m, 8h or 500ms; a bare number is seconds.
+    static long parseDuration(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        TimeUnit unit = TimeUnit.SECONDS;
+        if (value.endsWith("ms")) {
+            unit = TimeUnit.MILLISECONDS;
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("s")) {
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit = TimeUnit.MINUTES;
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("h")) {
+            unit = TimeUnit.HOURS;
+            value = value.substring(0, value.length() - 1);
+        }
+        return unit.toNanos(Long.parseLong(value.trim()));
+    }
+
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("duration", "60s");
+        options.put("interval", "10");
+        options.put("threads", "16");
+        options.put("keys", "1000000");
+        options.put("mix", "get=80,update=14,add=3,delete=3");
+        options.put("zipf", "0.99");
+        options.put("rate", "0");
+        options.put("store", "map");
+        options.put("pool", "false");
+        options.put("metrics", "false");
+        options.put("out", "soak-results.txt");
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value but got: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            // Every option has a default except seed, so a misspelled name is caught here rather than ignored.
+            if (!options.containsKey(name) && !name.equals("seed")) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            options.put(name, args[++i]);
+        }
+        return options;
+    }
+}
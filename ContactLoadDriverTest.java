@@ -0,0 +1,79 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+class ContactLoadDriverTest {
+
+    // Test case to verify that the Zipfian keys are skewed towards a few hot keys spread over the key space.
+    @Test
+    void testZipfianSkew() {
+        int n = 10000;
+        ContactLoadDriver.Zipfian zipfian = new ContactLoadDriver.Zipfian(n, 0.99);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] counts = new int[n];
+        int draws = 200000;
+        for (int i = 0; i < draws; i++) {
+            counts[zipfian.nextRank(random)]++;
+        }
+        // With theta 0.99 over 10000 ranks the top rank gets about 10% and the top 1% of ranks about half.
+        assertTrue(counts[0] > draws / 20 && counts[0] < draws / 5, "top rank drew " + counts[0]);
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[10]);
+        int top = 0;
+        for (int i = 0; i < n / 100; i++) {
+            top += counts[i];
+        }
+        assertTrue(top > draws * 0.4 && top < draws * 0.7, "top 1% drew " + top);
+
+        // Ranks map one to one onto keys, and neighbouring ranks do not land on neighbouring keys.
+        Set<Integer> keys = new HashSet<>();
+        for (int rank = 0; rank < n; rank++) {
+            keys.add(zipfian.keyOf(rank));
+        }
+        assertEquals(n, keys.size());
+        assertTrue(Math.abs(zipfian.keyOf(0) - zipfian.keyOf(1)) > 1);
+    }
+
+    // Test case to verify that a short run reports intervals and a summary without errors.
+    @Test
+    void testShortRun() throws InterruptedException {
+        String[] args = {"--duration", "1500ms", "--interval", "500ms", "--threads", "2", "--keys", "2000",
+                "--mix", "get=50,update=30,add=10,delete=10", "--seed", "7"};
+        List<String> lines = new ArrayList<>();
+        ContactLoadDriver.Report report = ContactLoadDriver.run(
+                new ContactLoadDriver.Config(ContactLoadDriver.parseOptions(args)), lines::add, "# test");
+        assertEquals(0, report.errors);
+        assertTrue(report.calls > 0);
+        assertEquals("# test", lines.get(0));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("# summary: ")), String.join("\n", lines));
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("# update ")));
+        // Three interval lines, each starting with its time.
+        assertEquals(3, lines.stream().filter(line -> line.trim().matches("\\d+ .*")).count(),
+                String.join("\n", lines));
+    }
+
+    // Test case to verify that durations and bad settings are parsed and rejected.
+    @Test
+    void testOptions() {
+        assertEquals(90_000_000_000L, ContactLoadDriver.parseDuration("90s"));
+        assertEquals(1_800_000_000_000L, ContactLoadDriver.parseDuration("30m"));
+        assertEquals(8 * 3_600_000_000_000L, ContactLoadDriver.parseDuration("8h"));
+        assertEquals(500_000_000L, ContactLoadDriver.parseDuration("500ms"));
+        assertEquals(5_000_000_000L, ContactLoadDriver.parseDuration("5"));
+        assertThrows(IllegalArgumentException.class, () -> new ContactLoadDriver.Config(
+                ContactLoadDriver.parseOptions(new String[] {"--zipf", "1"})));
+        assertThrows(IllegalArgumentException.class, () -> new ContactLoadDriver.Config(
+                ContactLoadDriver.parseOptions(new String[] {"--mix", "get=0,update=0,add=0,delete=0"})));
+        assertThrows(IllegalArgumentException.class, () -> new ContactLoadDriver.Config(
+                ContactLoadDriver.parseOptions(new String[] {"--mix", "scan=5"})));
+        assertThrows(IllegalArgumentException.class,
+                () -> ContactLoadDriver.parseOptions(new String[] {"--thread", "4"}));
+        assertEquals("7", ContactLoadDriver.parseOptions(new String[] {"--seed", "7"}).get("seed"));
+    }
+}
@@ -0,0 +1,113 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+class ContactMetricsTest {
+
+    // Test case to verify that each operation is counted by outcome, with validation failures by field.
+    @Test
+    void testCountsOutcomes() {
+        ContactService service = new ContactService();
+        ContactMetrics metrics = service.enableMetrics(1);
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St")));
+        service.updateContact("1", "Johnny", null, null, null);
+        assertThrows(IllegalArgumentException.class, () -> service.updateContact("1", null, null, "12", null));
+        assertThrows(IllegalArgumentException.class, () -> service.updateContact("2", "Jane", null, null, null));
+        service.getContact("1");
+        service.getContact("2");
+        service.applyBatch(Arrays.asList(
+                ContactOperation.add("3", "Jim", "Beam", "1234567893", "1 Rd"),
+                ContactOperation.update("3", null, null, null, "This address is far too long to be valid")));
+        service.deleteContact("1");
+
+        ContactMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(3L, snapshot.getCount(ContactMetrics.Operation.ADD));
+        assertEquals(2L, snapshot.getSuccessCount(ContactMetrics.Operation.ADD));
+        assertEquals(1L, snapshot.getErrorCount(ContactMetrics.Operation.ADD, ContactError.DUPLICATE_CONTACT_ID));
+        assertEquals(4L, snapshot.getCount(ContactMetrics.Operation.UPDATE));
+        assertEquals(1L, snapshot.getErrorCount(ContactError.INVALID_PHONE));
+        assertEquals(1L, snapshot.getErrorCount(ContactError.INVALID_ADDRESS));
+        assertEquals(1L, snapshot.getErrorCount(ContactMetrics.Operation.UPDATE, ContactError.CONTACT_NOT_FOUND));
+        assertEquals(1L, snapshot.getErrorCount(ContactMetrics.Operation.GET, ContactError.CONTACT_NOT_FOUND));
+        assertEquals(1L, snapshot.getSuccessCount(ContactMetrics.Operation.DELETE));
+        assertEquals(2L, snapshot.getLatency(ContactMetrics.Operation.GET).getCount());
+        assertEquals(1L, snapshot.getLatency(ContactMetrics.Operation.BATCH).getCount());
+        // Operations inside the batch are counted but not timed.
+        assertEquals(2L, snapshot.getLatency(ContactMetrics.Operation.ADD).getCount());
+    }
+
+    // Test case to verify that disabled metrics record nothing and re-enabling starts from zero.
+    @Test
+    void testDisableMetrics() {
+        ContactService service = new ContactService();
+        assertNull(service.getMetrics());
+        ContactMetrics metrics = service.enableMetrics();
+        assertSame(metrics, service.enableMetrics());
+        service.getContact("1");
+        service.disableMetrics();
+        service.getContact("1");
+        assertNull(service.getMetrics());
+        assertEquals(1L, metrics.snapshot().getCount(ContactMetrics.Operation.GET));
+        assertEquals(0L, service.enableMetrics().snapshot().getCount(ContactMetrics.Operation.GET));
+    }
+
+    // Test case to verify that adds rejected by validation are counted by field, including imported rows.
+    @Test
+    void testCountsAddValidationFailures() throws IOException {
+        ContactService service = new ContactService();
+        ContactMetrics metrics = service.enableMetrics(1);
+        service.addContact("1", "John", "Doe", "1234567890", "123 Main St");
+        assertThrows(InvalidContactException.class, () -> service.addContact("2", "Jane", "Doe", "12", "1 Rd"));
+        assertThrows(InvalidContactException.class, () -> service.addContact("3", null, "Doe", "1234567893", "1 Rd"));
+
+        Path file = Files.createTempFile("contacts", ".csv");
+        Files.write(file, ("4,Jim,Doe,1234567894,1 Rd\n5,Amy,Doe,123,2 Rd\n").getBytes(StandardCharsets.UTF_8));
+        new ContactImporter(service, 1).importCsv(file);
+
+        ContactMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2L, snapshot.getSuccessCount(ContactMetrics.Operation.ADD));
+        assertEquals(2L, snapshot.getErrorCount(ContactMetrics.Operation.ADD, ContactError.INVALID_PHONE));
+        assertEquals(1L, snapshot.getErrorCount(ContactMetrics.Operation.ADD, ContactError.INVALID_FIRST_NAME));
+        assertEquals(5L, snapshot.getCount(ContactMetrics.Operation.ADD));
+    }
+
+    // Test case to verify that sampled latencies cover a fraction of the calls while every call is counted.
+    @Test
+    void testSamplesLatency() {
+        ContactService service = new ContactService();
+        ContactMetrics metrics = service.enableMetrics(16);
+        for (int i = 0; i < 16_000; i++) {
+            service.getContact("1");
+        }
+        ContactMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(16_000L, snapshot.getCount(ContactMetrics.Operation.GET));
+        long timed = snapshot.getLatency(ContactMetrics.Operation.GET).getCount();
+        assertTrue(timed > 500 && timed < 1500, "timed " + timed);
+        assertThrows(IllegalArgumentException.class, () -> new ContactService().enableMetrics(0));
+    }
+
+    // Test case to verify that a snapshot can be dumped to a file.
+    @Test
+    void testWriteTo() throws IOException {
+        ContactService service = new ContactService();
+        ContactMetrics metrics = service.enableMetrics(1);
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        Path file = Files.createTempDirectory("contact-metrics").resolve("metrics.prom");
+        metrics.writeTo(file);
+
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(text.contains("contact_operations_total{operation=\"add\",outcome=\"ok\"} 1\n"));
+        assertTrue(text.contains("contact_operation_latency_nanoseconds_count{operation=\"add\"} 1\n"));
+        assertTrue(text.contains("contact_operation_latency_nanoseconds_sum{operation=\"add\"} "));
+        assertTrue(text.contains("quantile=\"0.99\""));
+    }
+}
@@ -0,0 +1,50 @@
+// A single add, update or delete to be applied as part of a ContactService batch.
+// Fields are kept as plain strings so the whole batch can be validated in one pass before anything is applied.
+public final class ContactOperation {
+    // The kind of change an operation makes.
+    public enum Type { ADD, UPDATE, DELETE }
+
+    private final Type type;          // What the operation does.
+    private final String contactID;   // Contact the operation targets.
+    private final String firstName;   // New first name, or null to leave unchanged on update.
+    private final String lastName;    // New last name, or null to leave unchanged on update.
+    private final String phone;       // New phone number, or null to leave unchanged on update.
+    private final String address;     // New address, or null to leave unchanged on update.
+
+    private ContactOperation(Type type, String contactID, String firstName, String lastName, String phone, String address) {
+        this.type = type;
+        this.contactID = contactID;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.phone = phone;
+        this.address = address;
+    }
+
+    // Adds a new contact with the given fields. The fields are validated when the batch runs.
+    public static ContactOperation add(String contactID, String firstName, String lastName, String phone, String address) {
+        return new ContactOperation(Type.ADD, contactID, firstName, lastName, phone, address);
+    }
+
+    // Adds an already constructed contact.
+    public static ContactOperation add(Contact contact) {
+        return add(contact.getContactID(), contact.getFirstName(), contact.getLastName(), contact.getPhone(), contact.getAddress());
+    }
+
+    // Updates an existing contact. Any null field will not be updated.
+    public static ContactOperation update(String contactID, String firstName, String lastName, String phone, String address) {
+        return new ContactOperation(Type.UPDATE, contactID, firstName, lastName, phone, address);
+    }
+
+    // Deletes an existing contact.
+    public static ContactOperation delete(String contactID) {
+        return new ContactOperation(Type.DELETE, contactID, null, null, null, null);
+    }
+
+    // Getter methods to retrieve the properties of the operation.
+    public Type getType() { return type; }
+    public String getContactID() { return contactID; }
+    public String getFirstName() { return firstName; }
+    public String getLastName() { return lastName; }
+    public String getPhone() { return phone; }
+    public String getAddress() { return address; }
+}
@@ -0,0 +1,738 @@
+// Typo-tolerant search over the first name, last name and address of every contact, kept current as a
+// ContactListener. Attach it with ContactService.enableSearch and query it with ContactService.search.
+//
+// Fields are split into lower-case words (runs of letters and digits). Every distinct word is a term with a
+// posting list of the contacts that contain it, and every term is indexed by its trigrams, with a space marking
+// the start and end of the word. A query is split the same way. For each query word the trigram index yields the
+// terms sharing enough trigrams to be within its edit budget, and those are checked with the Damerau-Levenshtein
+// distance (a swap of two neighbouring letters counts as one edit). The last query word also matches as a
+// prefix, so a half-typed word still finds its contacts. A contact matches if every query word is within budget
+// of one of its words, and ranks by the total number of edits, then by how much longer its words are than the
+// query's, then by contact ID.
+//
+// Because the vocabulary of names and street words is far smaller than the number of contacts, the fuzzy work
+// is done on terms, and only the posting lists of the closest terms of the rarest query word are walked. Those
+// are walked closest term first, and the walk stops as soon as no remaining contact can beat the results held.
+// Large posting lists are split across the common fork-join pool.
+//
+// Updates only append, and changes to different contacts run in parallel: each posting list and each stripe of
+// the contact ID table has its own lock, and only the first use of a new word takes a lock shared by all writers.
+// Searches take no locks: they may miss a change made while they run, and every candidate is re-checked against
+// the contact's current fields, so they never return a contact that no longer matches. Entries for words a
+// contact no longer has are dropped when their list next grows.
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class ContactSearchIndex implements ContactListener {
+    // One search result.
+    public static final class Match {
+        private final Contact contact;
+        private final int distance;       // Total edits between the query words and the contact's words.
+        private final int lengthPenalty;  // Total characters by which the matched words are longer or shorter.
+        private final int docID;
+
+        Match(Contact contact, int distance, int lengthPenalty, int docID) {
+            this.contact = contact;
+            this.distance = distance;
+            this.lengthPenalty = lengthPenalty;
+            this.docID = docID;
+        }
+
+        public Contact getContact() { return contact; }
+        public int getDistance() { return distance; }
+        int getLengthPenalty() { return lengthPenalty; }
+
+        @Override
+        public String toString() {
+            return contact.getContactID() + " (" + distance + " edits)";
+        }
+    }
+
+    // Best match first. Also used to merge the results of several shards.
+    static final Comparator<Match> RANKING = Comparator.<Match>comparingInt(m -> m.distance)
+            .thenComparingInt(m -> m.lengthPenalty)
+            .thenComparing(m -> m.contact.getContactID());
+    private static final int MAX_WORD_LENGTH = 62;            // Longer words are not indexed or searched.
+    private static final int PARALLEL_THRESHOLD = 1 << 15;    // Posting lists at least this long are split.
+    private static final int PARALLEL_CHUNK = 1 << 13;
+
+    private static final int ID_STRIPES = 64;                  // Stripes of the contact ID table.
+
+    private final Map<String, Term> terms = new ConcurrentHashMap<>();
+    private final Map<Long, IntList> trigrams = new ConcurrentHashMap<>();  // Trigram to IDs of terms holding it.
+    private final Table<Term> termsByID = new Table<>();                   // Written only under newTermLock.
+    private final Table<Contact> docs = new Table<>();                     // Document ID to its current contact.
+    private final Object newTermLock = new Object();
+    private final IdStripe[] idStripes = new IdStripe[ID_STRIPES];
+
+    // Freed document IDs are reused. Guarded by itself, together with nextDocID.
+    private final IntList freeDocIDs = new IntList();
+    private int nextDocID;
+
+    public ContactSearchIndex() {
+        for (int i = 0; i < ID_STRIPES; i++) {
+            idStripes[i] = new IdStripe();
+        }
+    }
+
+    // The service reports the changes to one contact one at a time and in order, so only changes to different
+    // contacts run at the same time here.
+    @Override
+    public void contactAdded(Contact contact) {
+        IdStripe stripe = stripeFor(contact.getContactID());
+        int docID;
+        boolean known;
+        synchronized (stripe) {
+            docID = stripe.find(contact.getContactID());
+            known = docID >= 0;
+            if (!known) {
+                synchronized (freeDocIDs) {
+                    docID = freeDocIDs.size() > 0 ? freeDocIDs.removeLast() : nextDocID++;
+                }
+                docs.set(docID, contact);
+                stripe.insert(contact.getContactID(), docID);
+            }
+        }
+        if (known) {
+            // Reported twice while the listener was being registered.
+            replace(docID, contact);
+            return;
+        }
+        for (String word : words(contact)) {
+            addPosting(word, docID);
+        }
+    }
+
+    @Override
+    public void contactUpdated(Contact before, Contact after) {
+        IdStripe stripe = stripeFor(after.getContactID());
+        int docID;
+        synchronized (stripe) {
+            docID = stripe.find(after.getContactID());
+        }
+        if (docID >= 0) {
+            replace(docID, after);
+        }
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        IdStripe stripe = stripeFor(contact.getContactID());
+        int docID;
+        synchronized (stripe) {
+            docID = stripe.remove(contact.getContactID());
+        }
+        if (docID >= 0) {
+            docs.set(docID, null);
+            synchronized (freeDocIDs) {
+                freeDocIDs.add(docID);
+            }
+            markStale(words(contact));
+        }
+    }
+
+    // Returns up to limit contacts matching every word of the query, best first. Each query word may be off by
+    // one edit if it has 3 to 5 characters and by two if it is longer; shorter words must match exactly.
+    public List<Match> search(String query, int limit) {
+        if (query == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> words = split(query);
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+        int count = words.size();
+        Query q = new Query(count);
+        for (int i = 0; i < count; i++) {
+            String word = words.get(i);
+            q.words[i] = word.toCharArray();
+            q.maxEdits[i] = word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2;
+            q.prefix[i] = lastIsPrefix && i == count - 1 && word.length() >= 2;
+        }
+
+        // Drive the search from the query word whose candidate terms have the fewest postings in total.
+        List<Alternative> driver = null;
+        long driverPostings = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            List<Alternative> alternatives = alternatives(q.words[i], q.maxEdits[i], q.prefix[i]);
+            if (alternatives.isEmpty()) {
+                return Collections.emptyList();
+            }
+            long postings = 0;
+            for (Alternative alternative : alternatives) {
+                postings += alternative.term.postings.size();
+            }
+            if (postings < driverPostings) {
+                driver = alternatives;
+                driverPostings = postings;
+            }
+        }
+
+        TopK top = new TopK(limit);
+        for (Alternative alternative : driver) {
+            // Every contact reached through this term has at least its distance.
+            if (top.isDone(alternative.distance)) {
+                break;
+            }
+            IntList postings = alternative.term.postings;
+            int[] items = postings.items();
+            int size = Math.min(postings.size(), items.length);
+            if (size >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                int chunks = (size + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+                int lowerBound = alternative.distance;
+                TopK merged = IntStream.range(0, chunks).parallel()
+                        .mapToObj(c -> {
+                            TopK local = new TopK(limit);
+                            scan(items, c * PARALLEL_CHUNK, Math.min(size, (c + 1) * PARALLEL_CHUNK), q, local, lowerBound);
+                            return local;
+                        })
+                        .reduce(new TopK(limit), TopK::mergeFrom);
+                top.mergeFrom(merged);
+            } else {
+                scan(items, 0, size, q, top, alternative.distance);
+            }
+        }
+        return top.sorted();
+    }
+
+    // Scores the contacts in items[from, to) and offers them to top. Stops early once nothing can beat top.
+    private void scan(int[] items, int from, int to, Query q, TopK top, int lowerBound) {
+        Scorer scorer = new Scorer();
+        for (int i = from; i < to; i++) {
+            int docID = items[i];
+            Contact contact = docs.get(docID);
+            if (contact != null && scorer.score(contact, q)) {
+                top.offer(new Match(contact, scorer.distance, scorer.penalty, docID));
+                if (top.isDone(lowerBound)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Finds the terms within maxEdits of the word, closest first.
+    private List<Alternative> alternatives(char[] word, int maxEdits, boolean prefix) {
+        List<Alternative> result = new ArrayList<>();
+        if (word.length > MAX_WORD_LENGTH) {
+            return result;
+        }
+        if (maxEdits == 0 && !prefix) {
+            Term term = terms.get(new String(word));
+            if (term != null) {
+                result.add(new Alternative(term, 0));
+            }
+            return result;
+        }
+
+        // Each edit changes at most three trigrams, so a term within maxEdits shares at least this many with the
+        // word. At least one shared trigram is always required, which can miss a typo in a very short word.
+        List<Long> grams = trigramsOf(word, prefix);
+        int required = Math.max(1, grams.size() - 3 * maxEdits);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (Long gram : grams) {
+            IntList termIDs = trigrams.get(gram);
+            if (termIDs == null) {
+                continue;
+            }
+            int[] items = termIDs.items();
+            int size = Math.min(termIDs.size(), items.length);
+            for (int i = 0; i < size; i++) {
+                shared.merge(items[i], 1, Integer::sum);
+            }
+        }
+        Scorer scorer = new Scorer();
+        for (Map.Entry<Integer, Integer> entry : shared.entrySet()) {
+            if (entry.getValue() < required) {
+                continue;
+            }
+            Term term = termsByID.get(entry.getKey());
+            int distance = scorer.distance(word, term.text, 0, term.text.length(), maxEdits, prefix);
+            if (distance <= maxEdits) {
+                result.add(new Alternative(term, distance));
+            }
+        }
+        result.sort(Comparator.comparingInt(a -> a.distance));
+        return result;
+    }
+
+    // Points an existing document at the contact's new version and indexes the words it did not have before.
+    // Words it lost keep stale postings until those lists are compacted.
+    private void replace(int docID, Contact contact) {
+        Contact previous = docs.get(docID);
+        docs.set(docID, contact);
+        Set<String> before = previous == null ? new HashSet<>() : words(previous);
+        Set<String> after = words(contact);
+        for (String word : after) {
+            if (!before.remove(word)) {
+                addPosting(word, docID);
+            }
+        }
+        markStale(before);
+    }
+
+    // Counts the postings of words a contact no longer has, so their lists know when compacting is worthwhile.
+    private void markStale(Set<String> words) {
+        for (String word : words) {
+            Term term = terms.get(word);
+            if (term != null) {
+                synchronized (term) {
+                    term.stale++;
+                }
+            }
+        }
+    }
+
+    private void addPosting(String word, int docID) {
+        Term term = terms.get(word);
+        if (term == null) {
+            term = newTerm(word);
+        }
+        Term owner = term;
+        synchronized (term) {
+            if (term.postings.isFull() && term.stale * 4 >= term.postings.size()) {
+                // Compact instead of growing once at least a quarter of the list is deleted or stale entries.
+                term.postings.retain(id -> {
+                    Contact contact = docs.get(id);
+                    return contact != null && containsWord(contact, owner.text);
+                });
+                term.stale = 0;
+            }
+            term.postings.add(docID);
+        }
+    }
+
+    // Adds a word seen for the first time to the term tables, or returns the term another writer just added.
+    // New words are rare next to new postings, so one lock for all of them costs little.
+    private Term newTerm(String word) {
+        synchronized (newTermLock) {
+            Term term = terms.get(word);
+            if (term == null) {
+                Term created = new Term(termsByID.size(), word);
+                termsByID.set(created.id, created);
+                for (Long gram : trigramsOf(word.toCharArray(), false)) {
+                    trigrams.computeIfAbsent(gram, key -> new IntList()).add(created.id);
+                }
+                terms.put(word, created);
+                term = created;
+            }
+            return term;
+        }
+    }
+
+    // Lower-case words of the searchable fields of a contact.
+    private static Set<String> words(Contact contact) {
+        Set<String> words = new HashSet<>();
+        words.addAll(split(contact.getFirstName()));
+        words.addAll(split(contact.getLastName()));
+        words.addAll(split(contact.getAddress()));
+        return words;
+    }
+
+    private static List<String> split(String text) {
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (i - start <= MAX_WORD_LENGTH) {
+                    words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static boolean containsWord(Contact contact, String word) {
+        return containsWord(contact.getFirstName(), word) || containsWord(contact.getLastName(), word)
+                || containsWord(contact.getAddress(), word);
+    }
+
+    private static boolean containsWord(String text, String word) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (i - start == word.length() && text.regionMatches(true, start, word, 0, word.length())) {
+                    return true;
+                }
+                start = -1;
+            }
+        }
+        return false;
+    }
+
+    // Trigrams of the word padded with a space on each side, or only in front for prefix matching.
+    private static List<Long> trigramsOf(char[] word, boolean prefix) {
+        int length = word.length + (prefix ? 1 : 2);
+        char[] padded = new char[length];
+        padded[0] = ' ';
+        System.arraycopy(word, 0, padded, 1, word.length);
+        if (!prefix) {
+            padded[length - 1] = ' ';
+        }
+        List<Long> grams = new ArrayList<>();
+        for (int i = 0; i + 3 <= length; i++) {
+            Long gram = ((long) padded[i] << 32) | ((long) padded[i + 1] << 16) | padded[i + 2];
+            if (!grams.contains(gram)) {
+                grams.add(gram);
+            }
+        }
+        return grams;
+    }
+
+    private IdStripe stripeFor(String contactID) {
+        return idStripes[spread(contactID.hashCode()) >>> 26 & (ID_STRIPES - 1)];
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    private static final class Term {
+        final int id;
+        final String text;
+        final IntList postings = new IntList();   // Document IDs, possibly stale.
+        int stale;                                // Postings known to be stale since the last compaction.
+
+        Term(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private static final class Alternative {
+        final Term term;
+        final int distance;
+
+        Alternative(Term term, int distance) {
+            this.term = term;
+            this.distance = distance;
+        }
+    }
+
+    private static final class Query {
+        final char[][] words;
+        final int[] maxEdits;
+        final boolean[] prefix;
+
+        Query(int count) {
+            words = new char[count][];
+            maxEdits = new int[count];
+            prefix = new boolean[count];
+        }
+    }
+
+    // Checks a contact against a query without allocating. Not thread-safe; each scanning thread has its own.
+    private static final class Scorer {
+        private final int[][] rows = new int[3][MAX_WORD_LENGTH + 2];
+        int distance;
+        int penalty;
+
+        // Returns true if every query word is within budget of some word of the contact, and sets the total
+        // distance and length penalty of the best choice for each.
+        boolean score(Contact contact, Query q) {
+            distance = 0;
+            penalty = 0;
+            for (int w = 0; w < q.words.length; w++) {
+                int best = Integer.MAX_VALUE;
+                best = Math.min(best, bestIn(contact.getFirstName(), q.words[w], q.maxEdits[w], q.prefix[w]));
+                best = Math.min(best, bestIn(contact.getLastName(), q.words[w], q.maxEdits[w], q.prefix[w]));
+                best = Math.min(best, bestIn(contact.getAddress(), q.words[w], q.maxEdits[w], q.prefix[w]));
+                if (best == Integer.MAX_VALUE) {
+                    return false;
+                }
+                // best packs the distance above the length difference, so one min picks both.
+                distance += best >>> 8;
+                penalty += best & 0xFF;
+            }
+            return true;
+        }
+
+        // Best (distance << 8 | length difference) of the word against each word of the text, or MAX_VALUE.
+        private int bestIn(String text, char[] word, int maxEdits, boolean prefix) {
+            int best = Integer.MAX_VALUE;
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (inWord && start < 0) {
+                    start = i;
+                } else if (!inWord && start >= 0) {
+                    int d = distance(word, text, start, i - start, maxEdits, prefix);
+                    if (d <= maxEdits) {
+                        best = Math.min(best, d << 8 | Math.min(255, Math.abs(i - start - word.length)));
+                    }
+                    start = -1;
+                }
+            }
+            return best;
+        }
+
+        // Optimal string alignment distance between the word and text[start, start + length), compared without
+        // case. In prefix mode, the distance to the closest prefix of the text. Returns maxEdits + 1 as soon as
+        // the distance is known to exceed maxEdits.
+        int distance(char[] word, String text, int start, int length, int maxEdits, boolean prefix) {
+            int m = word.length;
+            int n = length;
+            if (n > MAX_WORD_LENGTH || (prefix ? n < m - maxEdits : Math.abs(n - m) > maxEdits)) {
+                return maxEdits + 1;
+            }
+            int[] before = rows[0];
+            int[] previous = rows[1];
+            int[] current = rows[2];
+            for (int j = 0; j <= n; j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= m; i++) {
+                current[0] = i;
+                int rowMin = i;
+                char a = word[i - 1];
+                for (int j = 1; j <= n; j++) {
+                    char b = Character.toLowerCase(text.charAt(start + j - 1));
+                    int value = Math.min(Math.min(previous[j], current[j - 1]) + 1, previous[j - 1] + (a == b ? 0 : 1));
+                    if (i > 1 && j > 1 && a == Character.toLowerCase(text.charAt(start + j - 2))
+                            && word[i - 2] == b) {
+                        value = Math.min(value, before[j - 2] + 1);
+                    }
+                    current[j] = value;
+                    rowMin = Math.min(rowMin, value);
+                }
+                if (rowMin > maxEdits) {
+                    return maxEdits + 1;
+                }
+                int[] recycled = before;
+                before = previous;
+                previous = current;
+                current = recycled;
+            }
+            if (!prefix) {
+                return previous[n];
+            }
+            int best = previous[0];
+            for (int j = 1; j <= n; j++) {
+                best = Math.min(best, previous[j]);
+            }
+            return best;
+        }
+    }
+
+    // The best matches seen so far, holding at most limit of them.
+    private static final class TopK {
+        private final int limit;
+        private final PriorityQueue<Match> heap;   // Worst match at the head.
+        private final Set<Integer> docIDs = new HashSet<>();
+
+        TopK(int limit) {
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, RANKING.reversed());
+        }
+
+        void offer(Match match) {
+            if (heap.size() == limit && RANKING.compare(match, heap.peek()) >= 0) {
+                return;
+            }
+            if (!docIDs.add(match.docID)) {
+                return; // Reached again through another term.
+            }
+            heap.add(match);
+            if (heap.size() > limit) {
+                docIDs.remove(heap.poll().docID);
+            }
+        }
+
+        // True if no contact with at least lowerBound edits can enter the results any more.
+        boolean isDone(int lowerBound) {
+            // Strictly below: a contact at the same distance can still win on length or contact ID.
+            return heap.size() == limit && heap.peek().distance < lowerBound;
+        }
+
+        TopK mergeFrom(TopK other) {
+            for (Match match : other.heap) {
+                offer(match);
+            }
+            return this;
+        }
+
+        List<Match> sorted() {
+            List<Match> result = new ArrayList<>(heap);
+            result.sort(RANKING);
+            return result;
+        }
+    }
+
+    // Growable int list that one writer appends to while any number of readers read it without locking.
+    // Readers take items() and then size(), and read up to the smaller of size() and the array length. During a
+    // compaction that may include unused zero entries, which is harmless because every posting is re-checked.
+    private static final class IntList {
+        private volatile int[] items = new int[4];
+        private volatile int size;
+
+        int size() { return size; }
+        int[] items() { return items; }
+
+        boolean isFull() {
+            return size == items.length;
+        }
+
+        void add(int value) {
+            int[] current = items;
+            if (size == current.length) {
+                current = java.util.Arrays.copyOf(current, current.length * 2);
+                items = current;
+            }
+            current[size] = value;
+            size = size + 1;
+        }
+
+        int removeLast() {
+            size = size - 1;
+            return items[size];
+        }
+
+        // Keeps only the entries accepted by the filter, in a new array so readers of the old one are unaffected.
+        // The array only grows if at least half of the entries survive.
+        void retain(java.util.function.IntPredicate keep) {
+            int[] current = items;
+            int count = size;
+            int kept = 0;
+            int[] next = new int[current.length];
+            for (int i = 0; i < count; i++) {
+                if (keep.test(current[i])) {
+                    next[kept++] = current[i];
+                }
+            }
+            if (kept * 2 > current.length) {
+                next = java.util.Arrays.copyOf(next, current.length * 2);
+            }
+            // Publish the array before shrinking the size, so a reader never pairs the old size with the new array.
+            items = next;
+            size = kept;
+        }
+    }
+
+    // One stripe of the writer-only table from contact ID to document ID: an open-addressing table of document
+    // ID + 1 (0 = empty, -1 = deleted). Guarded by its own monitor. Stale entries that point at a reused document
+    // ID are harmless because every candidate is checked against the contact now holding it.
+    private final class IdStripe {
+        private int[] slots = new int[16];
+        private int usedSlots;
+
+        int find(String contactID) {
+            int mask = slots.length - 1;
+            for (int i = spread(contactID.hashCode()) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int docID = slots[i] - 1;
+                if (docID >= 0 && docs.get(docID).getContactID().equals(contactID)) {
+                    return docID;
+                }
+            }
+            return -1;
+        }
+
+        void insert(String contactID, int docID) {
+            if ((usedSlots + 1) * 2 > slots.length) {
+                rehash();
+            }
+            int mask = slots.length - 1;
+            int i = spread(contactID.hashCode()) & mask;
+            while (slots[i] > 0) {
+                i = (i + 1) & mask;
+            }
+            if (slots[i] == 0) {
+                usedSlots++;
+            }
+            slots[i] = docID + 1;
+        }
+
+        int remove(String contactID) {
+            int mask = slots.length - 1;
+            for (int i = spread(contactID.hashCode()) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int docID = slots[i] - 1;
+                if (docID >= 0 && docs.get(docID).getContactID().equals(contactID)) {
+                    slots[i] = -1;
+                    return docID;
+                }
+            }
+            return -1;
+        }
+
+        private void rehash() {
+            int[] old = slots;
+            int live = 0;
+            for (int slot : old) {
+                if (slot > 0) {
+                    live++;
+                }
+            }
+            slots = new int[Math.max(old.length, Integer.highestOneBit(Math.max(1, live) * 4))];
+            usedSlots = 0;
+            for (int slot : old) {
+                if (slot > 0) {
+                    insert(docs.get(slot - 1).getContactID(), slot - 1);
+                }
+            }
+        }
+    }
+
+    // Growable table from int IDs to objects. Readers do not lock; writers of different IDs need not either.
+    private static final class Table<T> {
+        private static final int PAGE_BITS = 14;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+        private volatile Object[][] pages = new Object[0][];
+        private volatile int size;    // One more than the highest ID ever set.
+
+        @SuppressWarnings("unchecked")
+        T get(int id) {
+            Object[][] current = pages;
+            int page = id >>> PAGE_BITS;
+            return page < current.length ? (T) current[page][id & (PAGE_SIZE - 1)] : null;
+        }
+
+        void set(int id, T value) {
+            // Size before pages: grow publishes the pages first, so the pages read here already hold the ID.
+            if (id < size) {
+                pages[id >>> PAGE_BITS][id & (PAGE_SIZE - 1)] = value;
+            } else {
+                grow(id, value);
+            }
+        }
+
+        // Growing replaces only the array of pages, so a write to an existing page needs no lock.
+        private synchronized void grow(int id, T value) {
+            int page = id >>> PAGE_BITS;
+            Object[][] current = pages;
+            if (page >= current.length) {
+                Object[][] grown = java.util.Arrays.copyOf(current, Math.max(page + 1, current.length * 2));
+                for (int p = current.length; p < grown.length; p++) {
+                    grown[p] = new Object[PAGE_SIZE];
+                }
+                pages = grown;
+                current = grown;
+            }
+            current[page][id & (PAGE_SIZE - 1)] = value;
+            if (id >= size) {
+                size = id + 1;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+class ContactSearchIndexTest {
+
+    private static ContactService sampleService() {
+        ContactService service = new ContactService();
+        service.enableSearch();
+        service.addContact(new Contact("1", "Jonathan", "Smith", "1234567890", "12 Main Street"));
+        service.addContact(new Contact("2", "Jane", "Smythe", "1234567891", "14 Maple Avenue"));
+        service.addContact(new Contact("3", "Catherine", "Johnson", "1234567892", "9 Oak Road"));
+        service.addContact(new Contact("4", "Kathryn", "Jonson", "1234567893", "77 Harbour View"));
+        return service;
+    }
+
+    // Test case to verify that misspelled names still find the contact, including swapped letters.
+    @Test
+    void testMisspelledNames() {
+        ContactService service = sampleService();
+
+        assertEquals("1", service.search("Jonathon Smith", 10).get(0).getContactID());
+        assertEquals("1", service.search("jonahtan smith ", 10).get(0).getContactID());
+        assertEquals("3", service.search("Catherin Johnsen ", 10).get(0).getContactID());
+        assertTrue(service.search("Zebedee", 10).isEmpty());
+    }
+
+    // Test case to verify that a partially typed address matches as a prefix of its last word.
+    @Test
+    void testPartialAddress() {
+        ContactService service = sampleService();
+
+        List<Contact> found = service.search("harbour vi", 10);
+        assertEquals(1, found.size());
+        assertEquals("4", found.get(0).getContactID());
+        assertEquals("2", service.search("14 mapel", 10).get(0).getContactID());
+        // Short words must match exactly.
+        assertTrue(service.search("15 maple ", 10).isEmpty());
+    }
+
+    // Test case to verify that closer matches rank first and the limit is respected.
+    @Test
+    void testRanking() {
+        ContactService service = sampleService();
+
+        List<Contact> found = service.search("johnson ", 10);
+        assertEquals(2, found.size());
+        assertEquals("3", found.get(0).getContactID());
+        assertEquals("4", found.get(1).getContactID());
+        assertEquals(1, service.search("johnson ", 1).size());
+        assertEquals("3", service.search("johnson ", 1).get(0).getContactID());
+    }
+
+    // Test case to verify that equally close matches are ranked by contact ID whatever order they were indexed in.
+    @Test
+    void testTiesRankByContactID() {
+        ContactService service = new ContactService();
+        service.enableSearch();
+        for (int i = 9; i >= 1; i--) {
+            service.addContact(new Contact("c" + i, "Ann", "Smith", "1234567890", "1 Main St"));
+        }
+        assertEquals("c1", service.search("smith ", 1).get(0).getContactID());
+        List<Contact> found = service.search("smith ann", 3);
+        assertEquals(List.of("c1", "c2", "c3"), List.of(found.get(0).getContactID(),
+                found.get(1).getContactID(), found.get(2).getContactID()));
+        assertTrue(service.search(null, 5).isEmpty());
+    }
+
+    // Test case to verify that contacts changed from several threads at once are all searchable.
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        ContactService service = new ContactService();
+        service.enableSearch();
+        String[] names = {"Alpha", "Bravo", "Charlie", "Delta"};
+        String[] moved = {"Kilo", "Lima", "Oscar", "Papa"};
+        Thread[] threads = new Thread[names.length];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String id = thread + "-" + i;
+                    service.addContact(new Contact(id, "Name" + i, names[thread], "1234567890", i + " Oak Road"));
+                    if (i % 5 == 0) {
+                        service.updateContact(id, null, moved[thread], null, null);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int t = 0; t < threads.length; t++) {
+            assertEquals(400, service.search(names[t] + " ", 1000).size());
+            assertEquals(100, service.search(moved[t] + " ", 1000).size());
+        }
+    }
+
+    // Test case to verify that search follows updates and deletes.
+    @Test
+    void testSearchFollowsUpdateAndDelete() {
+        ContactService service = sampleService();
+
+        service.updateContact("1", null, "Baker", null, null);
+        assertTrue(service.search("smith ", 10).isEmpty());
+        assertEquals("1", service.search("jonathan bakr ", 10).get(0).getContactID());
+
+        service.deleteContact("1");
+        assertTrue(service.search("jonathan ", 10).isEmpty());
+
+        // A reused entry must not inherit the deleted contact's words.
+        service.addContact(new Contact("5", "Maria", "Lopez", "1234567894", "3 Elm Court"));
+        assertTrue(service.search("baker ", 10).isEmpty());
+        assertEquals("5", service.search("lopes", 10).get(0).getContactID());
+    }
+
+    // Test case to verify that contacts added before search was enabled are searchable.
+    @Test
+    void testEnableSearchIndexesExistingContacts() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "Jonathan", "Smith", "1234567890", "12 Main Street"));
+        assertThrows(IllegalStateException.class, () -> service.search("smith", 10));
+
+        service.enableSearch();
+        assertEquals(1, service.search("smiht", 10).size());
+    }
+}
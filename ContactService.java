@@ -1,54 +1,583 @@
 // Manages a collection of contacts, providing methods for adding, deleting, updating, and retrieving contacts.
-import java.util.HashMap;
-import java.util.Map;
+// The service is safe to share between threads: every method performs its check and its change as a single
+// atomic ContactStore operation. Stored contacts are immutable, so an update swaps in a new version of the contact
+// and getContact never sees a half-applied change. The default store is a ConcurrentHashMap (MapContactStore);
+// PackedContactStore trades write concurrency for a much smaller memory footprint, and VersionedContactStore
+// adds point-in-time snapshots.
+// Every change is reported to registered ContactListeners, which is how the optional secondary indexes stay current.
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 public class ContactService {
-    private final Map<String, Contact> contacts = new HashMap<>(); // Stores contacts using their contact ID as the key.
+    private static final ContactListener[] NO_LISTENERS = new ContactListener[0];
+
+    private final ContactStore contacts;                         // Stores contacts using their contact ID as the key.
+    private volatile ContactListener[] listeners = NO_LISTENERS; // Notified of every change; replaced on registration.
+    private volatile ContactIndex index;                         // Secondary indexes, or null until enabled.
+    private volatile ContactSearchIndex searchIndex;             // Typo-tolerant search, or null until enabled.
+    private volatile ContactMetrics metrics;                     // Operation metrics, or null while disabled.
+
+    // Creates an empty service.
+    public ContactService() {
+        this(new MapContactStore());
+    }
+
+    // Creates an empty service whose map is sized up front for the expected number of contacts,
+    // so a large initial load does not pay for repeated resizing.
+    public ContactService(int expectedContacts) {
+        if (expectedContacts < 0) {
+            throw new IllegalArgumentException("Expected contacts cannot be negative");
+        }
+        this.contacts = new MapContactStore(expectedContacts);
+    }
+
+    // Creates an empty service backed by the given storage engine.
+    public ContactService(ContactStore store) {
+        this.contacts = store;
+    }
 
     // Adds a new contact to the service.
     // Throws IllegalArgumentException if the contact ID already exists.
     public void addContact(Contact contact) {
-        if (contacts.containsKey(contact.getContactID())) {
+        if (!tryAddContact(contact)) {
             throw new IllegalArgumentException("Contact ID already exists");
         }
-        contacts.put(contact.getContactID(), contact);
+    }
+
+    // Creates and adds a new contact from its fields. Unlike building the Contact first, a field that fails
+    // validation is counted in the metrics as a failed ADD, by field.
+    // Throws InvalidContactException if a field is invalid and IllegalArgumentException if the contact ID already
+    // exists.
+    public void addContact(String contactID, String firstName, String lastName, String phone, String address) {
+        Contact contact;
+        try {
+            contact = new Contact(contactID, firstName, lastName, phone, address);
+        } catch (InvalidContactException e) {
+            recordRejectedAdd(e.getError());
+            throw e;
+        }
+        addContact(contact);
+    }
+
+    // Counts an add that was rejected before it reached the service, such as an imported row that failed
+    // validation.
+    void recordRejectedAdd(ContactError error) {
+        ContactMetrics m = metrics;
+        if (m != null) {
+            m.record(ContactMetrics.Operation.ADD, m.start(), error);
+        }
+    }
+
+    // Adds a new contact unless one with the same ID already exists, without throwing.
+    // Returns false if the contact ID already exists. Used by bulk loaders where a duplicate is an expected outcome.
+    public boolean tryAddContact(Contact contact) {
+        ContactMetrics m = metrics;
+        long start = m == null ? 0 : m.start();
+        boolean added = apply(contact.getContactID(), existing -> existing == null ? contact : existing) == null;
+        if (m != null) {
+            m.record(ContactMetrics.Operation.ADD, start, added ? null : ContactError.DUPLICATE_CONTACT_ID);
+        }
+        return added;
     }
 
     // Deletes a contact based on its contact ID.
     // Throws IllegalArgumentException if the contact ID does not exist.
     public void deleteContact(String contactID) {
-        if (!contacts.containsKey(contactID)) {
+        ContactMetrics m = metrics;
+        long start = m == null ? 0 : m.start();
+        boolean deleted = contactID != null && apply(contactID, existing -> null) != null;
+        if (m != null) {
+            m.record(ContactMetrics.Operation.DELETE, start, deleted ? null : ContactError.CONTACT_NOT_FOUND);
+        }
+        if (!deleted) {
             throw new IllegalArgumentException("Contact ID does not exist");
         }
-        contacts.remove(contactID); // Remove the contact from the map.
     }
 
     // Updates an existing contact's details if they exist.
     // Any null fields will not be updated.
     // Throws IllegalArgumentException if the contact ID does not exist.
     public void updateContact(String contactID, String firstName, String lastName, String phone, String address) {
-        Contact contact = contacts.get(contactID);
-        if (contact == null) {
+        ContactMetrics m = metrics;
+        long start = m == null ? 0 : m.start();
+        Contact previous = null;
+        if (contactID != null) {
+            // The new version is built and swapped in while the map holds the entry's bin lock,
+            // so it cannot race with another update or a delete of the same ID.
+            try {
+                previous = apply(contactID,
+                        existing -> existing == null ? null : existing.update(firstName, lastName, phone, address));
+            } catch (InvalidContactException e) {
+                if (m != null) {
+                    m.record(ContactMetrics.Operation.UPDATE, start, e.getError());
+                }
+                throw e;
+            }
+        }
+        if (m != null) {
+            m.record(ContactMetrics.Operation.UPDATE, start, previous == null ? ContactError.CONTACT_NOT_FOUND : null);
+        }
+        if (previous == null) {
             throw new IllegalArgumentException("Contact ID does not exist");
         }
+    }
 
-        // Update each field if it's not null.
-        if (firstName != null) {
-            contact.setFirstName(firstName);
-        }
-        if (lastName != null) {
-            contact.setLastName(lastName);
+    // Updates an existing contact only if it is still at the expected version (optimistic compare-and-set).
+    // Any null fields will not be updated.
+    // Returns false without changing anything if another update got there first.
+    // Throws IllegalArgumentException if the contact ID does not exist.
+    public boolean updateContact(String contactID, long expectedVersion,
+                                 String firstName, String lastName, String phone, String address) {
+        ContactMetrics m = metrics;
+        long start = m == null ? 0 : m.start();
+        Contact current = contactID == null ? null : contacts.get(contactID);
+        if (current == null) {
+            if (m != null) {
+                m.record(ContactMetrics.Operation.UPDATE, start, ContactError.CONTACT_NOT_FOUND);
+            }
+            throw new IllegalArgumentException("Contact ID does not exist");
         }
-        if (phone != null) {
-            contact.setPhone(phone);
+        boolean updated = false;
+        if (current.getVersion() == expectedVersion) {
+            // The new version is built outside the lock and only swapped in if this exact version is still stored.
+            Contact next;
+            try {
+                next = current.update(firstName, lastName, phone, address);
+            } catch (InvalidContactException e) {
+                if (m != null) {
+                    m.record(ContactMetrics.Operation.UPDATE, start, e.getError());
+                }
+                throw e;
+            }
+            updated = isSame(apply(contactID, existing -> isSame(existing, current) ? next : existing), current);
         }
-        if (address != null) {
-            contact.setAddress(address);
+        // A lost compare-and-set is an expected outcome, not an error.
+        if (m != null) {
+            m.record(ContactMetrics.Operation.UPDATE, start, null);
         }
+        return updated;
     }
 
     // Retrieves a contact by its contact ID.
+    // The returned contact is an immutable snapshot; later updates produce a new version instead of changing it.
     public Contact getContact(String contactID) {
-        return contacts.get(contactID); // Returns null if the contact ID doesn't exist.
+        ContactMetrics m = metrics;
+        if (m == null) {
+            return contactID == null ? null : contacts.get(contactID); // Returns null if the contact ID doesn't exist.
+        }
+        long start = m.start();
+        Contact contact = contactID == null ? null : contacts.get(contactID);
+        m.record(ContactMetrics.Operation.GET, start, contact == null ? ContactError.CONTACT_NOT_FOUND : null);
+        return contact;
+    }
+
+    // Returns the number of contacts stored.
+    public int size() {
+        return contacts.size();
+    }
+
+    // Passes every stored contact to the action without blocking writers. Each contact is an immutable snapshot,
+    // but the iteration is weakly consistent: changes made while it runs may or may not be seen.
+    public void forEachContact(Consumer<Contact> action) {
+        contacts.forEach(action);
+    }
+
+    // Opens a point-in-time view of all contacts for consistent scans and exports. Writers are never blocked by it,
+    // and it keeps the versions it sees until closed, so close it when done.
+    // Throws UnsupportedOperationException unless supportsSnapshots() returns true.
+    public ContactSnapshot snapshot() {
+        return contacts.snapshot();
+    }
+
+    // Returns true if the store keeps versions for snapshot(), as VersionedContactStore does.
+    public boolean supportsSnapshots() {
+        return contacts.supportsSnapshots();
+    }
+
+    // Registers a listener for every later add, update and delete.
+    // Contacts already stored are replayed to it as adds. A contact added while the listener is being registered
+    // may be reported twice, so listeners should treat an add of a contact they already know about as a no-op.
+    public void addListener(ContactListener listener) {
+        addListener(listener, true);
+    }
+
+    // Registers a listener for every later add, update and delete, optionally without replaying the contacts
+    // already stored (for listeners that already know about them, such as a journal the service was recovered from).
+    public synchronized void addListener(ContactListener listener, boolean replayExisting) {
+        ContactListener[] current = listeners;
+        ContactListener[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = listener;
+        listeners = next;
+        if (!replayExisting) {
+            return;
+        }
+
+        // Each stored contact is replayed under its entry lock, so a concurrent change to it is either
+        // already reflected here or delivered to the listener afterwards.
+        contacts.forEach(stored -> contacts.compute(stored.getContactID(), (id, existing) -> {
+            if (existing != null) {
+                listener.contactAdded(existing);
+            }
+            return existing;
+        }));
+    }
+
+    // Stops sending changes to a listener.
+    public synchronized void removeListener(ContactListener listener) {
+        ContactListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                ContactListener[] next = new ContactListener[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                listeners = next;
+                return;
+            }
+        }
+    }
+
+    // Turns on the secondary indexes (phone, last name and address) used by the find methods and returns them.
+    // Indexes are off by default because they cost memory and a little time on every change.
+    public synchronized ContactIndex enableIndexes() {
+        if (index == null) {
+            ContactIndex created = new ContactIndex();
+            addListener(created);
+            index = created;
+        }
+        return index;
+    }
+
+    // Finds the contacts with exactly this phone number. Requires enableIndexes.
+    public List<Contact> findByPhone(String phone) {
+        return resolve(requireIndex().findByPhone(phone), contact -> contact.getPhone().equals(phone));
+    }
+
+    // Finds the contacts with exactly this last name. Requires enableIndexes.
+    public List<Contact> findByLastName(String lastName) {
+        return resolve(requireIndex().findByLastName(lastName), contact -> contact.getLastName().equals(lastName));
+    }
+
+    // Finds up to limit contacts whose last name starts with the prefix. Requires enableIndexes.
+    public List<Contact> findByLastNamePrefix(String prefix, int limit) {
+        return resolve(requireIndex().findByLastNamePrefix(prefix, limit),
+                contact -> contact.getLastName().startsWith(prefix));
+    }
+
+    // Finds up to limit contacts whose address starts with the prefix. Requires enableIndexes.
+    public List<Contact> findByAddressPrefix(String prefix, int limit) {
+        return resolve(requireIndex().findByAddressPrefix(prefix, limit),
+                contact -> contact.getAddress().startsWith(prefix));
+    }
+
+    // Turns on the typo-tolerant search used by search and returns its index. Off by default for the same reason
+    // as the secondary indexes.
+    public synchronized ContactSearchIndex enableSearch() {
+        if (searchIndex == null) {
+            ContactSearchIndex created = new ContactSearchIndex();
+            addListener(created);
+            searchIndex = created;
+        }
+        return searchIndex;
+    }
+
+    // Finds up to limit contacts whose first name, last name and address contain every word of the query, allowing
+    // for typos and treating the last word as a prefix, best matches first. Requires enableSearch.
+    public List<Contact> search(String query, int limit) {
+        List<ContactSearchIndex.Match> matches = searchMatches(query, limit);
+        List<Contact> result = new ArrayList<>(matches.size());
+        for (ContactSearchIndex.Match match : matches) {
+            result.add(match.getContact());
+        }
+        return result;
+    }
+
+    // Same as search, keeping each contact's distance from the query so results from several services can be merged.
+    List<ContactSearchIndex.Match> searchMatches(String query, int limit) {
+        ContactSearchIndex current = searchIndex;
+        if (current == null) {
+            throw new IllegalStateException("Search is not enabled");
+        }
+        return current.search(query, limit);
+    }
+
+    // Starts counting every add, update, delete, get and batch and timing a sample of them, and returns the metrics.
+    // Calling it again returns the metrics already being collected.
+    public ContactMetrics enableMetrics() {
+        return enableMetrics(ContactMetrics.DEFAULT_LATENCY_SAMPLE_RATE);
+    }
+
+    // Same as enableMetrics(), timing one call in latencySampleRate (rounded down to a power of two); 1 times every
+    // call. If metrics are already enabled they are returned unchanged.
+    public synchronized ContactMetrics enableMetrics(int latencySampleRate) {
+        if (metrics == null) {
+            metrics = new ContactMetrics(latencySampleRate);
+        }
+        return metrics;
+    }
+
+    // Stops collecting metrics. Calls then pay nothing for them beyond reading one field.
+    public synchronized void disableMetrics() {
+        metrics = null;
+    }
+
+    // Returns the metrics being collected, or null if they are disabled.
+    public ContactMetrics getMetrics() {
+        return metrics;
+    }
+
+    private ContactIndex requireIndex() {
+        ContactIndex current = index;
+        if (current == null) {
+            throw new IllegalStateException("Indexes are not enabled");
+        }
+        return current;
+    }
+
+    // Looks up the contacts for a list of IDs from an index. A contact changed between the index lookup and this
+    // read is dropped if it no longer matches, so results always reflect the contact's current fields.
+    private List<Contact> resolve(List<String> contactIDs, Predicate<Contact> matches) {
+        List<Contact> result = new ArrayList<>(contactIDs.size());
+        for (String contactID : contactIDs) {
+            Contact contact = contacts.get(contactID);
+            if (contact != null && matches.test(contact)) {
+                result.add(contact);
+            }
+        }
+        return result;
+    }
+
+    // Replaces the contact stored under contactID with the result of change, which receives the current contact
+    // (or null) and returns the new one (or null to delete). Runs atomically inside the store and, once the store has
+    // the change, tells listeners about the add, update or delete it amounts to; their afterChange runs once the
+    // store has released the ID. Returns the contact stored before the change.
+    private Contact apply(String contactID, UnaryOperator<Contact> change) {
+        Contact[] previous = new Contact[1];
+        ContactListener[][] notified = new ContactListener[1][];
+        contacts.compute(contactID, (id, existing) -> {
+            previous[0] = existing;
+            return change.apply(existing);
+        }, (before, after) -> notified[0] = notifyListeners(before, after));
+        if (notified[0] != null) {
+            for (ContactListener listener : notified[0]) {
+                listener.afterChange();
+            }
+        }
+        return previous[0];
+    }
+
+    // Stores a contact recovered from durable storage or moved from another shard, replacing any contact with the
+    // same ID. Unlike addContact this keeps the contact's version number. Listeners are notified as usual.
+    void restore(Contact contact) {
+        apply(contact.getContactID(), existing -> contact);
+    }
+
+    // Removes a contact while replaying durable storage or moving it to another shard, doing nothing if it is not
+    // stored.
+    void restoreDelete(String contactID) {
+        apply(contactID, existing -> null);
+    }
+
+    // Returns true if two contacts are the same version of the same contact. Stores such as PackedContactStore
+    // create a new Contact object on every read, so identity alone cannot be used.
+    private static boolean isSame(Contact a, Contact b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null
+                && a.getVersion() == b.getVersion()
+                && a.getContactID().equals(b.getContactID())
+                && a.getFirstName().equals(b.getFirstName())
+                && a.getLastName().equals(b.getLastName())
+                && a.getPhone().equals(b.getPhone())
+                && a.getAddress().equals(b.getAddress());
+    }
+
+    // Returns the listeners that were told, for their afterChange calls once the lock is released.
+    // If a listener throws, the store undoes the change, so the listeners already told about it are told the
+    // reverse change, newest first, before the exception is rethrown.
+    private ContactListener[] notifyListeners(Contact before, Contact after) {
+        ContactListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            try {
+                notifyListener(current[i], before, after);
+            } catch (RuntimeException e) {
+                for (int j = i - 1; j >= 0; j--) {
+                    try {
+                        notifyListener(current[j], after, before);
+                    } catch (RuntimeException undoFailure) {
+                        e.addSuppressed(undoFailure);
+                    }
+                }
+                throw e;
+            }
+        }
+        return current;
+    }
+
+    private static void notifyListener(ContactListener listener, Contact before, Contact after) {
+        if (before == null) {
+            listener.contactAdded(after);
+        } else if (after == null) {
+            listener.contactDeleted(before);
+        } else {
+            listener.contactUpdated(before, after);
+        }
+    }
+
+    // Applies a batch of operations in order and reports the outcome of each one without throwing.
+    // Operations that fail validation or hit a missing or duplicate ID are skipped; the rest are applied.
+    public ContactBatchResult applyBatch(List<ContactOperation> operations) {
+        return applyBatch(operations, false);
+    }
+
+    // Applies a batch of operations in order and reports the outcome of each one without throwing.
+    // When atomic is true the batch is all-or-nothing: if any operation fails, the ones already applied are
+    // rolled back and every other operation is reported as BATCH_ABORTED. Rollback only undoes changes that are
+    // still in place, so a concurrent writer's later change to the same contact is never overwritten.
+    // An atomic batch is not isolated: each operation locks only its own contact while it runs, so other threads
+    // can see the batch's earlier changes before it finishes, including changes that are then rolled back, and
+    // can change a contact between two of its operations. Callers that need isolation must serialize their
+    // batches themselves.
+    public ContactBatchResult applyBatch(List<ContactOperation> operations, boolean atomic) {
+        ContactMetrics m = metrics;
+        long start = m == null ? 0 : m.start();
+        ContactBatchResult result = runBatch(operations, atomic);
+        if (m != null) {
+            for (int i = 0; i < result.size(); i++) {
+                m.recordOutcome(operationOf(operations.get(i).getType()), result.getError(i));
+            }
+            m.record(ContactMetrics.Operation.BATCH, start,
+                    atomic && !result.isAllSuccessful() ? ContactError.BATCH_ABORTED : null);
+        }
+        return result;
+    }
+
+    private ContactBatchResult runBatch(List<ContactOperation> operations, boolean atomic) {
+        int size = operations.size();
+        ContactError[] errors = new ContactError[size];
+        Contact[] added = new Contact[size]; // Validated contacts for ADD operations.
+
+        // First pass: validate every operation before touching the map.
+        boolean valid = true;
+        for (int i = 0; i < size; i++) {
+            ContactOperation operation = operations.get(i);
+            ContactError error = validate(operation);
+            if (error == null && operation.getType() == ContactOperation.Type.ADD) {
+                added[i] = Contact.tryCreate(operation.getContactID(), operation.getFirstName(),
+                        operation.getLastName(), operation.getPhone(), operation.getAddress());
+            }
+            errors[i] = error;
+            valid &= error == null;
+        }
+        if (atomic && !valid) {
+            return new ContactBatchResult(abort(errors, -1));
+        }
+
+        // Second pass: apply the valid operations, remembering what each one replaced so an atomic batch can undo it.
+        Contact[] before = atomic ? new Contact[size] : null;
+        Contact[] after = atomic ? new Contact[size] : null;
+        for (int i = 0; i < size; i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            ContactOperation operation = operations.get(i);
+            String contactID = operation.getContactID();
+            Contact previous = null;
+            Contact current = null;
+            switch (operation.getType()) {
+                case ADD:
+                    Contact contact = added[i];
+                    current = contact;
+                    if (apply(contactID, existing -> existing == null ? contact : existing) != null) {
+                        errors[i] = ContactError.DUPLICATE_CONTACT_ID;
+                    }
+                    break;
+                case UPDATE:
+                    Contact[] updated = new Contact[1];
+                    previous = apply(contactID, existing -> existing == null ? null
+                            : (updated[0] = existing.update(operation.getFirstName(), operation.getLastName(),
+                                    operation.getPhone(), operation.getAddress())));
+                    current = updated[0];
+                    if (previous == null) {
+                        errors[i] = ContactError.CONTACT_NOT_FOUND;
+                    }
+                    break;
+                case DELETE:
+                    previous = apply(contactID, existing -> null);
+                    if (previous == null) {
+                        errors[i] = ContactError.CONTACT_NOT_FOUND;
+                    }
+                    break;
+            }
+            if (atomic) {
+                if (errors[i] != null) {
+                    rollback(operations, before, after, i);
+                    return new ContactBatchResult(abort(errors, i));
+                }
+                before[i] = previous;
+                after[i] = current;
+            }
+        }
+        return new ContactBatchResult(errors);
+    }
+
+    private static ContactMetrics.Operation operationOf(ContactOperation.Type type) {
+        switch (type) {
+            case ADD: return ContactMetrics.Operation.ADD;
+            case UPDATE: return ContactMetrics.Operation.UPDATE;
+            default: return ContactMetrics.Operation.DELETE;
+        }
+    }
+
+    // Checks one batch operation's fields without touching the map.
+    private static ContactError validate(ContactOperation operation) {
+        String contactID = operation.getContactID();
+        switch (operation.getType()) {
+            case ADD:
+                return ContactValidator.validate(contactID, operation.getFirstName(), operation.getLastName(),
+                        operation.getPhone(), operation.getAddress());
+            case UPDATE:
+                if (contactID == null) {
+                    return ContactError.CONTACT_NOT_FOUND;
+                }
+                return ContactValidator.validateChanges(operation.getFirstName(), operation.getLastName(),
+                        operation.getPhone(), operation.getAddress());
+            default:
+                return contactID == null ? ContactError.CONTACT_NOT_FOUND : null;
+        }
+    }
+
+    // Undoes the operations applied before position end, newest first.
+    private void rollback(List<ContactOperation> operations, Contact[] before, Contact[] after, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            String contactID = operations.get(i).getContactID();
+            Contact previous = before[i];
+            Contact current = after[i];
+            switch (operations.get(i).getType()) {
+                case ADD:
+                case UPDATE:
+                    // Put back what the operation replaced (nothing, for an add) if its result is still stored.
+                    apply(contactID, existing -> isSame(existing, current) ? previous : existing);
+                    break;
+                case DELETE:
+                    apply(contactID, existing -> existing == null ? previous : existing);
+                    break;
+            }
+        }
+    }
+
+    // Marks every operation of an aborted batch as failed, keeping the real error of the operation that caused it.
+    // Pass failed = -1 when the batch was rejected during validation.
+    private static ContactError[] abort(ContactError[] errors, int failed) {
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] == null || (failed >= 0 && i != failed)) {
+                errors[i] = ContactError.BATCH_ABORTED;
+            }
+        }
+        return errors;
     }
 }
\ No newline at end of file
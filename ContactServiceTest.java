@@ -3,6 +3,10 @@ import org.junit.jupiter.api.Test;
 // Importing assertion methods for validating test outcomes.
 import static org.junit.jupiter.api.Assertions.*; 
 
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
 class ContactServiceTest {
 
     // Test case to verify that adding a contact to the service works correctly.
@@ -90,11 +94,16 @@ class ContactServiceTest {
         // Updating the contact's first name, last name, phone, and address.
         service.updateContact("12345", "Jane", "Dow", "1234567892", "456 Park Ave");
         
-        // Verifying that the contact's details were updated correctly.
-        assertEquals("Jane", contact.getFirstName()); // Verify first name was updated.
-        assertEquals("Dow", contact.getLastName()); // Verify last name was updated.
-        assertEquals("1234567892", contact.getPhone()); // Verify phone number was updated.
-        assertEquals("456 Park Ave", contact.getAddress()); // Verify address was updated.
+        // Verifying that the contact's details were updated correctly in the stored version.
+        Contact updated = service.getContact("12345");
+        assertEquals("Jane", updated.getFirstName()); // Verify first name was updated.
+        assertEquals("Dow", updated.getLastName()); // Verify last name was updated.
+        assertEquals("1234567892", updated.getPhone()); // Verify phone number was updated.
+        assertEquals("456 Park Ave", updated.getAddress()); // Verify address was updated.
+        
+        // Verifying that the previously retrieved contact is an unchanged snapshot.
+        assertEquals("John", contact.getFirstName());
+        assertEquals(contact.getVersion() + 1, updated.getVersion());
     }
     
  // Test case to verify that updating info to null gets handled properly
@@ -110,4 +119,182 @@ class ContactServiceTest {
         // Updating the contact's first name, last name, phone, and address to null.
         service.updateContact("12345", null, null, null, null);
     }
+
+    // Test case to verify that an update with one invalid field leaves every field unchanged.
+    @Test
+    void testUpdateContactInvalidFieldIsAllOrNothing() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("12345", "John", "Doe", "1234567890", "123 Main St"));
+
+        // The phone number is invalid, so the valid first and last names must not be applied either.
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.updateContact("12345", "Jane", "Dow", "12ab", null);
+        });
+
+        Contact contact = service.getContact("12345");
+        assertEquals("John", contact.getFirstName());
+        assertEquals("Doe", contact.getLastName());
+        assertEquals("1234567890", contact.getPhone());
+    }
+
+    // Test case to verify that concurrent adds of the same contact ID let exactly one thread win.
+    @Test
+    void testConcurrentAddSameContactID() throws InterruptedException {
+        ContactService service = new ContactService();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            String firstName = "John" + i;
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                    service.addContact(new Contact("12345", firstName, "Doe", "1234567890", "123 Main St"));
+                    added.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Only one add may succeed; every other thread must see the duplicate ID.
+        assertEquals(1, added.get());
+        assertEquals(threads - 1, rejected.get());
+    }
+
+    // Test case to verify that readers racing with updates never see a mix of old and new fields.
+    @Test
+    void testConcurrentReadsAreNeverTorn() throws InterruptedException {
+        ContactService service = new ContactService();
+        String[][] versions = {
+            {"Alice", "Alpha", "1111111111", "1 Alpha Rd"},
+            {"Bobby", "Bravo", "2222222222", "2 Bravo Rd"},
+        };
+        service.addContact(new Contact("12345", versions[0][0], versions[0][1], versions[0][2], versions[0][3]));
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger torn = new AtomicInteger();
+        Thread[] readers = new Thread[4];
+
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (done.getCount() > 0) {
+                    Contact contact = service.getContact("12345");
+                    // Every update changes all four fields, so each read must match one version in full.
+                    String[] expected = versions[(int) (contact.getVersion() % 2)];
+                    if (!contact.getFirstName().equals(expected[0]) || !contact.getLastName().equals(expected[1])
+                            || !contact.getPhone().equals(expected[2]) || !contact.getAddress().equals(expected[3])) {
+                        torn.incrementAndGet();
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            readers[i].start();
+        }
+        for (int i = 1; i <= 20_000; i++) {
+            String[] next = versions[i % 2];
+            service.updateContact("12345", next[0], next[1], next[2], next[3]);
+        }
+        done.countDown();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(reads.get() > 0);
+        assertEquals(0, torn.get());
+        assertEquals(20_000L, service.getContact("12345").getVersion());
+    }
+
+    // Test case to verify that a versioned update only applies when the expected version is still current.
+    @Test
+    void testUpdateContactExpectedVersion() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("12345", "John", "Doe", "1234567890", "123 Main St"));
+        long version = service.getContact("12345").getVersion();
+
+        // The first update at the current version succeeds.
+        assertTrue(service.updateContact("12345", version, "Jane", null, null, null));
+        // A second update based on the same, now stale, version is rejected without changes.
+        assertFalse(service.updateContact("12345", version, "Janet", null, null, null));
+        assertEquals("Jane", service.getContact("12345").getFirstName());
+
+        // A versioned update of a missing contact still throws.
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.updateContact("99999", 0L, "Jane", null, null, null);
+        });
+    }
+
+    // Test case to verify that a batch applies the good operations and reports the bad ones without throwing.
+    @Test
+    void testApplyBatch() {
+        ContactService service = new ContactService(16);
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+
+        ContactBatchResult result = service.applyBatch(Arrays.asList(
+                ContactOperation.add("2", "Jane", "Doe", "1234567891", "456 Park Ave"),
+                ContactOperation.add("3", "Jim", "Doe", "12345", "789 Elm St"),      // Invalid phone.
+                ContactOperation.add("1", "Jack", "Doe", "1234567892", "1 Oak St"),  // Duplicate ID.
+                ContactOperation.update("2", null, "Dow", null, null),
+                ContactOperation.delete("4")));                                       // Missing ID.
+
+        assertEquals(5, result.size());
+        assertEquals(2, result.getSuccessCount());
+        assertTrue(result.isSuccess(0));
+        assertEquals(ContactError.INVALID_PHONE, result.getError(1));
+        assertEquals(ContactError.DUPLICATE_CONTACT_ID, result.getError(2));
+        assertTrue(result.isSuccess(3));
+        assertEquals(ContactError.CONTACT_NOT_FOUND, result.getError(4));
+
+        // The successful operations took effect; the failed ones changed nothing.
+        assertEquals("Dow", service.getContact("2").getLastName());
+        assertEquals("John", service.getContact("1").getFirstName());
+        assertNull(service.getContact("3"));
+    }
+
+    // Test case to verify that an atomic batch with a failing operation leaves the service unchanged.
+    @Test
+    void testApplyBatchAtomicRollsBack() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Doe", "1234567890", "123 Main St"));
+        Contact original = service.getContact("1");
+
+        ContactBatchResult result = service.applyBatch(Arrays.asList(
+                ContactOperation.add("2", "Jane", "Doe", "1234567891", "456 Park Ave"),
+                ContactOperation.update("1", "Johnny", null, null, null),
+                ContactOperation.delete("1"),
+                ContactOperation.delete("9")), true);                                 // Missing ID fails the batch.
+
+        assertFalse(result.isAllSuccessful());
+        assertEquals(ContactError.BATCH_ABORTED, result.getError(0));
+        assertEquals(ContactError.BATCH_ABORTED, result.getError(2));
+        assertEquals(ContactError.CONTACT_NOT_FOUND, result.getError(3));
+
+        // Every applied operation was undone.
+        assertNull(service.getContact("2"));
+        assertSame(original, service.getContact("1"));
+    }
+
+    // Test case to verify that an atomic batch with an invalid field is rejected before anything is applied.
+    @Test
+    void testApplyBatchAtomicValidationFailure() {
+        ContactService service = new ContactService();
+
+        ContactBatchResult result = service.applyBatch(Arrays.asList(
+                ContactOperation.add("1", "John", "Doe", "1234567890", "123 Main St"),
+                ContactOperation.add("2", "Jane", "Doe", "1234567891", null)), true);
+
+        assertEquals(ContactError.BATCH_ABORTED, result.getError(0));
+        assertEquals(ContactError.INVALID_ADDRESS, result.getError(1));
+        assertNull(service.getContact("1"));
+    }
 }
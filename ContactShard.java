@@ -0,0 +1,63 @@
+// One partition of a ShardedContactService. LocalContactShard keeps its contacts in this JVM and RemoteContactShard
+// reaches a ContactShardServer in another process. Failures the caller can act on are returned as ContactError
+// codes instead of thrown, so they cross a process boundary unchanged; ShardedContactService turns them back into
+// the exceptions ContactService throws.
+import java.io.Closeable;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface ContactShard extends Closeable {
+    // Passed as the expected version to update unconditionally.
+    long ANY_VERSION = -1;
+
+    // Name that places the shard on the hash ring. It must be unique within a service and stay the same across
+    // restarts, or contacts would be looked for on the wrong shard.
+    String getName();
+
+    // True if calls leave this process, so a service should call it from a separate thread when gathering.
+    default boolean isRemote() {
+        return false;
+    }
+
+    // Returns null, or DUPLICATE_CONTACT_ID if the ID is taken.
+    ContactError add(Contact contact);
+
+    // Returns null, or CONTACT_NOT_FOUND.
+    ContactError delete(String contactID);
+
+    // Updates the non-null fields of a contact, if it is at expectedVersion (or any version for ANY_VERSION).
+    // Returns null, CONTACT_NOT_FOUND, VERSION_CONFLICT or the validation error of the new fields.
+    ContactError update(String contactID, long expectedVersion,
+                        String firstName, String lastName, String phone, String address);
+
+    Contact get(String contactID);
+
+    ContactBatchResult applyBatch(List<ContactOperation> operations, boolean atomic);
+
+    int size();
+
+    // Passes every contact to the action, weakly consistent like ContactService.forEachContact.
+    void forEach(Consumer<Contact> action);
+
+    // Stores a contact exactly as given, version included, replacing any contact with the same ID. Together with
+    // remove this moves contacts between shards during a rebalance.
+    void put(Contact contact);
+
+    // Removes a contact if it is stored.
+    void remove(String contactID);
+
+    List<Contact> findByPhone(String phone);
+
+    List<Contact> findByLastName(String lastName);
+
+    List<Contact> findByLastNamePrefix(String prefix, int limit);
+
+    List<Contact> findByAddressPrefix(String prefix, int limit);
+
+    List<ContactSearchIndex.Match> search(String query, int limit);
+
+    // Releases the shard's connections, if it has any. The contacts are not affected.
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,128 @@
+// Wire format between RemoteContactShard and ContactShardServer.
+//
+// Each connection carries one call at a time: the client sends a request ([byte op][arguments]) and the server
+// answers with [byte OK][result] or [byte FAILED][UTF message]. Strings that may be null are sent as
+// [boolean present][UTF], and contacts as their five fields and version. Errors are sent as their ContactError
+// ordinal plus one, 0 for success, so both ends must run the same build.
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+final class ContactShardProtocol {
+    static final byte NAME = 1;
+    static final byte ADD = 2;
+    static final byte DELETE = 3;
+    static final byte UPDATE = 4;
+    static final byte GET = 5;
+    static final byte BATCH = 6;
+    static final byte SIZE = 7;
+    static final byte FOR_EACH = 8;           // Answered with [true][contact] per contact and a final [false].
+    static final byte PUT = 9;
+    static final byte REMOVE = 10;
+    static final byte FIND_BY_PHONE = 11;
+    static final byte FIND_BY_LAST_NAME = 12;
+    static final byte FIND_BY_LAST_NAME_PREFIX = 13;
+    static final byte FIND_BY_ADDRESS_PREFIX = 14;
+    static final byte SEARCH = 15;
+
+    static final byte OK = 0;
+    static final byte FAILED = 1;
+
+    private static final ContactError[] ERRORS = ContactError.values();
+    private static final ContactOperation.Type[] TYPES = ContactOperation.Type.values();
+
+    private ContactShardProtocol() {
+    }
+
+    // Parses "host:port" as a TCP address and anything else as the path of a Unix domain socket.
+    static SocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon > 0 && colon < address.length() - 1 && address.substring(colon + 1).chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeContact(DataOutputStream out, Contact contact) throws IOException {
+        out.writeBoolean(contact != null);
+        if (contact != null) {
+            out.writeUTF(contact.getContactID());
+            out.writeUTF(contact.getFirstName());
+            out.writeUTF(contact.getLastName());
+            out.writeUTF(contact.getPhone());
+            out.writeUTF(contact.getAddress());
+            out.writeLong(contact.getVersion());
+        }
+    }
+
+    static Contact readContact(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new Contact(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+    }
+
+    static void writeContacts(DataOutputStream out, List<Contact> contacts) throws IOException {
+        out.writeInt(contacts.size());
+        for (Contact contact : contacts) {
+            writeContact(out, contact);
+        }
+    }
+
+    static List<Contact> readContacts(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(readContact(in));
+        }
+        return contacts;
+    }
+
+    static void writeError(DataOutputStream out, ContactError error) throws IOException {
+        out.writeByte(error == null ? 0 : error.ordinal() + 1);
+    }
+
+    static ContactError readError(DataInputStream in) throws IOException {
+        int code = in.readUnsignedByte();
+        return code == 0 ? null : ERRORS[code - 1];
+    }
+
+    static void writeOperation(DataOutputStream out, ContactOperation operation) throws IOException {
+        out.writeByte(operation.getType().ordinal());
+        writeString(out, operation.getContactID());
+        writeString(out, operation.getFirstName());
+        writeString(out, operation.getLastName());
+        writeString(out, operation.getPhone());
+        writeString(out, operation.getAddress());
+    }
+
+    static ContactOperation readOperation(DataInputStream in) throws IOException {
+        ContactOperation.Type type = TYPES[in.readUnsignedByte()];
+        String contactID = readString(in);
+        String firstName = readString(in);
+        String lastName = readString(in);
+        String phone = readString(in);
+        String address = readString(in);
+        switch (type) {
+            case ADD: return ContactOperation.add(contactID, firstName, lastName, phone, address);
+            case UPDATE: return ContactOperation.update(contactID, firstName, lastName, phone, address);
+            default: return ContactOperation.delete(contactID);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+// Serves a ContactShard to RemoteContactShard clients over a Unix domain socket or TCP, so the shards of a
+// ShardedContactService can run in separate JVMs on one machine (or on several, over TCP).
+//
+// Run a shard process with
+//
+//   java ContactShardServer <name> <socket path | host:port> [--indexes] [--search]
+//
+// It prints "listening on <address>" once it accepts connections and runs until it is killed. --indexes and
+// --search enable the find methods and search on the shard's ContactService.
+//
+// Every connection gets its own thread and carries one call at a time (see ContactShardProtocol); clients keep a
+// pool of connections to make calls in parallel.
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ContactShardServer implements Closeable {
+    private final ContactShard shard;
+    private final ServerSocketChannel server;
+    private final Thread acceptor;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private ContactShardServer(ContactShard shard, ServerSocketChannel server) {
+        this.shard = shard;
+        this.server = server;
+        this.acceptor = new Thread(this::acceptLoop, "contact-shard-server");
+        acceptor.setDaemon(true);
+    }
+
+    // Starts serving the shard on the address. A Unix domain socket file left behind by an earlier run is replaced.
+    public static ContactShardServer start(ContactShard shard, SocketAddress address) throws IOException {
+        ServerSocketChannel server;
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+            server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        }
+        server.bind(address);
+        ContactShardServer started = new ContactShardServer(shard, server);
+        started.acceptor.start();
+        return started;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: java ContactShardServer <name> <socket path | host:port> [--indexes] [--search]");
+            System.exit(2);
+        }
+        ContactService service = new ContactService();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--indexes")) {
+                service.enableIndexes();
+            } else if (args[i].equals("--search")) {
+                service.enableSearch();
+            } else {
+                throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        ContactShardServer server = start(new LocalContactShard(args[0], service),
+                ContactShardProtocol.parseAddress(args[1]));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("listening on " + server.getAddress());
+        server.acceptor.join();
+    }
+
+    // The bound address, with the actual port if port 0 was requested.
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    // Stops accepting and drops every connection. The shard itself is left as it is.
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+            SocketAddress address = server.getLocalAddress();
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        } catch (IOException e) {
+            // Nothing more can be done while shutting down.
+        }
+        for (SocketChannel connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                // Same as above.
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                SocketChannel connection = server.accept();
+                if (connection.getRemoteAddress() instanceof InetSocketAddress) {
+                    connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                }
+                connections.add(connection);
+                Thread thread = new Thread(() -> serve(connection), "contact-shard-connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("contact shard server: " + e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void serve(SocketChannel connection) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection)))) {
+            while (true) {
+                int op = in.read();
+                if (op < 0) {
+                    return;
+                }
+                handle((byte) op, in, out);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // The client went away in the middle of a request.
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("contact shard connection: " + e);
+            }
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    // Reads one request's arguments, runs it and writes the reply. A failure of the shard itself is reported to the
+    // client; only I/O errors end the connection.
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ContactShardProtocol.NAME: {
+                out.writeByte(ContactShardProtocol.OK);
+                out.writeUTF(shard.getName());
+                return;
+            }
+            case ContactShardProtocol.ADD: {
+                Contact contact = ContactShardProtocol.readContact(in);
+                reply(out, () -> shard.add(contact), ContactShardProtocol::writeError);
+                return;
+            }
+            case ContactShardProtocol.DELETE: {
+                String contactID = in.readUTF();
+                reply(out, () -> shard.delete(contactID), ContactShardProtocol::writeError);
+                return;
+            }
+            case ContactShardProtocol.UPDATE: {
+                String contactID = in.readUTF();
+                long expectedVersion = in.readLong();
+                String firstName = ContactShardProtocol.readString(in);
+                String lastName = ContactShardProtocol.readString(in);
+                String phone = ContactShardProtocol.readString(in);
+                String address = ContactShardProtocol.readString(in);
+                reply(out, () -> shard.update(contactID, expectedVersion, firstName, lastName, phone, address),
+                        ContactShardProtocol::writeError);
+                return;
+            }
+            case ContactShardProtocol.GET: {
+                String contactID = in.readUTF();
+                reply(out, () -> shard.get(contactID), ContactShardProtocol::writeContact);
+                return;
+            }
+            case ContactShardProtocol.BATCH: {
+                boolean atomic = in.readBoolean();
+                int count = in.readInt();
+                List<ContactOperation> operations = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    operations.add(ContactShardProtocol.readOperation(in));
+                }
+                reply(out, () -> shard.applyBatch(operations, atomic), (o, result) -> {
+                    o.writeInt(result.size());
+                    for (int i = 0; i < result.size(); i++) {
+                        ContactShardProtocol.writeError(o, result.getError(i));
+                    }
+                });
+                return;
+            }
+            case ContactShardProtocol.SIZE: {
+                reply(out, shard::size, DataOutputStream::writeInt);
+                return;
+            }
+            case ContactShardProtocol.FOR_EACH: {
+                // Streamed: the contacts are written as the shard produces them.
+                out.writeByte(ContactShardProtocol.OK);
+                IOException[] failure = new IOException[1];
+                shard.forEach(contact -> {
+                    if (failure[0] == null) {
+                        try {
+                            out.writeBoolean(true);
+                            ContactShardProtocol.writeContact(out, contact);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                out.writeBoolean(false);
+                return;
+            }
+            case ContactShardProtocol.PUT: {
+                Contact contact = ContactShardProtocol.readContact(in);
+                reply(out, () -> {
+                    shard.put(contact);
+                    return null;
+                }, (o, ignored) -> { });
+                return;
+            }
+            case ContactShardProtocol.REMOVE: {
+                String contactID = in.readUTF();
+                reply(out, () -> {
+                    shard.remove(contactID);
+                    return null;
+                }, (o, ignored) -> { });
+                return;
+            }
+            case ContactShardProtocol.FIND_BY_PHONE: {
+                String phone = ContactShardProtocol.readString(in);
+                reply(out, () -> shard.findByPhone(phone), ContactShardProtocol::writeContacts);
+                return;
+            }
+            case ContactShardProtocol.FIND_BY_LAST_NAME: {
+                String lastName = ContactShardProtocol.readString(in);
+                reply(out, () -> shard.findByLastName(lastName), ContactShardProtocol::writeContacts);
+                return;
+            }
+            case ContactShardProtocol.FIND_BY_LAST_NAME_PREFIX: {
+                String prefix = ContactShardProtocol.readString(in);
+                int limit = in.readInt();
+                reply(out, () -> shard.findByLastNamePrefix(prefix, limit), ContactShardProtocol::writeContacts);
+                return;
+            }
+            case ContactShardProtocol.FIND_BY_ADDRESS_PREFIX: {
+                String prefix = ContactShardProtocol.readString(in);
+                int limit = in.readInt();
+                reply(out, () -> shard.findByAddressPrefix(prefix, limit), ContactShardProtocol::writeContacts);
+                return;
+            }
+            case ContactShardProtocol.SEARCH: {
+                String query = in.readUTF();
+                int limit = in.readInt();
+                reply(out, () -> shard.search(query, limit), (o, matches) -> {
+                    o.writeInt(matches.size());
+                    for (ContactSearchIndex.Match match : matches) {
+                        ContactShardProtocol.writeContact(o, match.getContact());
+                        o.writeInt(match.getDistance());
+                        o.writeInt(match.getLengthPenalty());
+                    }
+                });
+                return;
+            }
+            default:
+                throw new IOException("Unknown request " + op);
+        }
+    }
+
+    // Runs a call and writes OK and its result, or FAILED and the exception message.
+    private static <T> void reply(DataOutputStream out, Call<T> call, Writer<T> writer) throws IOException {
+        T result;
+        try {
+            result = call.run();
+        } catch (RuntimeException e) {
+            out.writeByte(ContactShardProtocol.FAILED);
+            out.writeUTF(String.valueOf(e.getMessage()));
+            return;
+        }
+        out.writeByte(ContactShardProtocol.OK);
+        writer.write(out, result);
+    }
+
+    private interface Call<T> {
+        T run();
+    }
+
+    private interface Writer<T> {
+        void write(DataOutputStream out, T value) throws IOException;
+    }
+}
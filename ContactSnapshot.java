@@ -0,0 +1,32 @@
+// A consistent, read-only view of every contact as of the moment it was taken, from ContactService.snapshot.
+// Reads take no locks and never block writers, which keep changing the live contacts meanwhile. A snapshot holds on
+// to the old versions it can still see, so close it when done; one that is dropped without closing is released
+// once it is garbage collected.
+import java.io.Closeable;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public interface ContactSnapshot extends Closeable {
+    // Returns the contact as it was when the snapshot was taken, or null if it did not exist then.
+    Contact get(String contactID);
+
+    // Passes every contact in the snapshot to the action.
+    void forEach(Consumer<Contact> action);
+
+    // Splits for parallel scans, so a parallel stream spreads a full scan over all cores.
+    Spliterator<Contact> spliterator();
+
+    default Stream<Contact> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    default Stream<Contact> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    // Releases the old versions the snapshot was keeping. Reading a closed snapshot throws IllegalStateException.
+    @Override
+    void close();
+}
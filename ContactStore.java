@@ -0,0 +1,48 @@
+// Storage engine behind a ContactService. The service keeps all of its rules (duplicate checks, validation,
+// listeners) and relies on the store only to hold contacts by ID and to change one entry atomically.
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public interface ContactStore {
+    // Returns the contact stored under the ID, or null.
+    Contact get(String contactID);
+
+    // Atomically replaces the contact stored under the ID with the result of the function, which receives the
+    // current contact (or null) and returns the new one (or null to remove it). If the function returns the same
+    // object it was given, nothing is changed. Returns the contact now stored. Same contract as Map.compute.
+    Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping);
+
+    // Like compute, but if the function changes the contact, also passes the old and new contact to changed once the
+    // change is stored, before any other change to the ID. If changed throws, the change is undone and the exception
+    // reaches the caller. A store whose write cannot fail once the function has returned can call changed from
+    // inside the function, which is what this default does; a store that writes elsewhere must call it afterwards.
+    default Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping,
+                            BiConsumer<Contact, Contact> changed) {
+        return compute(contactID, (id, current) -> {
+            Contact next = remapping.apply(id, current);
+            if (next != current) {
+                changed.accept(current, next);
+            }
+            return next;
+        });
+    }
+
+    // Number of contacts stored.
+    int size();
+
+    // Passes every stored contact to the action. The iteration is weakly consistent: it never fails because of
+    // concurrent changes, but may or may not reflect them. The action may call back into the store.
+    void forEach(Consumer<Contact> action);
+
+    // Returns true if snapshot() is available. Stores that keep a single version of each contact do not support it.
+    default boolean supportsSnapshots() {
+        return false;
+    }
+
+    // Opens a consistent point-in-time view of every contact that readers can use without blocking writers.
+    // Throws UnsupportedOperationException unless supportsSnapshots() returns true.
+    default ContactSnapshot snapshot() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support snapshots");
+    }
+}
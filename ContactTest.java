@@ -99,128 +99,143 @@ class ContactTest {
         });
     }
 
-    // Test the first name setter method
+    // Test the first name copy method
     @Test
-    void testContactClassSetFirstName() {
-        // Creating a contact object and setting a valid first name.
+    void testContactClassWithFirstName() {
+        // Creating a contact object and deriving a copy with a valid first name.
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         
-        // Setting the first name and checking if it was updated correctly.
-        contact.setFirstName("John");
+        // Changing the first name and checking if the new version holds it.
+        Contact updated = contact.withFirstName("Jane");
+        assertTrue(updated.getFirstName().equals("Jane"));
+        // The original contact is immutable and keeps its first name.
         assertTrue(contact.getFirstName().equals("John"));
     }
     
-    // Test for setting first name to null, which should throw an IllegalArgumentException.
+    // Test for changing first name to null, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetFirstNameNull() {
+    void testContactClassWithFirstNameNull() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setFirstName(null);
+            contact.withFirstName(null);
         });
     }
     
-    // Test for setting first name to too long, which should throw an IllegalArgumentException.
+    // Test for changing first name to too long, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetFirstNameToLong() {
+    void testContactClassWithFirstNameToLong() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setFirstName("Johnathan-James");
+            contact.withFirstName("Johnathan-James");
         });
     }
 
-    // Test the last name setter method
+    // Test the last name copy method
     @Test
-    void testContactClassSetLastName() {
+    void testContactClassWithLastName() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
-        contact.setLastName("Doe");
-        assertTrue(contact.getLastName().equals("Doe"));
+        Contact updated = contact.withLastName("Doe");
+        assertTrue(updated.getLastName().equals("Doe"));
     }
 
-    // Test for setting last name too long, which should throw an IllegalArgumentException.
+    // Test for changing last name too long, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetLastNameTooLong() {
+    void testContactClassWithLastNameTooLong() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setLastName("Doe-Rodriguez");
+            contact.withLastName("Doe-Rodriguez");
         });
     }
 
-    // Test for setting last name to null, which should throw an IllegalArgumentException.
+    // Test for changing last name to null, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetLastNameNull() {
+    void testContactClassWithLastNameNull() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setLastName(null);
+            contact.withLastName(null);
         });
     }
 
-    // Test the phone number setter method
+    // Test the phone number copy method
     @Test
-    void testContactClassSetPhone() {
+    void testContactClassWithPhone() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
-        contact.setPhone("1234567890");
-        assertTrue(contact.getPhone().equals("1234567890"));
+        Contact updated = contact.withPhone("1234567890");
+        assertTrue(updated.getPhone().equals("1234567890"));
     }
 
-    // Test for setting phone number too long, which should throw an IllegalArgumentException.
+    // Test for changing phone number too long, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetPhoneTooLong() {
+    void testContactClassWithPhoneTooLong() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setPhone("12345678900987654321");
+            contact.withPhone("12345678900987654321");
         });
     }
 
-    // Test for setting phone number to null, which should throw an IllegalArgumentException.
+    // Test for changing phone number to null, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetPhoneNull() {
+    void testContactClassWithPhoneNull() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setPhone(null);
+            contact.withPhone(null);
         });
     }
 
-    // Test for setting phone number too short, which should throw an IllegalArgumentException.
+    // Test for changing phone number too short, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetPhoneTooShort() {
+    void testContactClassWithPhoneTooShort() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setPhone("101");
+            contact.withPhone("101");
         });
     }
     
- // Test for setting phone number too short, which should throw an IllegalArgumentException.
+ // Test for changing phone number too short, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetPhoneToNonNumber() {
+    void testContactClassWithPhoneToNonNumber() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setPhone("12345abcde");
+            contact.withPhone("12345abcde");
         });
     }
     
-    // Test the address setter method
+    // Test the address copy method
     @Test
-    void testContactClassSetAddress() {
+    void testContactClassWithAddress() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
-        contact.setAddress("123 Main St");
-        assertTrue(contact.getAddress().equals("123 Main St"));
+        Contact updated = contact.withAddress("123 Main St");
+        assertTrue(updated.getAddress().equals("123 Main St"));
     }
 
-    // Test for setting address to null, which should throw an IllegalArgumentException.
+    // Test for changing address to null, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetAddressNull() {
+    void testContactClassWithAddressNull() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setAddress(null);
+            contact.withAddress(null);
         });
     }
 
-    // Test for setting address to too long, which should throw an IllegalArgumentException.
+    // Test for changing address to too long, which should throw an IllegalArgumentException.
     @Test
-    void testContactClassSetAddressTooLong() {
+    void testContactClassWithAddressTooLong() {
         Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
         assertThrows(IllegalArgumentException.class, () -> {
-            contact.setAddress("This address is way too long and exceeds the maximum limit");
+            contact.withAddress("This address is way too long and exceeds the maximum limit");
         });
     }
+
+    // Test that each change produces a new version and leaves the contact ID alone.
+    @Test
+    void testContactVersionIncrements() {
+        Contact contact = new Contact("12345", "John", "Doe", "1234567890", "123 Main St");
+        assertEquals(0L, contact.getVersion());
+
+        Contact updated = contact.withPhone("0987654321").withAddress("456 Park Ave");
+        assertEquals(2L, updated.getVersion());
+        assertEquals("12345", updated.getContactID());
+        assertEquals("0987654321", updated.getPhone());
+        assertEquals("456 Park Ave", updated.getAddress());
+    }
 }
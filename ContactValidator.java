@@ -0,0 +1,82 @@
+// Validation rules for contact fields, shared by the Contact constructor and its copy methods.
+// Every check is a plain length test or character-range loop: no regular expressions and no allocation.
+// Each method returns null when the value is valid, or the ContactError describing the problem.
+public final class ContactValidator {
+    public static final int MAX_ID_LENGTH = 10;       // Longest allowed contact ID.
+    public static final int MAX_NAME_LENGTH = 10;     // Longest allowed first or last name.
+    public static final int PHONE_LENGTH = 10;        // Exact number of digits in a phone number.
+    public static final int MAX_ADDRESS_LENGTH = 30;  // Longest allowed address.
+
+    private ContactValidator() {
+    }
+
+    // Contact ID: cannot be null or longer than 10 characters.
+    public static ContactError checkContactID(String contactID) {
+        return contactID == null || contactID.length() > MAX_ID_LENGTH ? ContactError.INVALID_CONTACT_ID : null;
+    }
+
+    // First name: cannot be null or longer than 10 characters.
+    public static ContactError checkFirstName(String firstName) {
+        return firstName == null || firstName.length() > MAX_NAME_LENGTH ? ContactError.INVALID_FIRST_NAME : null;
+    }
+
+    // Last name: cannot be null or longer than 10 characters.
+    public static ContactError checkLastName(String lastName) {
+        return lastName == null || lastName.length() > MAX_NAME_LENGTH ? ContactError.INVALID_LAST_NAME : null;
+    }
+
+    // Phone number: cannot be null, must be exactly 10 characters, and every character must be an ASCII digit.
+    public static ContactError checkPhone(String phone) {
+        if (phone == null || phone.length() != PHONE_LENGTH) {
+            return ContactError.INVALID_PHONE;
+        }
+        for (int i = 0; i < PHONE_LENGTH; i++) {
+            char c = phone.charAt(i);
+            if (c < '0' || c > '9') {
+                return ContactError.INVALID_PHONE;
+            }
+        }
+        return null;
+    }
+
+    // Address: cannot be null or longer than 30 characters.
+    public static ContactError checkAddress(String address) {
+        return address == null || address.length() > MAX_ADDRESS_LENGTH ? ContactError.INVALID_ADDRESS : null;
+    }
+
+    // Checks all fields of a new contact in constructor order and returns the first problem found, or null.
+    public static ContactError validate(String contactID, String firstName, String lastName, String phone, String address) {
+        ContactError error = checkContactID(contactID);
+        if (error == null) {
+            error = checkFirstName(firstName);
+        }
+        if (error == null) {
+            error = checkLastName(lastName);
+        }
+        if (error == null) {
+            error = checkPhone(phone);
+        }
+        if (error == null) {
+            error = checkAddress(address);
+        }
+        return error;
+    }
+
+    // Checks the fields of an update, where a null field means "leave unchanged", and returns the first problem found, or null.
+    public static ContactError validateChanges(String firstName, String lastName, String phone, String address) {
+        ContactError error = null;
+        if (firstName != null) {
+            error = checkFirstName(firstName);
+        }
+        if (error == null && lastName != null) {
+            error = checkLastName(lastName);
+        }
+        if (error == null && phone != null) {
+            error = checkPhone(phone);
+        }
+        if (error == null && address != null) {
+            error = checkAddress(address);
+        }
+        return error;
+    }
+}
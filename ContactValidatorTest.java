@@ -0,0 +1,55 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test; 
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*; 
+
+class ContactValidatorTest {
+
+    // Test case to verify that valid fields produce no error.
+    @Test
+    void testValidFields() {
+        assertNull(ContactValidator.validate("12345", "John", "Doe", "1234567890", "123 Main St"));
+        assertNull(ContactValidator.validateChanges(null, null, null, null));
+    }
+
+    // Test case to verify that each broken rule reports its own error code.
+    @Test
+    void testErrorCodes() {
+        assertEquals(ContactError.INVALID_CONTACT_ID, ContactValidator.validate("12345678901", "John", "Doe", "1234567890", "123 Main St"));
+        assertEquals(ContactError.INVALID_FIRST_NAME, ContactValidator.validate("12345", null, "Doe", "1234567890", "123 Main St"));
+        assertEquals(ContactError.INVALID_LAST_NAME, ContactValidator.validate("12345", "John", "Doe-Rodriguez", "1234567890", "123 Main St"));
+        assertEquals(ContactError.INVALID_PHONE, ContactValidator.validate("12345", "John", "Doe", "12345abcde", "123 Main St"));
+        assertEquals(ContactError.INVALID_ADDRESS, ContactValidator.validate("12345", "John", "Doe", "1234567890", null));
+        assertEquals(ContactError.INVALID_PHONE, ContactValidator.validateChanges("Jane", null, "101", null));
+    }
+
+    // Test case to verify that the phone check only accepts ASCII digits, like the "\\d" pattern it replaced.
+    @Test
+    void testPhoneRejectsNonAsciiDigits() {
+        // Arabic-Indic digits are Unicode digits but not ASCII digits.
+        assertEquals(ContactError.INVALID_PHONE, ContactValidator.checkPhone("\u0661\u0662\u0663\u0664\u0665\u0666\u0667\u0668\u0669\u0660"));
+        assertEquals(ContactError.INVALID_PHONE, ContactValidator.checkPhone("123456789 "));
+        assertNull(ContactValidator.checkPhone("0000000000"));
+    }
+
+    // Test case to verify that the constructor's exception carries the same error code.
+    @Test
+    void testExceptionCarriesErrorCode() {
+        InvalidContactException e = assertThrows(InvalidContactException.class, () -> {
+            new Contact("12345", "John", "Doe", "12345", "123 Main St");
+        });
+        assertEquals(ContactError.INVALID_PHONE, e.getError());
+        assertEquals("Invalid Phone Number", e.getMessage());
+    }
+
+    // Test case to verify that tryCreate returns null instead of throwing for a rejected row.
+    @Test
+    void testTryCreate() {
+        assertNull(Contact.tryCreate("12345", "John", "Doe", "12345", "123 Main St"));
+
+        Contact contact = Contact.tryCreate("12345", "John", "Doe", "1234567890", "123 Main St");
+        assertNotNull(contact);
+        assertEquals("1234567890", contact.getPhone());
+        assertEquals(0L, contact.getVersion());
+    }
+}
@@ -0,0 +1,77 @@
+// ContactBackend held in memory, for tests and as a stand-in for a real system of record.
+// An optional delay on every call imitates the round trip to a remote system, and the calls are counted so the
+// effect of a cache in front of it can be measured.
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class InMemoryContactBackend implements ContactBackend {
+    private final ConcurrentHashMap<String, Contact> contacts = new ConcurrentHashMap<>();
+    private final long latencyNanos;                        // Delay added to every load, store and delete.
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder writeCount = new LongAdder();
+
+    public InMemoryContactBackend() {
+        this(0);
+    }
+
+    // Creates a backend that waits latencyMicros before answering each load, store or delete.
+    public InMemoryContactBackend(long latencyMicros) {
+        if (latencyMicros < 0) {
+            throw new IllegalArgumentException("Latency cannot be negative");
+        }
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    @Override
+    public Contact load(String contactID) {
+        pause();
+        loadCount.increment();
+        return contacts.get(contactID);
+    }
+
+    @Override
+    public void store(Contact contact) {
+        pause();
+        writeCount.increment();
+        contacts.put(contact.getContactID(), contact);
+    }
+
+    @Override
+    public void delete(String contactID) {
+        pause();
+        writeCount.increment();
+        contacts.remove(contactID);
+    }
+
+    @Override
+    public int size() {
+        return contacts.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        contacts.values().forEach(action);
+    }
+
+    // Number of load calls made so far.
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    // Number of store and delete calls made so far.
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    private void pause() {
+        if (latencyNanos > 0) {
+            long deadline = System.nanoTime() + latencyNanos;
+            for (long remaining = latencyNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+}
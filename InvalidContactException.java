@@ -0,0 +1,14 @@
+// Thrown when a contact field fails validation.
+// It is still an IllegalArgumentException, so existing callers keep working, but it also carries the error code.
+public class InvalidContactException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final ContactError error; // Which rule the input broke.
+
+    public InvalidContactException(ContactError error) {
+        super(error.getMessage());
+        this.error = error;
+    }
+
+    public ContactError getError() { return error; }
+}
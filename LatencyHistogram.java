@@ -0,0 +1,139 @@
+// Concurrent latency histogram with HDR-style log-linear buckets.
+//
+// Every power of two is split into 32 equal sub-buckets, so any recorded value is reported within about 3% of its
+// true value, from 1 ns up to MAX_VALUE, in a fixed 8 KB of counts per stripe. Recording is one array increment and
+// never allocates; the maximum and mean are derived from the buckets, so they carry the same 3% error.
+// Threads record into separate stripes to avoid fighting over cache lines, and snapshot() merges them.
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BIT = 36;                      // Values are capped at 2^36 - 1 ns, about 68 s.
+    public static final long MAX_VALUE = (1L << MAX_BIT) - 1;
+    private static final int BUCKETS = (MAX_BIT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    // Records one value, in nanoseconds. Negative values count as 0 and values above MAX_VALUE as MAX_VALUE.
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        int stripe = ThreadIndex.current() & (STRIPES - 1);
+        stripes[stripe].getAndIncrement(bucketOf(value));
+    }
+
+    // Merges the stripes into an immutable copy. Values recorded while it runs may or may not be included.
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return new Snapshot(counts);
+    }
+
+    // Clears all recorded values. Values recorded while it runs may be kept or lost.
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    // Values below 2 * SUB_BUCKETS have a bucket each. Above that, a value's bucket is found from its highest set
+    // bit (which power of two) and the SUB_BUCKET_BITS bits below it (which sub-bucket of that power).
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // Highest value that falls in the bucket.
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    // Immutable merged counts of a histogram.
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final int highestBucket;   // -1 if nothing was recorded.
+
+        Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                sum += counts[i];
+                if (counts[i] > 0) {
+                    highest = i;
+                }
+            }
+            this.count = sum;
+            this.highestBucket = highest;
+        }
+
+        // Number of values recorded.
+        public long getCount() { return count; }
+
+        // Largest value recorded, as the highest value of its bucket.
+        public long getMax() {
+            return highestBucket < 0 ? 0 : highestValueIn(highestBucket);
+        }
+
+        // Mean of the recorded values, taking each at the middle of its bucket.
+        public double getMean() {
+            if (count == 0) {
+                return 0;
+            }
+            double total = 0;
+            for (int i = 0; i <= highestBucket; i++) {
+                if (counts[i] > 0) {
+                    long low = i == 0 ? 0 : highestValueIn(i - 1) + 1;
+                    total += counts[i] * (low + highestValueIn(i)) / 2.0;
+                }
+            }
+            return total / count;
+        }
+
+        // Returns the value at or below which the given percentage (0 to 100) of recorded values fall, as the
+        // highest value of its bucket. Returns 0 if nothing was recorded.
+        public long getValueAtPercentile(double percentile) {
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i <= highestBucket; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValueIn(i);
+                }
+            }
+            return getMax();
+        }
+
+        // Returns the difference between this snapshot and an earlier one of the same histogram, for reporting
+        // the values recorded in an interval.
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                delta[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(delta);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    // Test case to verify that every value lands in a bucket whose upper bound is within 3% of it.
+    @Test
+    void testBucketPrecision() {
+        for (long value = 0; value < 1_000_000; value += 1 + value / 50) {
+            long reported = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(value));
+            assertTrue(reported >= value);
+            assertTrue(reported - value <= value / 32, "value " + value + " reported as " + reported);
+        }
+        long top = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE));
+        assertEquals(LatencyHistogram.MAX_VALUE, top);
+    }
+
+    // Test case to verify percentiles, maximum and mean of a known distribution.
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000L, snapshot.getCount());
+        assertEquals(500_000.0, snapshot.getValueAtPercentile(50), 500_000 * 0.04);
+        assertEquals(990_000.0, snapshot.getValueAtPercentile(99), 990_000 * 0.04);
+        assertEquals(1_000_000.0, snapshot.getMax(), 1_000_000 * 0.04);
+        assertEquals(500_500.0, snapshot.getMean(), 500_500 * 0.04);
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot later = histogram.snapshot();
+        assertEquals(LatencyHistogram.MAX_VALUE, later.getMax());
+        assertEquals(2L, later.since(snapshot).getCount());
+        assertEquals(0L, later.since(snapshot).getValueAtPercentile(50));
+
+        histogram.reset();
+        assertEquals(0L, histogram.snapshot().getCount());
+        assertEquals(0L, histogram.snapshot().getValueAtPercentile(99));
+    }
+}
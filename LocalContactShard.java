@@ -0,0 +1,116 @@
+// A shard whose contacts live in a ContactService in this JVM. Indexes and search are whatever the service has
+// enabled; the find and search methods throw IllegalStateException if the service does not have them.
+import java.util.List;
+import java.util.function.Consumer;
+
+public class LocalContactShard implements ContactShard {
+    private final String name;
+    private final ContactService service;
+
+    public LocalContactShard(String name, ContactService service) {
+        this.name = name;
+        this.service = service;
+    }
+
+    // The service holding this shard's contacts.
+    public ContactService getService() {
+        return service;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ContactError add(Contact contact) {
+        return service.tryAddContact(contact) ? null : ContactError.DUPLICATE_CONTACT_ID;
+    }
+
+    @Override
+    public ContactError delete(String contactID) {
+        try {
+            service.deleteContact(contactID);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return ContactError.CONTACT_NOT_FOUND;
+        }
+    }
+
+    @Override
+    public ContactError update(String contactID, long expectedVersion,
+                               String firstName, String lastName, String phone, String address) {
+        try {
+            if (expectedVersion == ANY_VERSION) {
+                service.updateContact(contactID, firstName, lastName, phone, address);
+                return null;
+            }
+            return service.updateContact(contactID, expectedVersion, firstName, lastName, phone, address)
+                    ? null : ContactError.VERSION_CONFLICT;
+        } catch (InvalidContactException e) {
+            return e.getError();
+        } catch (IllegalArgumentException e) {
+            return ContactError.CONTACT_NOT_FOUND;
+        }
+    }
+
+    @Override
+    public Contact get(String contactID) {
+        return service.getContact(contactID);
+    }
+
+    @Override
+    public ContactBatchResult applyBatch(List<ContactOperation> operations, boolean atomic) {
+        return service.applyBatch(operations, atomic);
+    }
+
+    @Override
+    public int size() {
+        return service.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        service.forEachContact(action);
+    }
+
+    @Override
+    public void put(Contact contact) {
+        service.restore(contact);
+    }
+
+    @Override
+    public void remove(String contactID) {
+        service.restoreDelete(contactID);
+    }
+
+    @Override
+    public List<Contact> findByPhone(String phone) {
+        return service.findByPhone(phone);
+    }
+
+    @Override
+    public List<Contact> findByLastName(String lastName) {
+        return service.findByLastName(lastName);
+    }
+
+    @Override
+    public List<Contact> findByLastNamePrefix(String prefix, int limit) {
+        return service.findByLastNamePrefix(prefix, limit);
+    }
+
+    @Override
+    public List<Contact> findByAddressPrefix(String prefix, int limit) {
+        return service.findByAddressPrefix(prefix, limit);
+    }
+
+    @Override
+    public List<ContactSearchIndex.Match> search(String query, int limit) {
+        return service.searchMatches(query, limit);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
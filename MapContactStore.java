@@ -0,0 +1,38 @@
+// Default ContactStore: a ConcurrentHashMap holding the Contact objects themselves.
+// Lookups are lock-free and changes lock only the entry's hash bin.
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public class MapContactStore implements ContactStore {
+    private final ConcurrentHashMap<String, Contact> contacts; // Stores contacts using their contact ID as the key.
+
+    public MapContactStore() {
+        this.contacts = new ConcurrentHashMap<>();
+    }
+
+    // Creates a store whose map is sized up front for the expected number of contacts.
+    public MapContactStore(int expectedContacts) {
+        this.contacts = new ConcurrentHashMap<>(expectedContacts);
+    }
+
+    @Override
+    public Contact get(String contactID) {
+        return contacts.get(contactID);
+    }
+
+    @Override
+    public Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping) {
+        return contacts.compute(contactID, remapping);
+    }
+
+    @Override
+    public int size() {
+        return contacts.size();
+    }
+
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        contacts.values().forEach(action);
+    }
+}
@@ -0,0 +1,366 @@
+// Compact ContactStore for tens of millions of contacts. Instead of a Contact object with five Strings per entry,
+// each contact is packed into fixed-width slots of primitive arrays, and Contact objects are only created when a
+// contact is read. The field limits enforced by ContactValidator make the widths fixed:
+//
+//   bytes    60 bytes  ID (10), first name (10), last name (10) and address (30) as ISO-8859-1 bytes
+//   meta      8 bytes  phone number as a 34-bit integer plus the four field lengths
+//   version   4 bytes  contact version
+//
+// An open-addressing hash table of ints maps contact IDs to record numbers (about 5 bytes per contact at its
+// maximum load), so a stored contact costs under 80 bytes. Records live in fixed-size pages that are never copied,
+// and deleted records are reused, so a steady workload allocates nothing besides the Contacts handed to callers.
+//
+// Contacts that cannot be packed (a character outside ISO-8859-1, or a version above Integer.MAX_VALUE) are kept
+// as ordinary objects in a small overflow map, so every valid contact can be stored.
+//
+// Reads share a read lock and changes take a write lock, so writers are serialized. Use MapContactStore when
+// write concurrency matters more than memory.
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public class PackedContactStore implements ContactStore {
+    // Record layout within the byte pages.
+    private static final int ID_OFFSET = 0;
+    private static final int FIRST_NAME_OFFSET = ID_OFFSET + ContactValidator.MAX_ID_LENGTH;
+    private static final int LAST_NAME_OFFSET = FIRST_NAME_OFFSET + ContactValidator.MAX_NAME_LENGTH;
+    private static final int ADDRESS_OFFSET = LAST_NAME_OFFSET + ContactValidator.MAX_NAME_LENGTH;
+    private static final int RECORD_BYTES = ADDRESS_OFFSET + ContactValidator.MAX_ADDRESS_LENGTH;
+
+    // Bit layout of the meta word: the phone number in the low bits, then the lengths of the text fields.
+    private static final int PHONE_BITS = 34;
+    private static final long PHONE_MASK = (1L << PHONE_BITS) - 1;
+    private static final int ID_LENGTH_SHIFT = PHONE_BITS;
+    private static final int FIRST_NAME_LENGTH_SHIFT = ID_LENGTH_SHIFT + 4;
+    private static final int LAST_NAME_LENGTH_SHIFT = FIRST_NAME_LENGTH_SHIFT + 4;
+    private static final int ADDRESS_LENGTH_SHIFT = LAST_NAME_LENGTH_SHIFT + 4;
+    private static final long FREE = 1L << 63; // Marks a deleted record; the low bits then hold the next free record.
+
+    // Records are stored in pages of 2^16 so growing never copies existing records.
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Hash table slot values besides a record number plus one.
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+
+    private final StampedLock lock = new StampedLock();
+    private byte[][] bytePages = new byte[0][];
+    private long[][] metaPages = new long[0][];
+    private int[][] versionPages = new int[0][];
+    private int recordCount;        // Records ever handed out, including free ones.
+    private int freeRecord = -1;    // Head of the free record list, or -1.
+
+    private int[] table;            // Open-addressing index: record number plus one, EMPTY or DELETED.
+    private int tableUsed;          // Slots that are not EMPTY (live entries and DELETED markers).
+    private int packedCount;        // Live packed contacts.
+
+    private final Map<String, Contact> overflow = new HashMap<>(); // Contacts that cannot be packed.
+
+    public PackedContactStore() {
+        this(1024);
+    }
+
+    // Creates a store sized up front for the expected number of contacts.
+    public PackedContactStore(int expectedContacts) {
+        long needed = expectedContacts * 4L / 3 + 1;
+        int capacity = 16;
+        while (capacity < needed && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        this.table = new int[capacity];
+    }
+
+    @Override
+    public Contact get(String contactID) {
+        long stamp = lock.readLock();
+        try {
+            return find(contactID);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = isPackable(contactID) ? findSlot(contactID) : -1;
+            Contact existing = slot >= 0 ? decode(table[slot] - 1) : overflow.get(contactID);
+            Contact next = remapping.apply(contactID, existing);
+            if (next == existing) {
+                return existing;
+            }
+
+            if (next != null && slot >= 0 && isPackable(next)) {
+                encode(table[slot] - 1, next); // Same ID, so the record is rewritten in place.
+                return next;
+            }
+            // Remove the old entry from wherever it lived, then store the new one where it fits.
+            if (slot >= 0) {
+                releaseRecord(table[slot] - 1);
+                table[slot] = DELETED;
+                packedCount--;
+            } else if (existing != null) {
+                overflow.remove(contactID);
+            }
+            if (next != null) {
+                if (isPackable(next)) {
+                    insert(next);
+                } else {
+                    overflow.put(contactID, next);
+                }
+            }
+            return next;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return packedCount + overflow.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        // The lock is only held while one record is decoded, so the action may call back into the store.
+        for (int record = 0; ; record++) {
+            Contact contact;
+            long stamp = lock.readLock();
+            try {
+                if (record >= recordCount) {
+                    break;
+                }
+                contact = isFree(record) ? null : decode(record);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (contact != null) {
+                action.accept(contact);
+            }
+        }
+        Contact[] unpacked;
+        long stamp = lock.readLock();
+        try {
+            unpacked = overflow.values().toArray(new Contact[0]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        for (Contact contact : unpacked) {
+            action.accept(contact);
+        }
+    }
+
+    // Returns an estimate of the heap used by the store, in bytes, for comparing against the object-based store.
+    // Counts allocated pages and the hash table; overflow contacts are estimated at the size of a Contact object graph.
+    public long memoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            long pages = bytePages.length;
+            long perRecord = RECORD_BYTES + Long.BYTES + Integer.BYTES;
+            return pages * PAGE_SIZE * perRecord + (long) table.length * Integer.BYTES + overflow.size() * 320L;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Looks a contact up without locking; the caller holds the lock.
+    private Contact find(String contactID) {
+        if (contactID == null) {
+            return null;
+        }
+        if (isPackable(contactID)) {
+            int slot = findSlot(contactID);
+            if (slot >= 0) {
+                return decode(table[slot] - 1);
+            }
+        }
+        return overflow.isEmpty() ? null : overflow.get(contactID);
+    }
+
+    // Returns the table slot holding the ID, or -1.
+    private int findSlot(String contactID) {
+        int mask = table.length - 1;
+        for (int i = hash(contactID) & mask, probes = 0; probes < table.length; i = (i + 1) & mask, probes++) {
+            int entry = table[i];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry != DELETED && idEquals(entry - 1, contactID)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(Contact contact) {
+        if ((tableUsed + 1) * 4L > table.length * 3L) {
+            rehash();
+        }
+        int record = allocateRecord();
+        encode(record, contact);
+        int mask = table.length - 1;
+        int i = hash(contact.getContactID()) & mask;
+        while (table[i] > 0) {
+            i = (i + 1) & mask;
+        }
+        if (table[i] == EMPTY) {
+            tableUsed++;
+        }
+        table[i] = record + 1;
+        packedCount++;
+    }
+
+    // Rebuilds the table without DELETED markers, doubling it if live entries fill more than half of it.
+    private void rehash() {
+        int capacity = packedCount * 2L >= table.length ? table.length << 1 : table.length;
+        int[] old = table;
+        int[] rebuilt = new int[capacity];
+        int mask = capacity - 1;
+        for (int entry : old) {
+            if (entry > 0) {
+                int i = hash(idOf(entry - 1)) & mask;
+                while (rebuilt[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                rebuilt[i] = entry;
+            }
+        }
+        table = rebuilt;
+        tableUsed = packedCount;
+    }
+
+    private int allocateRecord() {
+        if (freeRecord >= 0) {
+            int record = freeRecord;
+            freeRecord = (int) ((metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK] & ~FREE) - 1);
+            return record;
+        }
+        int record = recordCount++;
+        int page = record >>> PAGE_SHIFT;
+        if (page == bytePages.length) {
+            bytePages = Arrays.copyOf(bytePages, page + 1);
+            metaPages = Arrays.copyOf(metaPages, page + 1);
+            versionPages = Arrays.copyOf(versionPages, page + 1);
+            bytePages[page] = new byte[PAGE_SIZE * RECORD_BYTES];
+            metaPages[page] = new long[PAGE_SIZE];
+            versionPages[page] = new int[PAGE_SIZE];
+        }
+        return record;
+    }
+
+    // Puts a record on the free list. The meta word of a free record holds the FREE marker plus the next free
+    // record number plus one, so zero marks the end of the list.
+    private void releaseRecord(int record) {
+        metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK] = FREE | (freeRecord + 1L);
+        freeRecord = record;
+    }
+
+    private boolean isFree(int record) {
+        return (metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK] & FREE) != 0;
+    }
+
+    private void encode(int record, Contact contact) {
+        byte[] bytes = bytePages[record >>> PAGE_SHIFT];
+        int base = (record & PAGE_MASK) * RECORD_BYTES;
+        String contactID = contact.getContactID();
+        String firstName = contact.getFirstName();
+        String lastName = contact.getLastName();
+        String address = contact.getAddress();
+        putLatin1(bytes, base + ID_OFFSET, contactID);
+        putLatin1(bytes, base + FIRST_NAME_OFFSET, firstName);
+        putLatin1(bytes, base + LAST_NAME_OFFSET, lastName);
+        putLatin1(bytes, base + ADDRESS_OFFSET, address);
+        metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK] = Long.parseLong(contact.getPhone())
+                | (long) contactID.length() << ID_LENGTH_SHIFT
+                | (long) firstName.length() << FIRST_NAME_LENGTH_SHIFT
+                | (long) lastName.length() << LAST_NAME_LENGTH_SHIFT
+                | (long) address.length() << ADDRESS_LENGTH_SHIFT;
+        versionPages[record >>> PAGE_SHIFT][record & PAGE_MASK] = (int) contact.getVersion();
+    }
+
+    private Contact decode(int record) {
+        byte[] bytes = bytePages[record >>> PAGE_SHIFT];
+        int base = (record & PAGE_MASK) * RECORD_BYTES;
+        long meta = metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK];
+        return Contact.decoded(
+                new String(bytes, base + ID_OFFSET, (int) (meta >>> ID_LENGTH_SHIFT) & 0xF, StandardCharsets.ISO_8859_1),
+                new String(bytes, base + FIRST_NAME_OFFSET, (int) (meta >>> FIRST_NAME_LENGTH_SHIFT) & 0xF, StandardCharsets.ISO_8859_1),
+                new String(bytes, base + LAST_NAME_OFFSET, (int) (meta >>> LAST_NAME_LENGTH_SHIFT) & 0xF, StandardCharsets.ISO_8859_1),
+                formatPhone(meta & PHONE_MASK),
+                new String(bytes, base + ADDRESS_OFFSET, (int) (meta >>> ADDRESS_LENGTH_SHIFT) & 0x1F, StandardCharsets.ISO_8859_1),
+                versionPages[record >>> PAGE_SHIFT][record & PAGE_MASK]);
+    }
+
+    private String idOf(int record) {
+        byte[] bytes = bytePages[record >>> PAGE_SHIFT];
+        int length = (int) (metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK] >>> ID_LENGTH_SHIFT) & 0xF;
+        return new String(bytes, (record & PAGE_MASK) * RECORD_BYTES + ID_OFFSET, length, StandardCharsets.ISO_8859_1);
+    }
+
+    // Compares a stored ID with a String without decoding it.
+    private boolean idEquals(int record, String contactID) {
+        long meta = metaPages[record >>> PAGE_SHIFT][record & PAGE_MASK];
+        int length = (int) (meta >>> ID_LENGTH_SHIFT) & 0xF;
+        if (length != contactID.length()) {
+            return false;
+        }
+        byte[] bytes = bytePages[record >>> PAGE_SHIFT];
+        int base = (record & PAGE_MASK) * RECORD_BYTES + ID_OFFSET;
+        for (int i = 0; i < length; i++) {
+            if ((bytes[base + i] & 0xFF) != contactID.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putLatin1(byte[] bytes, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            bytes[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    // Phone numbers are always exactly ten digits, so leading zeros are restored by padding.
+    private static String formatPhone(long phone) {
+        char[] digits = new char[ContactValidator.PHONE_LENGTH];
+        for (int i = digits.length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + phone % 10);
+            phone /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static boolean isPackable(Contact contact) {
+        return contact.getVersion() <= Integer.MAX_VALUE
+                && isPackable(contact.getContactID())
+                && isPackable(contact.getFirstName())
+                && isPackable(contact.getLastName())
+                && isPackable(contact.getAddress());
+    }
+
+    private static boolean isPackable(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(String contactID) {
+        int h = contactID.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
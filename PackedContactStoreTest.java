@@ -0,0 +1,89 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test; 
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*; 
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class PackedContactStoreTest {
+
+    // Test case to verify that the service behaves the same on the packed store.
+    @Test
+    void testServiceOperations() {
+        ContactService service = new ContactService(new PackedContactStore());
+        service.addContact(new Contact("12345", "John", "Doe", "0012345678", "123 Main St"));
+
+        // Fields, including a phone number with leading zeros, come back unchanged.
+        Contact contact = service.getContact("12345");
+        assertEquals("John", contact.getFirstName());
+        assertEquals("0012345678", contact.getPhone());
+        assertEquals("123 Main St", contact.getAddress());
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.addContact(new Contact("12345", "Jane", "Doe", "1234567890", "456 Park Ave"));
+        });
+
+        service.updateContact("12345", "Jane", null, null, "456 Park Ave");
+        assertEquals("Jane", service.getContact("12345").getFirstName());
+        assertEquals(1L, service.getContact("12345").getVersion());
+        assertTrue(service.updateContact("12345", 1L, null, "Dow", null, null));
+        assertFalse(service.updateContact("12345", 1L, null, "Doe", null, null));
+
+        service.deleteContact("12345");
+        assertNull(service.getContact("12345"));
+        assertThrows(IllegalArgumentException.class, () -> {
+            service.deleteContact("12345");
+        });
+    }
+
+    // Test case to verify that contacts with characters outside ISO-8859-1 are still stored correctly.
+    @Test
+    void testUnpackableContact() {
+        PackedContactStore store = new PackedContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact(new Contact("\u4e2d1", "John", "Doe", "1234567890", "123 Main St"));
+        service.addContact(new Contact("2", "Jos\u00e9", "Doe", "1234567890", "123 Main St"));
+
+        assertEquals("John", service.getContact("\u4e2d1").getFirstName());
+        assertEquals("Jos\u00e9", service.getContact("2").getFirstName());
+
+        // An update can move a contact between the packed records and the overflow map.
+        service.updateContact("2", null, "\u4e2d", null, null);
+        assertEquals("\u4e2d", service.getContact("2").getLastName());
+        service.updateContact("2", null, "Doe", null, null);
+        assertEquals("Doe", service.getContact("2").getLastName());
+        assertEquals(2, store.size());
+    }
+
+    // Test case to verify growth, record reuse and the per-contact memory footprint at volume.
+    @Test
+    void testManyContacts() {
+        int count = (3 << 16) - 2000; // Just under three record pages, leaving room to re-add below.
+        PackedContactStore store = new PackedContactStore(16);
+        ContactService service = new ContactService(store);
+        for (int i = 0; i < count; i++) {
+            service.addContact(new Contact(Integer.toString(i), "First" + (i % 100), "Last", "1234567890", i + " Main St"));
+        }
+        assertEquals(count, store.size());
+        assertEquals("7 Main St", service.getContact("7").getAddress());
+
+        // Deleting and re-adding reuses records instead of allocating new pages.
+        long before = store.memoryBytes();
+        for (int i = 0; i < 1000; i++) {
+            service.deleteContact(Integer.toString(i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            service.addContact(new Contact("x" + i, "First", "Last", "1234567890", "1 Main St"));
+        }
+        assertEquals(before, store.memoryBytes());
+        assertNull(service.getContact("5"));
+        assertEquals("First", service.getContact("x5").getFirstName());
+
+        // Every stored contact is visited exactly once.
+        AtomicInteger visited = new AtomicInteger();
+        store.forEach(contact -> visited.incrementAndGet());
+        assertEquals(count, visited.get());
+
+        assertTrue(store.memoryBytes() / count < 80, "bytes per contact: " + store.memoryBytes() / count);
+    }
+}
@@ -0,0 +1,270 @@
+// A shard served by a ContactShardServer in another process. Each call borrows a connection from a pool, sends one
+// request and waits for the reply, so concurrent callers use separate connections. A connection that fails is
+// dropped and the call throws UncheckedIOException; the next call opens a fresh one. Failures inside the remote
+// shard, such as indexes that are not enabled there, are thrown as IllegalStateException.
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+public class RemoteContactShard implements ContactShard {
+    private final SocketAddress address;
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private final String name;
+    private volatile boolean closed;
+
+    private RemoteContactShard(SocketAddress address) throws IOException {
+        this.address = address;
+        Connection connection = new Connection(address);
+        try {
+            connection.out.writeByte(ContactShardProtocol.NAME);
+            connection.out.flush();
+            connection.in.readByte();
+            this.name = connection.in.readUTF();
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+        idle.add(connection);
+    }
+
+    // Connects to a shard server and asks for its name.
+    public static RemoteContactShard connect(SocketAddress address) throws IOException {
+        return new RemoteContactShard(address);
+    }
+
+    // Connects to "host:port" over TCP or to the path of a Unix domain socket.
+    public static RemoteContactShard connect(String address) throws IOException {
+        return connect(ContactShardProtocol.parseAddress(address));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return true;
+    }
+
+    @Override
+    public ContactError add(Contact contact) {
+        return call(ContactShardProtocol.ADD, out -> ContactShardProtocol.writeContact(out, contact),
+                ContactShardProtocol::readError);
+    }
+
+    @Override
+    public ContactError delete(String contactID) {
+        return call(ContactShardProtocol.DELETE, out -> out.writeUTF(contactID), ContactShardProtocol::readError);
+    }
+
+    @Override
+    public ContactError update(String contactID, long expectedVersion,
+                               String firstName, String lastName, String phone, String address) {
+        return call(ContactShardProtocol.UPDATE, out -> {
+            out.writeUTF(contactID);
+            out.writeLong(expectedVersion);
+            ContactShardProtocol.writeString(out, firstName);
+            ContactShardProtocol.writeString(out, lastName);
+            ContactShardProtocol.writeString(out, phone);
+            ContactShardProtocol.writeString(out, address);
+        }, ContactShardProtocol::readError);
+    }
+
+    @Override
+    public Contact get(String contactID) {
+        return call(ContactShardProtocol.GET, out -> out.writeUTF(contactID), ContactShardProtocol::readContact);
+    }
+
+    @Override
+    public ContactBatchResult applyBatch(List<ContactOperation> operations, boolean atomic) {
+        return call(ContactShardProtocol.BATCH, out -> {
+            out.writeBoolean(atomic);
+            out.writeInt(operations.size());
+            for (ContactOperation operation : operations) {
+                ContactShardProtocol.writeOperation(out, operation);
+            }
+        }, in -> {
+            ContactError[] errors = new ContactError[in.readInt()];
+            for (int i = 0; i < errors.length; i++) {
+                errors[i] = ContactShardProtocol.readError(in);
+            }
+            return new ContactBatchResult(errors);
+        });
+    }
+
+    @Override
+    public int size() {
+        return call(ContactShardProtocol.SIZE, out -> { }, DataInputStream::readInt);
+    }
+
+    // Streams the contacts, passing each to the action as it arrives. The action must not call this shard on the
+    // same thread in a way that needs the connection being read; other calls use other connections.
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        call(ContactShardProtocol.FOR_EACH, out -> { }, in -> {
+            while (in.readBoolean()) {
+                action.accept(ContactShardProtocol.readContact(in));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void put(Contact contact) {
+        call(ContactShardProtocol.PUT, out -> ContactShardProtocol.writeContact(out, contact), in -> null);
+    }
+
+    @Override
+    public void remove(String contactID) {
+        call(ContactShardProtocol.REMOVE, out -> out.writeUTF(contactID), in -> null);
+    }
+
+    @Override
+    public List<Contact> findByPhone(String phone) {
+        return call(ContactShardProtocol.FIND_BY_PHONE, out -> ContactShardProtocol.writeString(out, phone),
+                ContactShardProtocol::readContacts);
+    }
+
+    @Override
+    public List<Contact> findByLastName(String lastName) {
+        return call(ContactShardProtocol.FIND_BY_LAST_NAME, out -> ContactShardProtocol.writeString(out, lastName),
+                ContactShardProtocol::readContacts);
+    }
+
+    @Override
+    public List<Contact> findByLastNamePrefix(String prefix, int limit) {
+        return call(ContactShardProtocol.FIND_BY_LAST_NAME_PREFIX, out -> {
+            ContactShardProtocol.writeString(out, prefix);
+            out.writeInt(limit);
+        }, ContactShardProtocol::readContacts);
+    }
+
+    @Override
+    public List<Contact> findByAddressPrefix(String prefix, int limit) {
+        return call(ContactShardProtocol.FIND_BY_ADDRESS_PREFIX, out -> {
+            ContactShardProtocol.writeString(out, prefix);
+            out.writeInt(limit);
+        }, ContactShardProtocol::readContacts);
+    }
+
+    @Override
+    public List<ContactSearchIndex.Match> search(String query, int limit) {
+        return call(ContactShardProtocol.SEARCH, out -> {
+            out.writeUTF(query);
+            out.writeInt(limit);
+        }, in -> {
+            int count = in.readInt();
+            List<ContactSearchIndex.Match> matches = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Contact contact = ContactShardProtocol.readContact(in);
+                matches.add(new ContactSearchIndex.Match(contact, in.readInt(), in.readInt(), -1));
+            }
+            return matches;
+        });
+    }
+
+    // Closes the pooled connections. Calls already in progress finish and then close theirs.
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + address;
+    }
+
+    private <T> T call(byte op, Request request, Response<T> response) {
+        if (closed) {
+            throw new IllegalStateException("Shard " + name + " is closed");
+        }
+        Connection connection = idle.poll();
+        // Only a connection whose exchange completed is reused; after any other failure its stream position is
+        // unknown, so it is closed.
+        boolean reusable = false;
+        try {
+            if (connection == null) {
+                connection = new Connection(address);
+            }
+            connection.out.writeByte(op);
+            request.write(connection.out);
+            connection.out.flush();
+            byte status = connection.in.readByte();
+            if (status == ContactShardProtocol.FAILED) {
+                String message = connection.in.readUTF();
+                reusable = true;
+                throw new IllegalStateException("Shard " + name + " failed: " + message);
+            }
+            T result = response.read(connection.in);
+            reusable = true;
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shard " + name + " at " + address + " is unreachable", e);
+        } finally {
+            if (connection != null) {
+                if (reusable) {
+                    release(connection);
+                } else {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void release(Connection connection) {
+        if (closed) {
+            connection.close();
+        } else {
+            idle.add(connection);
+        }
+    }
+
+    private interface Request {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Response<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(SocketAddress address) throws IOException {
+            channel = SocketChannel.open(address);
+            if (address instanceof InetSocketAddress) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // The connection is being dropped anyway.
+            }
+        }
+    }
+}
@@ -0,0 +1,506 @@
+// A contact service partitioned over independent ContactShards, with the same add, delete, update and get API as
+// ContactService. Each contact ID is routed to one shard by a ConsistentHashRing, so every shard has its own map,
+// its own locks and, with LocalContactShard, its own part of the heap, and with RemoteContactShard its own process.
+//
+// Calls that involve many contacts (size, scans, batches, the find methods and search) are scattered to every shard
+// and their results gathered and merged; remote shards are called in parallel. An atomic batch must only touch
+// contacts of one shard, because shards cannot roll back each other's changes; getShard tells callers where a
+// contact lives so they can group their batches.
+//
+// Shards can be added and removed while the service is in use. A rebalance switches to the new ring at once and
+// then moves the contacts whose owner changed, about 1/N of them. Until it finishes, a call on a contact that is
+// moving first moves that one contact under a lock it shares with the mover, so every change lands on the new
+// owner and reads find the contact on one shard or the other. Before moving anything the rebalance waits for calls
+// routed by the old ring to finish, which is tracked with a per-thread-striped counter of calls in progress.
+// While a rebalance runs, scans and find methods may miss or repeat a contact that is moving.
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class ShardedContactService implements Closeable {
+    private static final int MOVE_LOCKS = 1024;
+    private static final int CALL_STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    private static final int PADDING = 16;   // Ints per counter, so each stripe has its own cache line.
+
+    private final int virtualNodes;
+    private final Object[] moveLocks = new Object[MOVE_LOCKS];
+    // Calls in progress, for even and odd routing epochs, striped by thread.
+    private final AtomicIntegerArray calls = new AtomicIntegerArray(2 * CALL_STRIPES * PADDING);
+    private final ExecutorService gatherPool = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "contact-shard-gather");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object rebalanceLock = new Object();
+    private volatile Routing routing;
+
+    // Creates a service over the given shards, each placed on the ring at DEFAULT_VIRTUAL_NODES points.
+    public ShardedContactService(List<? extends ContactShard> shards) {
+        this(shards, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedContactService(List<? extends ContactShard> shards, int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        for (int i = 0; i < MOVE_LOCKS; i++) {
+            moveLocks[i] = new Object();
+        }
+        this.routing = new Routing(0, new ArrayList<>(shards), virtualNodes, null);
+    }
+
+    // Creates a service over shardCount new LocalContactShards named shard-0, shard-1 and so on.
+    public static ShardedContactService local(int shardCount) {
+        List<ContactShard> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new LocalContactShard("shard-" + i, new ContactService()));
+        }
+        return new ShardedContactService(shards);
+    }
+
+    // Adds a new contact. Throws IllegalArgumentException if the contact ID already exists.
+    public void addContact(Contact contact) {
+        if (!tryAddContact(contact)) {
+            throw new IllegalArgumentException(ContactError.DUPLICATE_CONTACT_ID.getMessage());
+        }
+    }
+
+    // Adds a new contact unless one with the same ID already exists. Returns false if it does.
+    public boolean tryAddContact(Contact contact) {
+        return route(contact.getContactID(), shard -> shard.add(contact)) == null;
+    }
+
+    // Deletes a contact. Throws IllegalArgumentException if the contact ID does not exist.
+    public void deleteContact(String contactID) {
+        ContactError error = contactID == null ? ContactError.CONTACT_NOT_FOUND
+                : route(contactID, shard -> shard.delete(contactID));
+        throwIfFailed(error);
+    }
+
+    // Updates the non-null fields of an existing contact.
+    // Throws IllegalArgumentException if the contact ID does not exist, or InvalidContactException for an invalid field.
+    public void updateContact(String contactID, String firstName, String lastName, String phone, String address) {
+        ContactError error = contactID == null ? ContactError.CONTACT_NOT_FOUND
+                : route(contactID, shard -> shard.update(contactID, ContactShard.ANY_VERSION,
+                        firstName, lastName, phone, address));
+        throwIfFailed(error);
+    }
+
+    // Updates an existing contact only if it is still at the expected version. Returns false if it is not.
+    // Throws like the unconditional update.
+    public boolean updateContact(String contactID, long expectedVersion,
+                                 String firstName, String lastName, String phone, String address) {
+        ContactError error = contactID == null ? ContactError.CONTACT_NOT_FOUND
+                : route(contactID, shard -> shard.update(contactID, expectedVersion,
+                        firstName, lastName, phone, address));
+        if (error == ContactError.VERSION_CONFLICT) {
+            return false;
+        }
+        throwIfFailed(error);
+        return true;
+    }
+
+    // Retrieves a contact by its contact ID, or null if it does not exist.
+    public Contact getContact(String contactID) {
+        if (contactID == null) {
+            return null;
+        }
+        Routing current = enter();
+        try {
+            ContactShard owner = current.owner(contactID);
+            ContactShard source = current.source(contactID, owner);
+            if (source != null) {
+                // A mover stores the contact on the new owner before removing it from the old one, so looking in
+                // the old one first cannot miss a contact in the middle of a move.
+                Contact contact = source.get(contactID);
+                if (contact != null) {
+                    return contact;
+                }
+            }
+            return owner.get(contactID);
+        } finally {
+            exit(current);
+        }
+    }
+
+    // Returns the number of contacts across all shards.
+    public int size() {
+        int total = 0;
+        for (Integer size : gather(routing.all, ContactShard::size)) {
+            total += size;
+        }
+        return total;
+    }
+
+    // Passes every contact to the action, one shard after another. Weakly consistent, like ContactService.
+    public void forEachContact(Consumer<Contact> action) {
+        for (ContactShard shard : routing.all) {
+            shard.forEach(action);
+        }
+    }
+
+    // Applies a batch, sending each shard its own operations and merging the results in the original order.
+    public ContactBatchResult applyBatch(List<ContactOperation> operations) {
+        return applyBatch(operations, false);
+    }
+
+    // Applies a batch as ContactService.applyBatch does. An atomic batch must only touch contacts of one shard;
+    // otherwise it throws IllegalArgumentException without applying anything.
+    public ContactBatchResult applyBatch(List<ContactOperation> operations, boolean atomic) {
+        Routing current = enter();
+        try {
+            // An operation without an ID fails validation on whichever shard gets it, so it goes with the rest of
+            // the batch and never makes an atomic batch span two shards.
+            ContactShard fallback = current.shards[0];
+            for (ContactOperation operation : operations) {
+                if (operation.getContactID() != null) {
+                    fallback = current.owner(operation.getContactID());
+                    break;
+                }
+            }
+            Map<ContactShard, List<Integer>> byShard = new IdentityHashMap<>();
+            for (int i = 0; i < operations.size(); i++) {
+                String contactID = operations.get(i).getContactID();
+                ContactShard owner = contactID == null ? fallback : current.owner(contactID);
+                byShard.computeIfAbsent(owner, shard -> new ArrayList<>()).add(i);
+            }
+            if (atomic && byShard.size() > 1) {
+                throw new IllegalArgumentException("An atomic batch must only touch contacts of one shard");
+            }
+            for (ContactOperation operation : operations) {
+                if (operation.getContactID() != null) {
+                    moveFirst(current, operation.getContactID(), current.owner(operation.getContactID()));
+                }
+            }
+            if (byShard.size() == 1) {
+                return byShard.keySet().iterator().next().applyBatch(operations, atomic);
+            }
+
+            ContactShard[] shards = byShard.keySet().toArray(new ContactShard[0]);
+            List<ContactBatchResult> results = gather(shards, shard -> {
+                List<ContactOperation> part = new ArrayList<>();
+                for (int i : byShard.get(shard)) {
+                    part.add(operations.get(i));
+                }
+                return shard.applyBatch(part, false);
+            });
+            ContactError[] errors = new ContactError[operations.size()];
+            for (int s = 0; s < shards.length; s++) {
+                List<Integer> positions = byShard.get(shards[s]);
+                for (int j = 0; j < positions.size(); j++) {
+                    errors[positions.get(j)] = results.get(s).getError(j);
+                }
+            }
+            return new ContactBatchResult(errors);
+        } finally {
+            exit(current);
+        }
+    }
+
+    // Finds the contacts with exactly this phone number. Requires indexes on every shard.
+    public List<Contact> findByPhone(String phone) {
+        return distinct(gather(routing.all, shard -> shard.findByPhone(phone)), null, Integer.MAX_VALUE);
+    }
+
+    // Finds the contacts with exactly this last name. Requires indexes on every shard.
+    public List<Contact> findByLastName(String lastName) {
+        return distinct(gather(routing.all, shard -> shard.findByLastName(lastName)), null, Integer.MAX_VALUE);
+    }
+
+    // Finds up to limit contacts whose last name starts with the prefix, in last name order.
+    // Requires indexes on every shard.
+    public List<Contact> findByLastNamePrefix(String prefix, int limit) {
+        return distinct(gather(routing.all, shard -> shard.findByLastNamePrefix(prefix, limit)),
+                Comparator.comparing(Contact::getLastName), limit);
+    }
+
+    // Finds up to limit contacts whose address starts with the prefix, in address order.
+    // Requires indexes on every shard.
+    public List<Contact> findByAddressPrefix(String prefix, int limit) {
+        return distinct(gather(routing.all, shard -> shard.findByAddressPrefix(prefix, limit)),
+                Comparator.comparing(Contact::getAddress), limit);
+    }
+
+    // Typo-tolerant search as in ContactService.search: each shard returns its best limit matches and the best
+    // limit of those are returned. Requires search on every shard.
+    public List<Contact> search(String query, int limit) {
+        List<ContactSearchIndex.Match> matches = new ArrayList<>();
+        for (List<ContactSearchIndex.Match> part : gather(routing.all, shard -> shard.search(query, limit))) {
+            matches.addAll(part);
+        }
+        matches.sort(ContactSearchIndex.RANKING);
+        List<Contact> contacts = new ArrayList<>();
+        for (ContactSearchIndex.Match match : matches) {
+            contacts.add(match.getContact());
+        }
+        return distinct(Collections.singletonList(contacts), null, limit);
+    }
+
+    // The shard that owns the contact ID under the current ring.
+    public ContactShard getShard(String contactID) {
+        return routing.owner(contactID);
+    }
+
+    // The shards contacts are routed to, in the order they were added.
+    public List<ContactShard> getShards() {
+        return Collections.unmodifiableList(Arrays.asList(routing.shards));
+    }
+
+    // True while a rebalance is moving contacts.
+    public boolean isRebalancing() {
+        return routing.previous != null;
+    }
+
+    // Adds an empty shard and moves to it the contacts it now owns. Returns once they have all been moved; other
+    // calls carry on meanwhile.
+    public void addShard(ContactShard shard) {
+        synchronized (rebalanceLock) {
+            finishRebalance();
+            List<ContactShard> next = new ArrayList<>(Arrays.asList(routing.shards));
+            for (ContactShard existing : next) {
+                if (existing.getName().equals(shard.getName())) {
+                    throw new IllegalArgumentException("A shard named " + shard.getName() + " already exists");
+                }
+            }
+            next.add(shard);
+            rebalance(next);
+        }
+    }
+
+    // Moves the shard's contacts to the other shards and returns the shard, now empty, for the caller to retire.
+    public ContactShard removeShard(String name) {
+        synchronized (rebalanceLock) {
+            finishRebalance();
+            List<ContactShard> next = new ArrayList<>(Arrays.asList(routing.shards));
+            ContactShard removed = null;
+            for (ContactShard shard : next) {
+                if (shard.getName().equals(name)) {
+                    removed = shard;
+                }
+            }
+            if (removed == null) {
+                throw new IllegalArgumentException("No shard named " + name);
+            }
+            if (next.size() == 1) {
+                throw new IllegalArgumentException("Cannot remove the last shard");
+            }
+            next.remove(removed);
+            rebalance(next);
+            return removed;
+        }
+    }
+
+    // Completes a rebalance that stopped because a shard failed. Calls stay correct in the meantime; they just
+    // keep checking the old owner of every contact that still has to move.
+    public void finishRebalance() {
+        synchronized (rebalanceLock) {
+            Routing moving = routing;
+            if (moving.previous == null) {
+                return;
+            }
+            for (ContactShard from : moving.previous.shards) {
+                List<String> leaving = new ArrayList<>();
+                from.forEach(contact -> {
+                    if (moving.owner(contact.getContactID()) != from) {
+                        leaving.add(contact.getContactID());
+                    }
+                });
+                for (String contactID : leaving) {
+                    synchronized (moveLock(contactID)) {
+                        move(contactID, from, moving.owner(contactID));
+                    }
+                }
+            }
+            switchTo(new Routing(moving.epoch + 1, Arrays.asList(moving.shards), virtualNodes, null));
+        }
+    }
+
+    // Closes every shard's connections.
+    @Override
+    public void close() {
+        gatherPool.shutdown();
+        for (ContactShard shard : routing.all) {
+            shard.close();
+        }
+    }
+
+    private void rebalance(List<ContactShard> next) {
+        Routing current = routing;
+        switchTo(new Routing(current.epoch + 1, next, virtualNodes, current));
+        finishRebalance();
+    }
+
+    // Installs new routing and waits for calls still using the previous one to finish.
+    private void switchTo(Routing next) {
+        Routing previous = routing;
+        routing = next;
+        int base = (int) (previous.epoch & 1) * CALL_STRIPES * PADDING;
+        for (int stripe = 0; stripe < CALL_STRIPES; stripe++) {
+            while (calls.get(base + stripe * PADDING) != 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    // Marks the start of a call and returns the routing it must use. The count is only kept if the routing did not
+    // change in between, so once switchTo has seen a zero count no call can still be using the old routing.
+    private Routing enter() {
+        while (true) {
+            Routing current = routing;
+            int slot = callSlot(current);
+            calls.getAndIncrement(slot);
+            if (routing == current) {
+                return current;
+            }
+            calls.getAndDecrement(slot);
+        }
+    }
+
+    private void exit(Routing current) {
+        calls.getAndDecrement(callSlot(current));
+    }
+
+    private static int callSlot(Routing current) {
+        int stripe = ThreadIndex.current() & (CALL_STRIPES - 1);
+        return ((int) (current.epoch & 1) * CALL_STRIPES + stripe) * PADDING;
+    }
+
+    // Runs a single-contact change on the contact's owner, moving the contact there first if it is still on the
+    // shard that owned it before a rebalance.
+    private <T> T route(String contactID, Function<ContactShard, T> call) {
+        Routing current = enter();
+        try {
+            ContactShard owner = current.owner(contactID);
+            moveFirst(current, contactID, owner);
+            return call.apply(owner);
+        } finally {
+            exit(current);
+        }
+    }
+
+    private void moveFirst(Routing current, String contactID, ContactShard owner) {
+        ContactShard source = current.source(contactID, owner);
+        if (source != null) {
+            synchronized (moveLock(contactID)) {
+                move(contactID, source, owner);
+            }
+        }
+    }
+
+    // Moves one contact, if it is still on the old shard. The caller holds the contact's move lock, and every
+    // change to a moving contact first comes through here, so nothing can change it on either shard meanwhile.
+    private static void move(String contactID, ContactShard from, ContactShard to) {
+        Contact contact = from.get(contactID);
+        if (contact != null) {
+            to.put(contact);
+            from.remove(contactID);
+        }
+    }
+
+    private Object moveLock(String contactID) {
+        return moveLocks[(contactID.hashCode() & 0x7fffffff) % MOVE_LOCKS];
+    }
+
+    // Calls every shard, remote ones in parallel, and returns the results in shard order.
+    private <T> List<T> gather(ContactShard[] shards, Function<ContactShard, T> call) {
+        List<CompletableFuture<T>> pending = new ArrayList<>(shards.length);
+        for (ContactShard shard : shards) {
+            pending.add(shard.isRemote() && shards.length > 1
+                    ? CompletableFuture.supplyAsync(() -> call.apply(shard), gatherPool) : null);
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            if (pending.get(i) == null) {
+                results.add(call.apply(shards[i]));
+                continue;
+            }
+            try {
+                results.add(pending.get(i).join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    // Merges the lists, dropping contacts repeated while a rebalance moved them, optionally sorting by order with
+    // ties broken by contact ID, and keeps the first limit.
+    private static List<Contact> distinct(List<List<Contact>> parts, Comparator<Contact> order, int limit) {
+        List<Contact> merged = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (List<Contact> part : parts) {
+            for (Contact contact : part) {
+                if (seen.add(contact.getContactID())) {
+                    merged.add(contact);
+                }
+            }
+        }
+        if (order != null) {
+            merged.sort(order.thenComparing(Contact::getContactID));
+        }
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    private static void throwIfFailed(ContactError error) {
+        if (error != null) {
+            throw error.toException();
+        }
+    }
+
+    // The shards and ring in use. During a rebalance, previous is the routing being moved away from.
+    private static final class Routing {
+        final long epoch;
+        final ContactShard[] shards;
+        final ConsistentHashRing ring;
+        final Routing previous;
+        final ContactShard[] all;     // Every shard that may hold contacts.
+
+        Routing(long epoch, List<ContactShard> shards, int virtualNodes, Routing previous) {
+            this.epoch = epoch;
+            this.shards = shards.toArray(new ContactShard[0]);
+            List<String> names = new ArrayList<>();
+            for (ContactShard shard : shards) {
+                names.add(shard.getName());
+            }
+            this.ring = new ConsistentHashRing(names, virtualNodes);
+            this.previous = previous;
+            List<ContactShard> union = new ArrayList<>(shards);
+            if (previous != null) {
+                for (ContactShard shard : previous.shards) {
+                    if (!union.contains(shard)) {
+                        union.add(shard);
+                    }
+                }
+            }
+            this.all = union.toArray(new ContactShard[0]);
+        }
+
+        ContactShard owner(String contactID) {
+            return shards[ring.shardOf(contactID)];
+        }
+
+        // The shard a moving contact may still be on, or null if the contact is not moving.
+        ContactShard source(String contactID, ContactShard owner) {
+            if (previous == null) {
+                return null;
+            }
+            ContactShard from = previous.owner(contactID);
+            return from == owner ? null : from;
+        }
+    }
+}
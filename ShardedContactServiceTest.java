@@ -0,0 +1,197 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+class ShardedContactServiceTest {
+
+    private static String id(int i) {
+        return "c" + i;
+    }
+
+    private static Contact contact(int i) {
+        return new Contact(id(i), "First" + (i % 7), "Last" + (i % 11), String.format("%010d", i), i + " Main St");
+    }
+
+    private static LocalContactShard indexedShard(String name) {
+        ContactService service = new ContactService();
+        service.enableIndexes();
+        service.enableSearch();
+        return new LocalContactShard(name, service);
+    }
+
+    // Test case to verify that the ring spreads keys evenly and only moves about 1/N of them when a shard is added.
+    @Test
+    void testRingBalanceAndMovement() {
+        ConsistentHashRing three = new ConsistentHashRing(Arrays.asList("a", "b", "c"));
+        ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"));
+        int[] counts = new int[3];
+        int moved = 0;
+        for (int i = 0; i < 30000; i++) {
+            int before = three.shardOf(id(i));
+            int after = four.shardOf(id(i));
+            counts[before]++;
+            if (before != after) {
+                moved++;
+                assertEquals(3, after); // Keys only move to the new shard.
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 8000 && count < 12000, "unbalanced: " + Arrays.toString(counts));
+        }
+        assertTrue(moved > 5500 && moved < 9500, "moved " + moved);
+    }
+
+    // Test case to verify that the sharded service behaves like ContactService for single-contact calls.
+    @Test
+    void testSingleContactCalls() {
+        ShardedContactService service = ShardedContactService.local(4);
+        for (int i = 0; i < 200; i++) {
+            service.addContact(contact(i));
+        }
+        assertEquals(200, service.size());
+        assertThrows(IllegalArgumentException.class, () -> service.addContact(contact(5)));
+
+        service.updateContact(id(5), "Alice", null, null, null);
+        assertEquals("Alice", service.getContact(id(5)).getFirstName());
+        assertThrows(InvalidContactException.class, () -> service.updateContact(id(5), null, null, "123", null));
+        assertFalse(service.updateContact(id(5), 0, "Bob", null, null, null));
+        assertTrue(service.updateContact(id(5), 1, "Bob", null, null, null));
+
+        service.deleteContact(id(5));
+        assertNull(service.getContact(id(5)));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteContact(id(5)));
+        assertThrows(IllegalArgumentException.class, () -> service.updateContact(id(5), "X", null, null, null));
+
+        // Every contact sits on the shard the ring assigns it.
+        for (ContactShard shard : service.getShards()) {
+            shard.forEach(c -> assertSame(shard, service.getShard(c.getContactID())));
+        }
+    }
+
+    // Test case to verify scatter-gather for batches, finds and search.
+    @Test
+    void testScatterGather() {
+        ShardedContactService service = new ShardedContactService(
+                Arrays.asList(indexedShard("a"), indexedShard("b"), indexedShard("c")));
+        List<ContactOperation> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(ContactOperation.add(contact(i)));
+        }
+        batch.add(ContactOperation.delete("missing"));
+        ContactBatchResult result = service.applyBatch(batch);
+        assertEquals(100, result.getSuccessCount());
+        assertEquals(ContactError.CONTACT_NOT_FOUND, result.getError(100));
+
+        assertEquals(1, service.findByPhone(String.format("%010d", 42)).size());
+        assertEquals(9, service.findByLastName("Last3").size());
+        List<Contact> prefix = service.findByLastNamePrefix("Last1", 5);
+        assertEquals(5, prefix.size());
+        assertEquals("Last1", prefix.get(0).getLastName());
+        service.addContact(new Contact("x", "Jonathan", "Smith", "1234567890", "12 Harbour View"));
+        assertEquals("x", service.search("jonathon smith", 3).get(0).getContactID());
+
+        // An atomic batch may only touch one shard.
+        List<ContactOperation> spread = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            spread.add(ContactOperation.delete(id(i)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> service.applyBatch(spread, true));
+        assertEquals(101, service.size());
+        // An operation without an ID stays with the rest of an atomic batch and aborts it.
+        ContactBatchResult aborted = service.applyBatch(List.of(ContactOperation.delete(id(1)),
+                ContactOperation.delete(null)), true);
+        assertEquals(ContactError.BATCH_ABORTED, aborted.getError(0));
+        assertEquals(ContactError.CONTACT_NOT_FOUND, aborted.getError(1));
+        assertEquals(101, service.size());
+    }
+
+    // Test case to verify that adding and removing shards moves contacts while writers keep running.
+    @Test
+    void testOnlineRebalance() throws Exception {
+        ShardedContactService service = ShardedContactService.local(2);
+        for (int i = 0; i < 5000; i++) {
+            service.addContact(contact(i));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int round = 0; !stop.get(); round++) {
+                    for (int i = 0; i < 5000; i += 7) {
+                        service.updateContact(id(i), null, null, null, "round " + round);
+                        assertNotNull(service.getContact(id(i)));
+                    }
+                    service.addContact(contact(5000 + round));
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+
+        service.addShard(new LocalContactShard("shard-2", new ContactService()));
+        service.addShard(new LocalContactShard("shard-3", new ContactService()));
+        ContactShard removed = service.removeShard("shard-0");
+        stop.set(true);
+        writer.join();
+        assertNull(failure.get());
+
+        assertFalse(service.isRebalancing());
+        assertEquals(0, removed.size());
+        assertEquals(3, service.getShards().size());
+        int total = service.size();
+        assertTrue(total > 5000);
+        for (int i = 0; i < total; i++) {
+            assertNotNull(service.getContact(id(i)), id(i));
+        }
+        for (ContactShard shard : service.getShards()) {
+            shard.forEach(c -> assertSame(shard, service.getShard(c.getContactID())));
+        }
+    }
+
+    // Test case to verify that shards served over a Unix domain socket work like local ones.
+    @Test
+    void testRemoteShards() throws Exception {
+        Path directory = Files.createTempDirectory("shards");
+        List<ContactShardServer> servers = new ArrayList<>();
+        List<ContactShard> shards = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ContactShardServer server = ContactShardServer.start(indexedShard("remote-" + i),
+                    ContactShardProtocol.parseAddress(directory.resolve("shard-" + i + ".sock").toString()));
+            servers.add(server);
+            shards.add(RemoteContactShard.connect(server.getAddress()));
+        }
+        try (ShardedContactService service = new ShardedContactService(shards)) {
+            for (int i = 0; i < 300; i++) {
+                service.addContact(contact(i));
+            }
+            assertEquals(300, service.size());
+            assertEquals("First3", service.getContact(id(3)).getFirstName());
+            assertThrows(IllegalArgumentException.class, () -> service.addContact(contact(3)));
+            service.updateContact(id(3), "Zed", null, null, null);
+            assertEquals(1, service.getContact(id(3)).getVersion());
+            assertThrows(InvalidContactException.class, () -> service.updateContact(id(3), null, null, "1", null));
+            assertEquals(27, service.findByLastName("Last4").size());
+
+            service.addShard(indexedShard("local"));
+            assertEquals(300, service.size());
+            assertTrue(service.getShards().get(2).size() > 0);
+            for (int i = 0; i < 300; i++) {
+                assertNotNull(service.getContact(id(i)));
+            }
+        } finally {
+            for (ContactShardServer server : servers) {
+                server.close();
+            }
+        }
+    }
+}
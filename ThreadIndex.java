@@ -0,0 +1,17 @@
+// Gives each thread a small, fixed number for picking its stripe of a striped counter or histogram.
+// Numbers are handed out in the order threads first ask, so threads started together land on different stripes,
+// which a hash of the thread ID does not promise. Thread.getId is also deprecated from Java 19.
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class ThreadIndex {
+    private static final AtomicInteger NEXT = new AtomicInteger();
+    private static final ThreadLocal<Integer> INDEX = ThreadLocal.withInitial(NEXT::getAndIncrement);
+
+    private ThreadIndex() {
+    }
+
+    // This thread's number. Mask it with a power of two minus one to pick a stripe.
+    static int current() {
+        return INDEX.get();
+    }
+}
@@ -0,0 +1,342 @@
+// ContactStore that supports snapshots (multi-version concurrency control): a ConcurrentHashMap from contact ID to
+// the newest version of the contact. Lookups are lock-free and changes lock only the entry's hash bin, as in
+// MapContactStore, but every write allocates a version node (about 32 bytes more per contact, and writes take
+// roughly twice as long), so use it only when point-in-time snapshots are needed.
+//
+// Each map value is a version node holding
+// a contact (or null for a delete) and a link to the version it replaced. A version is stamped with the snapshot
+// clock when it is written, and a snapshot sees, for each contact, the newest version stamped before it was taken.
+// Only opening a snapshot advances the clock, so writers just read it and do not contend on it.
+//
+// A version is stamped right after it is installed, outside the bin lock. A reader that meets a version that is not
+// stamped yet stamps it itself with the current clock, which is later than any snapshot that could have missed the
+// install, so no reader ever waits for a writer.
+//
+// Old versions are kept only while an open snapshot can still see them. Every write cuts the chain below the
+// newest version visible to the oldest open snapshot, and with no snapshot open below itself, so without snapshots
+// each contact has a single version and deleted contacts leave the map at once. Chains left behind when a snapshot
+// closes are cut by the closing thread, or by a Cleaner thread for snapshots that were garbage collected unclosed.
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.Cleaner;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+public class VersionedContactStore implements ContactStore {
+    private static final long UNSTAMPED = Long.MAX_VALUE;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final ConcurrentHashMap<String, Version> contacts;  // Newest version of each contact by contact ID.
+    private final LongAdder live = new LongAdder();             // Contacts whose newest version is not a delete.
+    private volatile long clock = 1;                            // Snapshot clock; raised only by opening a snapshot.
+    private volatile long oldestSnapshot = UNSTAMPED;           // Clock value of the oldest open snapshot.
+    private final TreeSet<Long> openSnapshots = new TreeSet<>();  // Guarded by itself.
+    private final Set<String> versioned = ConcurrentHashMap.newKeySet(); // IDs that may have more than one version.
+
+    public VersionedContactStore() {
+        this.contacts = new ConcurrentHashMap<>();
+    }
+
+    // Creates a store whose map is sized up front for the expected number of contacts.
+    public VersionedContactStore(int expectedContacts) {
+        this.contacts = new ConcurrentHashMap<>(expectedContacts);
+    }
+
+    @Override
+    public Contact get(String contactID) {
+        Version newest = contacts.get(contactID);
+        if (newest == null) {
+            return null;
+        }
+        stamp(newest); // So a snapshot taken after this read sees what it returned.
+        return newest.contact;
+    }
+
+    @Override
+    public Contact compute(String contactID, BiFunction<String, Contact, Contact> remapping) {
+        Version newest = contacts.compute(contactID, (id, replaced) -> {
+            Contact current = replaced == null ? null : replaced.contact;
+            Contact next = remapping.apply(id, current);
+            if (next == current) {
+                return replaced;
+            }
+            if (current == null) {
+                live.increment();
+            } else if (next == null) {
+                live.decrement();
+            }
+            return new Version(next, replaced);
+        });
+        if (newest == null) {
+            return null;
+        }
+        // Also done when nothing changed; for a version that is already stamped and pruned it only reads.
+        stamp(newest);
+        prune(contactID, newest);
+        return newest.contact;
+    }
+
+    @Override
+    public int size() {
+        return live.intValue();
+    }
+
+    @Override
+    public void forEach(Consumer<Contact> action) {
+        contacts.values().forEach(newest -> {
+            if (newest.contact != null) {
+                action.accept(newest.contact);
+            }
+        });
+    }
+
+    @Override
+    public boolean supportsSnapshots() {
+        return true;
+    }
+
+    @Override
+    public ContactSnapshot snapshot() {
+        long taken;
+        synchronized (openSnapshots) {
+            // Register before raising the clock, so a writer that sees the new clock also sees this snapshot
+            // and keeps the versions it needs.
+            taken = clock + 1;
+            openSnapshots.add(taken);
+            oldestSnapshot = openSnapshots.first();
+            clock = taken;
+        }
+        return new Snapshot(this, taken);
+    }
+
+    // Number of snapshots not yet closed or collected.
+    int openSnapshotCount() {
+        synchronized (openSnapshots) {
+            return openSnapshots.size();
+        }
+    }
+
+    // Number of versions held for the contact, including deletes, for checking that old versions are reclaimed.
+    int versionCount(String contactID) {
+        int count = 0;
+        for (Version version = contacts.get(contactID); version != null; version = version.older()) {
+            count++;
+        }
+        return count;
+    }
+
+    private void release(long taken) {
+        synchronized (openSnapshots) {
+            openSnapshots.remove(taken);
+            oldestSnapshot = openSnapshots.isEmpty() ? UNSTAMPED : openSnapshots.first();
+        }
+        for (String contactID : versioned) {
+            Version newest = contacts.get(contactID);
+            if (newest == null || prune(contactID, newest)) {
+                versioned.remove(contactID);
+                // A write may have left a new chain and marked the ID just before the removal.
+                newest = contacts.get(contactID);
+                if (newest != null && newest.older() != null) {
+                    versioned.add(contactID);
+                }
+            }
+        }
+    }
+
+    // Cuts the versions below the newest one every open snapshot can see, and drops a delete that every open
+    // snapshot can see. A version stamped the same as the one above it is hidden by it from every snapshot, so it is
+    // unlinked too. Returns true if nothing older than newest is left.
+    private boolean prune(String contactID, Version newest) {
+        long oldest = oldestSnapshot;
+        Version version = newest;
+        while (version != null) {
+            long stamp = version.stamp();
+            if (stamp < oldest) {
+                if (version.older() != null) {
+                    version.setOlder(null);
+                }
+                if (version == newest) {
+                    if (newest.contact == null) {
+                        contacts.remove(contactID, newest);
+                    }
+                    return true;
+                }
+                break;
+            }
+            Version older = version.older();
+            if (older != null && stamp != UNSTAMPED && older.stamp() == stamp) {
+                version.setOlder(older.older());
+            } else {
+                version = older;
+            }
+        }
+        versioned.add(contactID);
+        return false;
+    }
+
+    private long stamp(Version version) {
+        long stamp = version.stamp();
+        if (stamp == UNSTAMPED) {
+            STAMP.compareAndSet(version, UNSTAMPED, clock);
+            stamp = version.stamp();
+        }
+        return stamp;
+    }
+
+    // Newest version visible to a snapshot taken at the clock value, or null.
+    private Contact visible(Version newest, long taken) {
+        for (Version version = newest; version != null; version = version.older()) {
+            if (stamp(version) < taken) {
+                return version.contact;
+            }
+        }
+        return null;
+    }
+
+    private static final VarHandle STAMP;
+    private static final VarHandle OLDER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STAMP = lookup.findVarHandle(Version.class, "stamp", long.class);
+            OLDER = lookup.findVarHandle(Version.class, "older", Version.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // The fields are read and written through the VarHandles rather than declared volatile, so that creating a
+    // version (published safely by the map) and cutting a chain need no fences; these are on every write's path.
+    private static final class Version {
+        final Contact contact; // Null for a delete.
+        long stamp;            // Clock value when written; visible to snapshots taken after it.
+        Version older;         // Version this one replaced, while a snapshot may still need it.
+
+        Version(Contact contact, Version older) {
+            this.contact = contact;
+            this.stamp = UNSTAMPED;
+            this.older = older;
+        }
+
+        long stamp() {
+            return (long) STAMP.getVolatile(this);
+        }
+
+        Version older() {
+            return (Version) OLDER.getAcquire(this);
+        }
+
+        void setOlder(Version older) {
+            OLDER.setRelease(this, older);
+        }
+    }
+
+    // A snapshot reads through the store's map. Its release runs once, from close or from the Cleaner, and
+    // references only the store, so the Snapshot itself can be collected.
+    private static final class Snapshot implements ContactSnapshot {
+        private final VersionedContactStore store;
+        private final long taken;
+        private final Cleaner.Cleanable cleanable;
+        private volatile boolean closed;
+
+        Snapshot(VersionedContactStore store, long taken) {
+            this.store = store;
+            this.taken = taken;
+            this.cleanable = CLEANER.register(this, () -> store.release(taken));
+        }
+
+        @Override
+        public Contact get(String contactID) {
+            checkOpen();
+            Version newest = store.contacts.get(contactID);
+            return newest == null ? null : store.visible(newest, taken);
+        }
+
+        @Override
+        public void forEach(Consumer<Contact> action) {
+            checkOpen();
+            store.contacts.values().forEach(newest -> {
+                Contact contact = store.visible(newest, taken);
+                if (contact != null) {
+                    action.accept(contact);
+                }
+            });
+        }
+
+        @Override
+        public Spliterator<Contact> spliterator() {
+            checkOpen();
+            return new VisibleSpliterator(store.contacts.values().spliterator());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            cleanable.clean();
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Snapshot is closed");
+            }
+        }
+
+        // Walks the map's values, which split for parallel streams, and yields the version each one shows this
+        // snapshot.
+        private final class VisibleSpliterator implements Spliterator<Contact> {
+            private final Spliterator<Version> source;
+            private Contact found;
+
+            VisibleSpliterator(Spliterator<Version> source) {
+                this.source = source;
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Contact> action) {
+                checkOpen();
+                while (source.tryAdvance(newest -> found = store.visible(newest, taken))) {
+                    if (found != null) {
+                        Contact contact = found;
+                        found = null;
+                        action.accept(contact);
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super Contact> action) {
+                checkOpen();
+                source.forEachRemaining(newest -> {
+                    Contact contact = store.visible(newest, taken);
+                    if (contact != null) {
+                        action.accept(contact);
+                    }
+                });
+            }
+
+            @Override
+            public Spliterator<Contact> trySplit() {
+                Spliterator<Version> split = source.trySplit();
+                return split == null ? null : new VisibleSpliterator(split);
+            }
+
+            @Override
+            public long estimateSize() {
+                return source.estimateSize();
+            }
+
+            @Override
+            public int characteristics() {
+                return DISTINCT | NONNULL | CONCURRENT;
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+// Importing JUnit 5's Test annotation to define test methods.
+import org.junit.jupiter.api.Test;
+// Importing assertion methods for validating test outcomes.
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+class VersionedContactStoreTest {
+
+    private static Contact contact(int i) {
+        return new Contact("c" + i, "First" + i, "Last" + i, String.format("%010d", i), i + " Main St");
+    }
+
+    // Test case to verify that a snapshot keeps showing the contacts as they were when it was taken.
+    @Test
+    void testSnapshotIsPointInTime() {
+        ContactService service = new ContactService(new VersionedContactStore());
+        for (int i = 0; i < 100; i++) {
+            service.addContact(contact(i));
+        }
+        try (ContactSnapshot snapshot = service.snapshot()) {
+            service.updateContact("c1", "Changed", null, null, null);
+            service.deleteContact("c2");
+            service.addContact(contact(100));
+            service.deleteContact("c3");
+            service.addContact(contact(3));
+            service.updateContact("c3", "Again", null, null, null);
+
+            assertEquals("First1", snapshot.get("c1").getFirstName());
+            assertEquals("First2", snapshot.get("c2").getFirstName());
+            assertEquals("First3", snapshot.get("c3").getFirstName());
+            assertNull(snapshot.get("c100"));
+            assertEquals(100, snapshot.stream().count());
+
+            // The live service sees every change.
+            assertEquals("Changed", service.getContact("c1").getFirstName());
+            assertNull(service.getContact("c2"));
+            assertEquals("Again", service.getContact("c3").getFirstName());
+            assertEquals(100, service.size());
+
+            // A later snapshot sees the later state.
+            try (ContactSnapshot later = service.snapshot()) {
+                assertNull(later.get("c2"));
+                assertEquals("Changed", later.get("c1").getFirstName());
+                assertEquals(100, later.stream().count());
+            }
+        }
+    }
+
+    // Test case to verify that a parallel scan of a snapshot stays consistent while a writer keeps changing contacts.
+    @Test
+    void testParallelScanUnderWrites() throws Exception {
+        ContactService service = new ContactService(new VersionedContactStore());
+        int count = 20000;
+        for (int i = 0; i < count; i++) {
+            service.addContact(new Contact("c" + i, "First", "Last", "1234567890", "0"));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                // Each round stamps every contact in ID order, so a consistent view shows a run of contacts from the
+                // current round followed by contacts from the round before.
+                for (int round = 1; !stop.get(); round++) {
+                    for (int i = 0; i < count; i++) {
+                        service.updateContact("c" + i, null, null, null, Integer.toString(round));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+        try {
+            for (int pass = 0; pass < 20; pass++) {
+                try (ContactSnapshot snapshot = service.snapshot()) {
+                    int[] rounds = new int[count];
+                    assertEquals(count, snapshot.parallelStream().peek(c -> rounds[Integer.parseInt(
+                            c.getContactID().substring(1))] = Integer.parseInt(c.getAddress())).count());
+                    for (int i = 1; i < count; i++) {
+                        assertTrue(rounds[i - 1] >= rounds[i] && rounds[0] - rounds[i] <= 1,
+                                "inconsistent at " + i + ": " + rounds[0] + " " + rounds[i - 1] + " " + rounds[i]);
+                    }
+                    Thread.sleep(5);
+                }
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+        assertNull(failure.get());
+        assertEquals(count, service.size());
+    }
+
+    // Test case to verify that old versions and deleted contacts are reclaimed once no snapshot needs them.
+    @Test
+    void testVersionsReclaimedAfterClose() {
+        VersionedContactStore store = new VersionedContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact(contact(1));
+        service.addContact(contact(2));
+        service.updateContact("c1", "Changed", null, null, null);
+        assertEquals(1, store.versionCount("c1"));
+
+        ContactSnapshot snapshot = service.snapshot();
+        for (int i = 0; i < 5; i++) {
+            service.updateContact("c1", "Changed" + i, null, null, null);
+        }
+        service.deleteContact("c2");
+        assertEquals(2, store.versionCount("c1")); // Newest, plus the one the snapshot sees.
+        assertEquals(2, store.versionCount("c2")); // The delete, plus the one the snapshot sees.
+        assertEquals(1, service.size());
+        assertEquals(1, store.openSnapshotCount());
+
+        snapshot.close();
+        assertEquals(0, store.openSnapshotCount());
+        assertEquals(1, store.versionCount("c1"));
+        assertEquals(0, store.versionCount("c2"));
+        assertThrows(IllegalStateException.class, () -> snapshot.get("c1"));
+        snapshot.close(); // Closing again does nothing.
+    }
+
+    // Test case to verify that a snapshot dropped without closing is released once it is garbage collected.
+    @Test
+    void testUnclosedSnapshotReleasedByGc() throws InterruptedException {
+        VersionedContactStore store = new VersionedContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact(contact(1));
+        service.snapshot();
+        service.updateContact("c1", "Changed", null, null, null);
+        for (int i = 0; i < 100 && store.openSnapshotCount() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, store.openSnapshotCount());
+        assertEquals(1, store.versionCount("c1"));
+    }
+
+    // Test case to verify that exports read from a snapshot and still work on stores without snapshots.
+    @Test
+    void testExportWithAndWithoutSnapshots() throws Exception {
+        VersionedContactStore store = new VersionedContactStore();
+        ContactService service = new ContactService(store);
+        service.addContact(contact(1));
+        service.addContact(contact(2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, ContactExporter.exportTo(service, Channels.newChannel(out), ContactImporter.Format.CSV));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("c2,First2,Last2,0000000002,2 Main St"));
+        assertEquals(0, store.openSnapshotCount());
+
+        ContactService packed = new ContactService(new PackedContactStore());
+        packed.addContact(contact(1));
+        assertFalse(packed.supportsSnapshots());
+        ByteArrayOutputStream packedOut = new ByteArrayOutputStream();
+        assertEquals(1, ContactExporter.exportTo(packed, Channels.newChannel(packedOut), ContactImporter.Format.CSV));
+    }
+}